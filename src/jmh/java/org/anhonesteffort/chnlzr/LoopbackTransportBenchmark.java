@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.anhonesteffort.chnlzr.capnp.BaseMessageEncoder;
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Samples frames streamed over loopback from one server to many client
+ * channels, ops are MiB received. Each server channel writes a pre-encoded
+ * frame whenever it is writable so the transport is the bottleneck. Transports
+ * not available on the host fail their trial and the rest still run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoopbackTransportBenchmark {
+
+  private static final int SAMPLES_PER_MESSAGE = 2_000;
+  private static final int QUEUE_SIZE          = 24;
+  private static final int MIB_PER_INVOCATION  = 16;
+  private static final int MIB                 = 1 << 20;
+
+  @Param({"NIO", "EPOLL", "IO_URING"})
+  private ServerTransport transport;
+
+  @Param({"50", "200", "500"})
+  private int streams;
+
+  private final LongAdder     received = new LongAdder();
+  private final List<Channel> clients  = new ArrayList<>();
+
+  private ByteBuf        frame;
+  private EventLoopGroup bossGroup;
+  private EventLoopGroup workerGroup;
+  private EventLoopGroup clientGroup;
+
+  private static class FloodHandler extends ChannelInboundHandlerAdapter {
+    private final ByteBuf frame;
+
+    public FloodHandler(ByteBuf frame) {
+      this.frame = frame;
+    }
+
+    private void flood(ChannelHandlerContext context) {
+      while (context.channel().isWritable()) {
+        context.write(frame.retainedDuplicate());
+      }
+      context.flush();
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext context) {
+      flood(context);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext context) {
+      flood(context);
+    }
+  }
+
+  private class CountingHandler extends ChannelInboundHandlerAdapter {
+    @Override
+    public void channelRead(ChannelHandlerContext context, Object message) {
+      ByteBuf bytes = (ByteBuf) message;
+      received.add(bytes.readableBytes());
+      bytes.release();
+    }
+  }
+
+  @Setup
+  public void setup() throws InterruptedException {
+    if (!transport.isAvailable()) {
+      throw new IllegalStateException(transport + " transport is not available on this host");
+    }
+
+    EmbeddedChannel encoder = new EmbeddedChannel(BaseMessageEncoder.INSTANCE);
+    encoder.writeOutbound(new ProtoFactory().samples(SAMPLES_PER_MESSAGE));
+    frame = encoder.readOutbound();
+    encoder.finishAndReleaseAll();
+
+    int highWater = QUEUE_SIZE * frame.readableBytes();
+    bossGroup     = transport.newEventLoopGroup(1);
+    workerGroup   = transport.newEventLoopGroup(0);
+    clientGroup   = transport.newEventLoopGroup(0);
+
+    Channel server = new ServerBootstrap()
+        .group(bossGroup, workerGroup)
+        .channel(transport.getServerChannelClass())
+        .childOption(ChannelOption.TCP_NODELAY, true)
+        .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+        .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(highWater >> 1, highWater))
+        .childHandler(new ChannelInitializer<Channel>() {
+          @Override
+          public void initChannel(Channel channel) {
+            channel.pipeline().addLast(new FloodHandler(frame));
+          }
+        })
+        .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+
+    Bootstrap client = new Bootstrap()
+        .group(clientGroup)
+        .channel(transport.getChannelClass())
+        .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+        .handler(new ChannelInitializer<Channel>() {
+          @Override
+          public void initChannel(Channel channel) {
+            channel.pipeline().addLast(new CountingHandler());
+          }
+        });
+
+    for (int i = 0; i < streams; i++) {
+      clients.add(client.connect(server.localAddress()).sync().channel());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(MIB_PER_INVOCATION)
+  public long receive() {
+    long target = received.sum() + ((long) MIB_PER_INVOCATION * MIB);
+    long sum;
+
+    while ((sum = received.sum()) < target) {
+      LockSupport.parkNanos(50_000l);
+    }
+
+    return sum;
+  }
+
+  @TearDown
+  public void tearDown() {
+    clients.forEach(Channel::close);
+    if (clientGroup != null) {
+      clientGroup.shutdownGracefully().syncUninterruptibly();
+      workerGroup.shutdownGracefully().syncUninterruptibly();
+      bossGroup.shutdownGracefully().syncUninterruptibly();
+    }
+    if (frame != null) {
+      frame.release();
+    }
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.capnp;
+
+import org.capnproto.MessageBuilder;
+import org.capnproto.Serialize;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
+
+/**
+ * Messages built and serialized, or read back, per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtoFactoryBenchmark {
+
+  @Param({"250", "2000"})
+  private int samplesPerMessage;
+
+  private final ProtoFactory proto = new ProtoFactory();
+
+  private ByteBuffer          encoded;
+  private WritableByteChannel encodedChannel;
+  private ByteBuffer          samplesMessage;
+  private ByteBuffer          requestMessage;
+
+  private static ByteBuffer serialize(MessageBuilder message) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) Serialize.computeSerializedSizeInWords(message) * 8);
+    Serialize.write(new BufferChannel(buffer), message);
+    buffer.flip();
+    return buffer;
+  }
+
+  private static class BufferChannel implements WritableByteChannel {
+    private final ByteBuffer buffer;
+
+    public BufferChannel(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+      int written = src.remaining();
+      buffer.put(src);
+      return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() { }
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    samplesMessage = serialize(proto.samples(samplesPerMessage));
+    requestMessage = serialize(proto.channelRequest(proto.channelRequest(9001d, 12_500d, 48_000l, 150l)));
+    encoded        = ByteBuffer.allocate(samplesMessage.remaining());
+    encodedChannel = new BufferChannel(encoded);
+  }
+
+  @Benchmark
+  public int encodeSamples() throws IOException {
+    MessageBuilder message = proto.samples(samplesPerMessage);
+    encoded.clear();
+    Serialize.write(encodedChannel, message);
+    return encoded.position();
+  }
+
+  @Benchmark
+  public int decodeSamples() throws IOException {
+    samplesMessage.rewind();
+    return Serialize.read(samplesMessage).getRoot(BaseMessage.factory)
+                    .getSamples().getSamples().size();
+  }
+
+  @Benchmark
+  public long decodeChannelRequest() throws IOException {
+    requestMessage.rewind();
+    return Serialize.read(requestMessage).getRoot(BaseMessage.factory)
+                    .getChannelRequest().getSampleRate();
+  }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.chnlzr.resample.SamplesSink;
+import org.anhonesteffort.dsp.sample.SdrSamplesSource;
+import org.anhonesteffort.dsp.util.ChannelSpec;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Channel allocate and release round trips per second with every benchmark
+ * thread contending for the same controller.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class SamplesSourceControllerBenchmark {
+
+  private static final ChannelSpec CAPABILITIES = new ChannelSpec(500_000_000d, 2_400_000d, 2_400_000l);
+
+  @State(Scope.Benchmark)
+  public static class Controller {
+    private SamplesSourceController controller;
+
+    @Setup
+    public void setup() {
+      SdrSamplesSource source   = Mockito.mock(SdrSamplesSource.class, Mockito.withSettings().stubOnly());
+      SinkHost         sinkHost = Mockito.mock(SinkHost.class, Mockito.withSettings().stubOnly());
+
+      Mockito.when(source.getCapabilities()).thenReturn(CAPABILITIES);
+      Mockito.when(source.tryTune(Mockito.any())).thenReturn(CAPABILITIES);
+      Mockito.when(sinkHost.addSink(Mockito.any())).thenReturn(true);
+
+      controller = new SamplesSourceController(source, sinkHost, Integer.MAX_VALUE, 0d);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Channel {
+    private SamplesSink sink;
+
+    @Setup
+    public void setup(ThreadParams thread) {
+      double      frequency = CAPABILITIES.getMinFreq() + 100_000d + (thread.getThreadIndex() * 25_000d);
+      ChannelSpec spec      = new ChannelSpec(frequency, 12_500d, 48_000l);
+
+      sink = Mockito.mock(SamplesSink.class, Mockito.withSettings().stubOnly());
+      Mockito.when(sink.getSpec()).thenReturn(spec);
+    }
+  }
+
+  @Benchmark
+  public int configureAndRelease(Controller controller, Channel channel) {
+    int error = controller.controller.configureSourceForSink(channel.sink);
+    controller.controller.releaseSink(channel.sink);
+    return error;
+  }
+
+}
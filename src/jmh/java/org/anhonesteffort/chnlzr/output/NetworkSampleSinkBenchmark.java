@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.anhonesteffort.chnlzr.capnp.BaseMessageEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Channel samples packed and encoded per second, ops are samples.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkSampleSinkBenchmark {
+
+  private static final int BLOCK_SIZE = 2_000;
+
+  @Param({"250", "2000"})
+  private int samplesPerMessage;
+
+  @Param({"false", "true"})
+  private boolean directFraming;
+
+  private EmbeddedChannel channel;
+  private SampleBlockSink sink;
+  private float[]         block;
+
+  @Setup
+  public void setup() {
+    channel = new EmbeddedChannel(BaseMessageEncoder.INSTANCE, new ChannelInboundHandlerAdapter());
+    ClientWriteQueue queue = new ClientWriteQueue(channel.pipeline().lastContext(), 16);
+
+    if (directFraming) {
+      sink = new DirectNetworkSampleSink(
+          queue, SamplesFrameTemplate.forEncoder(BaseMessageEncoder.INSTANCE, samplesPerMessage).get()
+      );
+    } else {
+      sink = new NetworkSampleSink(queue, samplesPerMessage);
+    }
+
+    block = new float[BLOCK_SIZE * 2];
+    for (int i = 0; i < block.length; i++) {
+      block[i] = (float) Math.sin(i * 0.01d);
+    }
+
+    sink.onStateChange(48_000l, 0d);
+    drain();
+  }
+
+  private int drain() {
+    int    written = 0;
+    Object message;
+
+    while ((message = channel.readOutbound()) != null) {
+      written++;
+      ReferenceCountUtil.release(message);
+    }
+
+    return written;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BLOCK_SIZE)
+  public int consume() {
+    sink.consume(block, BLOCK_SIZE);
+    return drain();
+  }
+
+  @TearDown
+  public void tearDown() {
+    channel.finishAndReleaseAll();
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples payloads compressed per second, ops are samples. The payloadBytes
+ * and compressedBytes counters give the compression ratio. signal is "tone",
+ * "noise" or the path of a raw big endian float32 I/Q recording, for example
+ * -p signal=/data/p25-control.iq.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleCompressionBenchmark {
+
+  private static final int SAMPLES_PER_MESSAGE = 2_000;
+  private static final int MESSAGE_COUNT       = 64;
+
+  @Param({"FLOAT32", "INT16", "INT8"})
+  private SampleFormat format;
+
+  @Param({"DEFLATE", "DELTA_DEFLATE"})
+  private SampleCompression compression;
+
+  @Param({"tone", "noise"})
+  private String signal;
+
+  private SampleCompressor compressor;
+  private ByteBuffer[]     payloads;
+  private int              next = 0;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Bytes {
+    public long payloadBytes;
+    public long compressedBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      payloadBytes    = 0l;
+      compressedBytes = 0l;
+    }
+  }
+
+  private float[] samples() throws IOException {
+    float[] samples = new float[SAMPLES_PER_MESSAGE * MESSAGE_COUNT * 2];
+    Random  random  = new Random(1337l);
+
+    if (signal.equals("tone")) {
+      for (int i = 0; i < samples.length; i += 2) {
+        samples[i]     = (float) (0.5d * Math.cos(i * 0.01d) + (random.nextGaussian() * 0.001d));
+        samples[i + 1] = (float) (0.5d * Math.sin(i * 0.01d) + (random.nextGaussian() * 0.001d));
+      }
+    } else if (signal.equals("noise")) {
+      for (int i = 0; i < samples.length; i++) {
+        samples[i] = (float) (random.nextGaussian() * 0.1d);
+      }
+    } else {
+      ByteBuffer recording = ByteBuffer.wrap(Files.readAllBytes(Paths.get(signal)));
+      for (int i = 0; i < samples.length; i++) {
+        if (recording.remaining() < 4) { recording.rewind(); }
+        samples[i] = recording.getFloat();
+      }
+    }
+
+    return samples;
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    float[]       samples = samples();
+    float[]       message = new float[SAMPLES_PER_MESSAGE * 2];
+    SampleEncoder encoder = new SampleEncoder(format, SAMPLES_PER_MESSAGE);
+
+    compressor = new SampleCompressor(compression, format);
+    payloads   = new ByteBuffer[MESSAGE_COUNT];
+
+    for (int i = 0; i < MESSAGE_COUNT; i++) {
+      System.arraycopy(samples, i * message.length, message, 0, message.length);
+      payloads[i] = ByteBuffer.allocate(format.getEncodedLength(SAMPLES_PER_MESSAGE));
+      encoder.encode(message, SAMPLES_PER_MESSAGE, payloads[i]);
+      payloads[i].flip();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SAMPLES_PER_MESSAGE)
+  public ByteBuffer compress(Bytes bytes) {
+    ByteBuffer payload    = payloads[next];
+    ByteBuffer compressed = compressor.compress(payload);
+
+    next                   = (next + 1) % MESSAGE_COUNT;
+    bytes.payloadBytes    += payload.remaining();
+    bytes.compressedBytes += compressed.remaining();
+
+    return compressed;
+  }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Channel samples converted to each wire format per second, ops are samples.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleEncoderBenchmark {
+
+  private static final int SAMPLES_PER_MESSAGE = 2_000;
+
+  @Param({"FLOAT32", "INT16", "INT8", "BFP"})
+  private SampleFormat format;
+
+  private SampleEncoder encoder;
+  private float[]       block;
+  private ByteBuffer    message;
+
+  @Setup
+  public void setup() {
+    encoder = new SampleEncoder(format, SAMPLES_PER_MESSAGE);
+    message = ByteBuffer.allocate(format.getEncodedLength(SAMPLES_PER_MESSAGE));
+    block   = new float[SAMPLES_PER_MESSAGE * 2];
+
+    for (int i = 0; i < block.length; i++) {
+      block[i] = (float) Math.sin(i * 0.01d);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SAMPLES_PER_MESSAGE)
+  public ByteBuffer encode() {
+    message.clear();
+    encoder.encode(block, SAMPLES_PER_MESSAGE, message);
+    return message;
+  }
+
+}
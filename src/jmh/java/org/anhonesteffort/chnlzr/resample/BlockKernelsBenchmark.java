@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples per second through each channelizer kernel, ops are samples. The
+ * vector kernels need the vector profile and a JVM started with
+ * --add-modules jdk.incubator.vector, pass it through -jvmArgsAppend.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockKernelsBenchmark {
+
+  private static final int BLOCK_SIZE = 2_000;
+
+  @Param({"scalar", "vector"})
+  private String kernelType;
+
+  private BlockKernels kernels;
+  private double[]     tableCos;
+  private double[]     tableSin;
+  private double[]     inPhase;
+  private double[]     quadrature;
+  private long[]       fixed;
+  private long[]       state;
+
+  @Setup
+  public void setup() throws Exception {
+    if (kernelType.equals("scalar")) {
+      kernels = new ScalarBlockKernels();
+    } else if (ChannelizerKernel.getDefaultKernels().getClass() == ScalarBlockKernels.class) {
+      throw new IllegalStateException("vector kernels unavailable, see --add-modules jdk.incubator.vector");
+    } else {
+      kernels = ChannelizerKernel.getDefaultKernels();
+    }
+
+    Random random = new Random(1337l);
+    tableCos   = new double[BLOCK_SIZE];
+    tableSin   = new double[BLOCK_SIZE];
+    inPhase    = new double[BLOCK_SIZE];
+    quadrature = new double[BLOCK_SIZE];
+    fixed      = new long[BLOCK_SIZE];
+    state      = new long[ChannelizerKernel.STAGES];
+
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      tableCos[i]   = Math.cos(i * 0.01d);
+      tableSin[i]   = Math.sin(i * 0.01d);
+      inPhase[i]    = (random.nextDouble() * 2d) - 1d;
+      quadrature[i] = (random.nextDouble() * 2d) - 1d;
+      fixed[i]      = random.nextInt();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BLOCK_SIZE)
+  public double mix() {
+    kernels.mix(inPhase, quadrature, 0, tableCos, tableSin, 0, 0.6d, 0.8d, BLOCK_SIZE);
+    return inPhase[0];
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BLOCK_SIZE)
+  public long toFixed() {
+    kernels.toFixed(inPhase, fixed, BLOCK_SIZE, 16_777_216d);
+    return fixed[0];
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BLOCK_SIZE)
+  public long integrate() {
+    kernels.integrate(state, fixed, BLOCK_SIZE);
+    return state[0];
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BLOCK_SIZE)
+  public long comb() {
+    kernels.comb(state, fixed, BLOCK_SIZE);
+    return state[0];
+  }
+
+}
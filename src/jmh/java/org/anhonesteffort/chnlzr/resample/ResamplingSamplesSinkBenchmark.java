@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.anhonesteffort.chnlzr.output.SampleBlockSink;
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source samples consumed per second by one channel sink, ops are samples.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResamplingSamplesSinkBenchmark {
+
+  private static final int    BLOCK_SIZE       = 2_000;
+  private static final double SOURCE_FREQUENCY = 100_000_000d;
+
+  @Param({"1200000", "2400000"})
+  private long sourceRate;
+
+  @Param({"12500", "48000", "200000"})
+  private long channelRate;
+
+  @Param({"COMPLEX", "BLOCK"})
+  private ResamplingMode mode;
+
+  private SamplesSink sink;
+  private Samples     samples;
+  private float[]     block;
+  private float       accumulator;
+
+  private class AccumulatingSink implements SampleBlockSink {
+    @Override
+    public void onStateChange(long sampleRate, double frequency) { }
+
+    @Override
+    public void consume(ComplexNumber sample) {
+      accumulator += sample.getInPhase();
+    }
+
+    @Override
+    public void consume(float[] samples, int count) {
+      accumulator += samples[0];
+    }
+  }
+
+  @Setup
+  public void setup() {
+    ProtoFactory proto   = new ProtoFactory();
+    double       channel = SOURCE_FREQUENCY + (sourceRate / 8d);
+
+    switch (mode) {
+      case BLOCK:
+        sink = new BlockResamplingSamplesSink(
+            proto.channelRequest(channel, channelRate / 2d, channelRate, 150l), new AccumulatingSink()
+        );
+        break;
+
+      default:
+        sink = new ResamplingSamplesSink(
+            proto.channelRequest(channel, channelRate / 2d, channelRate, 150l), new AccumulatingSink()
+        );
+    }
+
+    samples = new Samples(new ComplexNumber[BLOCK_SIZE]);
+    block   = new float[BLOCK_SIZE * 2];
+
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      float inPhase    = (float) Math.cos(i * 0.01d);
+      float quadrature = (float) Math.sin(i * 0.01d);
+
+      samples.getSamples()[i] = new ComplexNumber(inPhase, quadrature);
+      block[(i << 1)]         = inPhase;
+      block[(i << 1) + 1]     = quadrature;
+    }
+
+    sink.onStateChange(sourceRate, SOURCE_FREQUENCY);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BLOCK_SIZE)
+  public float consume() {
+    if (mode == ResamplingMode.BLOCK) {
+      ((BlockSamplesSink) sink).consume(block, BLOCK_SIZE);
+    } else {
+      sink.consume(samples);
+    }
+    return accumulator;
+  }
+
+}
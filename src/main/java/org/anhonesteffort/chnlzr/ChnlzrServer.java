@@ -22,83 +22,138 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.timeout.IdleStateHandler;
 import org.anhonesteffort.chnlzr.capnp.BaseMessageDecoder;
 import org.anhonesteffort.chnlzr.capnp.BaseMessageEncoder;
+import org.anhonesteffort.chnlzr.input.DspWorkerPool;
 import org.anhonesteffort.chnlzr.input.InputFactory;
-import org.anhonesteffort.chnlzr.input.SamplesSourceController;
+import org.anhonesteffort.chnlzr.input.SourceRouter;
+import org.anhonesteffort.chnlzr.metrics.ChnlzrMetrics;
+import org.anhonesteffort.chnlzr.metrics.MetricsServer;
 import org.anhonesteffort.chnlzr.netty.IdleStateHeartbeatWriter;
+import org.anhonesteffort.chnlzr.output.SampleCompression;
+import org.anhonesteffort.chnlzr.output.SampleCompressionEncoder;
+import org.anhonesteffort.chnlzr.replay.SamplesRecorder;
 import org.anhonesteffort.chnlzr.resample.SamplesSinkFactory;
 import org.anhonesteffort.dsp.sample.SdrSamplesSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class ChnlzrServer {
 
+  private static final Logger log = LoggerFactory.getLogger(ChnlzrServer.class);
+
   private final CriticalCallback criticalCallback = new CriticalCallback();
-  private final ListeningExecutorService sourcePool = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+  private final ChnlzrMetrics    metrics          = new ChnlzrMetrics();
 
-  private final ChnlzrServerConfig      config;
-  private final SdrSamplesSource        source;
-  private final SamplesSourceController sourceController;
-  private final SamplesSinkFactory      resampling;
+  private final ChnlzrServerConfig        config;
+  private final List<SdrSamplesSource>    sources;
+  private final List<DspWorkerPool>       workerPools;
+  private final ListeningExecutorService  sourcePool;
+  private final SourceRouter              sourceRouter;
+  private final SamplesSinkFactory        resampling;
+  private final MetricsServer             metricsServer;
+  private final Optional<SamplesRecorder> recorder;
 
   public ChnlzrServer(ChnlzrServerConfig config) throws IllegalStateException {
-    this.config = config;
-    InputFactory inputFactory = new InputFactory(config, criticalCallback);
-
-    if (inputFactory.getSource().isPresent()) {
-      source           = inputFactory.getSource().get();
-      sourceController = inputFactory.getSourceController().get();
-      resampling       = new SamplesSinkFactory(config);
+    this.config   = config;
+    metricsServer = new MetricsServer(metrics);
+    InputFactory inputFactory = new InputFactory(config, criticalCallback, metrics.source());
+
+    if (inputFactory.getRouter().isPresent()) {
+      sources      = inputFactory.getSources();
+      workerPools  = inputFactory.getWorkerPools();
+      sourceRouter = inputFactory.getRouter().get();
+      recorder     = inputFactory.getRecorder();
+      resampling   = new SamplesSinkFactory(config, metrics);
+      sourcePool   = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(sources.size()));
     } else {
       throw new IllegalStateException("no samples sources available");
     }
   }
 
+  private ServerTransport transport() {
+    if (config.transport().isAvailable()) {
+      return config.transport();
+    } else {
+      log.warn(config.transport() + " transport is not available, falling back to " + ServerTransport.NIO);
+      return ServerTransport.NIO;
+    }
+  }
+
   @SuppressWarnings("unchecked")
   private void run() throws InterruptedException {
-    ListenableFuture sourceFuture = sourcePool.submit(source);
-    Futures.addCallback(sourceFuture, criticalCallback);
+    List<ListenableFuture> sourceFutures = new ArrayList<>(sources.size());
+    for (SdrSamplesSource source : sources) {
+      ListenableFuture sourceFuture = sourcePool.submit(source);
+      Futures.addCallback(sourceFuture, criticalCallback);
+      sourceFutures.add(sourceFuture);
+    }
 
-    EventLoopGroup  bossGroup   = new NioEventLoopGroup();
-    EventLoopGroup  workerGroup = new NioEventLoopGroup();
-    ServerBootstrap bootstrap   = new ServerBootstrap();
+    metricsServer.start(config.metricsAddress(), config.metricsPort(), config.metricsLogIntervalMs());
+
+    ServerTransport  transport   = transport();
+    EventLoopGroup   bossGroup   = transport.newEventLoopGroup(config.bossThreads());
+    EventLoopGroup   workerGroup = transport.newEventLoopGroup(config.workerThreads());
+    ServerBootstrap  bootstrap   = new ServerBootstrap();
+    int              highWater   = config.writeBufferHighWaterMark();
+    ByteBufAllocator allocator   = config.pooledAllocator() ?
+        PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
 
     try {
 
       bootstrap.group(bossGroup, workerGroup)
-               .channel(NioServerSocketChannel.class)
+               .channel(transport.getServerChannelClass())
                .option(ChannelOption.SO_BACKLOG, 128)
                .childOption(ChannelOption.SO_KEEPALIVE, true)
                .childOption(ChannelOption.TCP_NODELAY, true)
+               .childOption(ChannelOption.ALLOCATOR, allocator)
+               .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(highWater >> 1, highWater))
                .childHandler(new ChannelInitializer<SocketChannel>() {
                  @Override
                  public void initChannel(SocketChannel ch) {
                    ch.pipeline().addLast("idle state", new IdleStateHandler(0, 0, config.idleStateThresholdMs(), TimeUnit.MILLISECONDS));
                    ch.pipeline().addLast("heartbeat",  IdleStateHeartbeatWriter.INSTANCE);
                    ch.pipeline().addLast("encoder",    BaseMessageEncoder.INSTANCE);
+                   if (config.sampleCompression() != SampleCompression.NONE) {
+                     ch.pipeline().addLast("compressor", new SampleCompressionEncoder(config.sampleCompression(), config.sampleFormat()));
+                   }
                    ch.pipeline().addLast("decoder",    new BaseMessageDecoder());
-                   ch.pipeline().addLast("handler",    new ServerHandler(config, resampling, sourceController));
+                   ch.pipeline().addLast("handler",    new ServerHandler(config, resampling, sourceRouter, metrics));
                  }
                });
 
+      if (config.sendBufferSize() > 0) {
+        bootstrap.childOption(ChannelOption.SO_SNDBUF, config.sendBufferSize());
+      }
+
+      log.info("serving on " + transport + " transport, write buffer high water mark " + highWater + " bytes");
       ChannelFuture channelFuture = bootstrap.bind(config.serverPort()).sync();
       channelFuture.channel().closeFuture().sync();
 
     } finally {
       workerGroup.shutdownGracefully();
       bossGroup.shutdownGracefully();
-      sourceFuture.cancel(true);
+      metricsServer.stop();
+      sourceFutures.forEach(sourceFuture -> sourceFuture.cancel(true));
       sourcePool.shutdownNow();
+      workerPools.forEach(DspWorkerPool::shutdown);
+      recorder.ifPresent(SamplesRecorder::close);
     }
 
     System.exit(1);
@@ -17,32 +17,149 @@
 
 package org.anhonesteffort.chnlzr;
 
+import org.anhonesteffort.chnlzr.input.ChannelizerMode;
+import org.anhonesteffort.chnlzr.input.SourceWaitStrategy;
+import org.anhonesteffort.chnlzr.output.AdaptiveRateSampleSink;
+import org.anhonesteffort.chnlzr.output.SampleCompression;
+import org.anhonesteffort.chnlzr.output.SampleFormat;
+import org.anhonesteffort.chnlzr.replay.ReplayPacing;
+import org.anhonesteffort.chnlzr.resample.ResamplingMode;
+import org.anhonesteffort.chnlzr.resample.RetuneMode;
+import org.anhonesteffort.dsp.util.ChannelSpec;
+
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class ChnlzrServerConfig extends ChnlzrConfig {
 
-  private final int    serverPort;
-  private final int    samplesPerMessage;
-  private final int    ringBufferSize;
-  private final int    sourceCpuAffinity;
-  private final int    cicPoolSize;
-  private final double latitude;
-  private final double longitude;
-  private final int    polarization;
-  private final double dcOffset;
+  private final int                   serverPort;
+  private final ServerTransport       transport;
+  private final int                   bossThreads;
+  private final int                   workerThreads;
+  private final boolean               pooledAllocator;
+  private final int                   sendBufferSize;
+  private final int                   maxChannelsPerConnection;
+  private final int                   samplesPerMessage;
+  private final int                   ringBufferSize;
+  private final int[]                 sourceCpuAffinity;
+  private final int                   sourceCount;
+  private final int                   cicPoolSize;
+  private final double                latitude;
+  private final double                longitude;
+  private final int                   polarization;
+  private final double                dcOffset;
+  private final ResamplingMode        resamplingMode;
+  private final RetuneMode            retuneMode;
+  private final ChannelizerMode       channelizerMode;
+  private final int                   channelizerBands;
+  private final int                   channelizerMaxSinks;
+  private final boolean               directSampleFraming;
+  private final SampleFormat          sampleFormat;
+  private final SampleCompression     sampleCompression;
+  private final int                   adaptiveRateSteps;
+  private final Optional<String>      udpOutputAddress;
+  private final int                   udpOutputPort;
+  private final int                   udpMtu;
+  private final int                   udpMulticastTtl;
+  private final Optional<String>      udpMulticastInterface;
+  private final int                   dspWorkerCount;
+  private final int[]                 dspWorkerCpuAffinity;
+  private final SourceWaitStrategy    waitStrategy;
+  private final String                metricsAddress;
+  private final int                   metricsPort;
+  private final long                  metricsLogIntervalMs;
+  private final boolean               admissionPlanner;
+  private final Optional<ChannelSpec> bandOfInterest;
+  private final List<String>          replayFiles;
+  private final ReplayPacing          replayPacing;
+  private final Optional<String>      recordFile;
+  private final long                  historyMs;
+  private final int                   historyMaxMb;
 
   public ChnlzrServerConfig() throws IOException {
     super();
 
-    serverPort        = Integer.parseInt(properties.getProperty("server_port"));
-    samplesPerMessage = Integer.parseInt(properties.getProperty("samples_per_message"));
-    ringBufferSize    = Integer.parseInt(properties.getProperty("ring_buffer_size"));
-    sourceCpuAffinity = Integer.parseInt(properties.getProperty("source_cpu_affinity"));
-    cicPoolSize       = Integer.parseInt(properties.getProperty("cic_pool_size"));
-    latitude          = Double.parseDouble(properties.getProperty("latitude"));
-    longitude         = Double.parseDouble(properties.getProperty("longitude"));
-    polarization      = Integer.parseInt(properties.getProperty("polarization"));
-    dcOffset          = Double.parseDouble(properties.getProperty("dc_offset"));
+    serverPort               = Integer.parseInt(properties.getProperty("server_port"));
+    transport                = ServerTransport.fromString(properties.getProperty("transport", "nio"));
+    bossThreads              = Integer.parseInt(properties.getProperty("boss_threads", "1"));
+    workerThreads            = Integer.parseInt(properties.getProperty("worker_threads", "0"));
+    pooledAllocator          = Boolean.parseBoolean(properties.getProperty("pooled_allocator", "true"));
+    sendBufferSize           = Integer.parseInt(properties.getProperty("so_sndbuf", "0"));
+    maxChannelsPerConnection = Integer.parseInt(properties.getProperty("max_channels_per_connection", "1"));
+    samplesPerMessage        = Integer.parseInt(properties.getProperty("samples_per_message"));
+    ringBufferSize           = Integer.parseInt(properties.getProperty("ring_buffer_size"));
+    sourceCpuAffinity        = parseIntList(properties.getProperty("source_cpu_affinity"));
+    sourceCount              = Integer.parseInt(properties.getProperty("source_count", "1"));
+    cicPoolSize              = Integer.parseInt(properties.getProperty("cic_pool_size"));
+    latitude                 = Double.parseDouble(properties.getProperty("latitude"));
+    longitude                = Double.parseDouble(properties.getProperty("longitude"));
+    polarization             = Integer.parseInt(properties.getProperty("polarization"));
+    dcOffset                 = Double.parseDouble(properties.getProperty("dc_offset"));
+    retuneMode               = RetuneMode.valueOf(properties.getProperty("retune_mode", "reset").toUpperCase());
+    resamplingMode           = ResamplingMode.valueOf(properties.getProperty(
+        "resampling_mode", (retuneMode == RetuneMode.SEAMLESS) ? "block" : "complex"
+    ).toUpperCase());
+    channelizerMode          = ChannelizerMode.valueOf(properties.getProperty("channelizer", "direct").toUpperCase());
+    channelizerBands         = Integer.parseInt(properties.getProperty("channelizer_bands", "64"));
+    channelizerMaxSinks      = Integer.parseInt(properties.getProperty("channelizer_max_sinks", "64"));
+    directSampleFraming      = Boolean.parseBoolean(properties.getProperty("direct_sample_framing", "false"));
+    sampleFormat             = SampleFormat.fromString(properties.getProperty("sample_format", "float32"));
+    sampleCompression        = SampleCompression.fromString(properties.getProperty("sample_compression", "none"));
+    adaptiveRateSteps        = Integer.parseInt(properties.getProperty("adaptive_rate_steps", "0"));
+    udpOutputAddress         = Optional.ofNullable(properties.getProperty("udp_output_address"));
+    udpOutputPort            = Integer.parseInt(properties.getProperty("udp_output_port", "7072"));
+    udpMtu                   = Integer.parseInt(properties.getProperty("udp_mtu", "1500"));
+    udpMulticastTtl          = Integer.parseInt(properties.getProperty("udp_multicast_ttl", "1"));
+    udpMulticastInterface    = Optional.ofNullable(properties.getProperty("udp_multicast_interface"));
+    dspWorkerCount           = Integer.parseInt(properties.getProperty("dsp_worker_count", "0"));
+    dspWorkerCpuAffinity     = parseIntList(properties.getProperty("dsp_worker_cpu_affinity", ""));
+    waitStrategy             = SourceWaitStrategy.fromString(properties.getProperty("wait_strategy", "blocking"));
+    metricsAddress           = properties.getProperty("metrics_address", "127.0.0.1");
+    metricsPort              = Integer.parseInt(properties.getProperty("metrics_port", "0"));
+    metricsLogIntervalMs     = Long.parseLong(properties.getProperty("metrics_log_interval_ms", "0"));
+    admissionPlanner         = Boolean.parseBoolean(properties.getProperty("admission_planner", "false"));
+    bandOfInterest           = parseBand(
+        properties.getProperty("band_of_interest_min_hz"), properties.getProperty("band_of_interest_max_hz")
+    );
+    replayFiles              = parseList(properties.getProperty("replay_file", ""));
+    replayPacing             = ReplayPacing.fromString(properties.getProperty("replay_pacing", "realtime"));
+    recordFile               = Optional.ofNullable(properties.getProperty("record_file"));
+    historyMs                = Long.parseLong(properties.getProperty("history_ms", "0"));
+    historyMaxMb             = Integer.parseInt(properties.getProperty("history_max_mb", "64"));
+
+    if (sourceCpuAffinity.length == 0) {
+      throw new IllegalArgumentException("source_cpu_affinity must list at least one cpu");
+    } else if (Integer.bitCount(ringBufferSize) != 1) {
+      throw new IllegalArgumentException("ring_buffer_size must be a power of two, not " + ringBufferSize);
+    } else if (adaptiveRateSteps > AdaptiveRateSampleSink.MAX_STEPS) {
+      throw new IllegalArgumentException("adaptive_rate_steps must be at most " + AdaptiveRateSampleSink.MAX_STEPS);
+    } else if (retuneMode == RetuneMode.SEAMLESS && resamplingMode == ResamplingMode.COMPLEX) {
+      throw new IllegalArgumentException("retune_mode seamless requires resampling_mode block");
+    }
+  }
+
+  private static Optional<ChannelSpec> parseBand(String minFreq, String maxFreq) {
+    if (minFreq == null || maxFreq == null) {
+      return Optional.empty();
+    } else {
+      return Optional.of(ChannelSpec.fromMinMax(Double.parseDouble(minFreq), Double.parseDouble(maxFreq)));
+    }
+  }
+
+  private static List<String> parseList(String list) {
+    return Arrays.stream(list.split(","))
+                 .map(String::trim)
+                 .filter(item -> !item.isEmpty())
+                 .collect(Collectors.toList());
+  }
+
+  private static int[] parseIntList(String list) {
+    return parseList(list).stream()
+                          .mapToInt(Integer::parseInt)
+                          .toArray();
   }
 
   public int serverPort() {
@@ -57,8 +174,15 @@ public class ChnlzrServerConfig extends ChnlzrConfig {
     return ringBufferSize;
   }
 
-  public int sourceCpuAffinity() {
-    return sourceCpuAffinity;
+  /**
+   * @return cpu to pin the source at index to, cycling through the configured list.
+   */
+  public int sourceCpuAffinity(int source) {
+    return sourceCpuAffinity[source % sourceCpuAffinity.length];
+  }
+
+  public int sourceCount() {
+    return sourceCount;
   }
 
   public int cicPoolSize() {
@@ -81,4 +205,151 @@ public class ChnlzrServerConfig extends ChnlzrConfig {
     return dcOffset;
   }
 
+  public ResamplingMode resamplingMode() {
+    return resamplingMode;
+  }
+
+  public RetuneMode retuneMode() {
+    return retuneMode;
+  }
+
+  public ChannelizerMode channelizerMode() {
+    return channelizerMode;
+  }
+
+  public int channelizerBands() {
+    return channelizerBands;
+  }
+
+  public int channelizerMaxSinks() {
+    return channelizerMaxSinks;
+  }
+
+  public boolean directSampleFraming() {
+    return directSampleFraming;
+  }
+
+  public ServerTransport transport() {
+    return transport;
+  }
+
+  public int bossThreads() {
+    return bossThreads;
+  }
+
+  public int workerThreads() {
+    return workerThreads;
+  }
+
+  public boolean pooledAllocator() {
+    return pooledAllocator;
+  }
+
+  public int sendBufferSize() {
+    return sendBufferSize;
+  }
+
+  public int maxChannelsPerConnection() {
+    return maxChannelsPerConnection;
+  }
+
+  /**
+   * @return outbound bytes a client channel may buffer before it turns
+   *         unwritable, room for client_write_queue_size samples messages.
+   */
+  public int writeBufferHighWaterMark() {
+    return Math.max(1, clientWriteQueueSize()) * sampleFormat.getEncodedLength(samplesPerMessage);
+  }
+
+  public SampleFormat sampleFormat() {
+    return sampleFormat;
+  }
+
+  public SampleCompression sampleCompression() {
+    return sampleCompression;
+  }
+
+  public int adaptiveRateSteps() {
+    return adaptiveRateSteps;
+  }
+
+  /**
+   * @return unicast address or multicast group to stream channel samples to,
+   *         empty to send samples over each client's connection.
+   */
+  public Optional<String> udpOutputAddress() {
+    return udpOutputAddress;
+  }
+
+  public int udpOutputPort() {
+    return udpOutputPort;
+  }
+
+  public int udpMtu() {
+    return udpMtu;
+  }
+
+  public int udpMulticastTtl() {
+    return udpMulticastTtl;
+  }
+
+  public Optional<String> udpMulticastInterface() {
+    return udpMulticastInterface;
+  }
+
+  public int dspWorkerCount() {
+    return dspWorkerCount;
+  }
+
+  public int[] dspWorkerCpuAffinity() {
+    return dspWorkerCpuAffinity;
+  }
+
+  public SourceWaitStrategy waitStrategy() {
+    return waitStrategy;
+  }
+
+  public String metricsAddress() {
+    return metricsAddress;
+  }
+
+  public int metricsPort() {
+    return metricsPort;
+  }
+
+  public long metricsLogIntervalMs() {
+    return metricsLogIntervalMs;
+  }
+
+  public boolean admissionPlanner() {
+    return admissionPlanner;
+  }
+
+  public Optional<ChannelSpec> bandOfInterest() {
+    return bandOfInterest;
+  }
+
+  /**
+   * @return recording to replay as the source at index, if one is listed for it.
+   */
+  public Optional<String> replayFile(int source) {
+    return (source < replayFiles.size()) ? Optional.of(replayFiles.get(source)) : Optional.empty();
+  }
+
+  public ReplayPacing replayPacing() {
+    return replayPacing;
+  }
+
+  public Optional<String> recordFile() {
+    return recordFile;
+  }
+
+  public long historyMs() {
+    return historyMs;
+  }
+
+  public int historyMaxMb() {
+    return historyMaxMb;
+  }
+
 }
@@ -20,75 +20,212 @@ package org.anhonesteffort.chnlzr;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
-import org.anhonesteffort.chnlzr.netty.WriteQueuingContext;
-import org.anhonesteffort.chnlzr.input.SamplesSourceController;
+import org.anhonesteffort.chnlzr.input.SourceRouter;
+import org.anhonesteffort.chnlzr.metrics.ChnlzrMetrics;
+import org.anhonesteffort.chnlzr.metrics.ClientMetrics;
+import org.anhonesteffort.chnlzr.output.ChannelMultiplexer;
+import org.anhonesteffort.chnlzr.output.ClientWriteQueue;
+import org.anhonesteffort.chnlzr.output.SampleCompression;
+import org.anhonesteffort.chnlzr.output.SampleEncoder;
+import org.anhonesteffort.chnlzr.output.SampleFormat;
 import org.anhonesteffort.chnlzr.resample.SamplesSink;
 import org.anhonesteffort.chnlzr.resample.SamplesSinkFactory;
 import org.capnproto.MessageBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
 import static org.anhonesteffort.chnlzr.capnp.Proto.ChannelRequest;
+import static org.anhonesteffort.chnlzr.capnp.Proto.Error;
 
+/**
+ * Serves one client connection. By default a connection carries a single
+ * channel and a second channel request closes it. With
+ * max_channels_per_connection above one, channels are multiplexed: each
+ * request allocates another channel whose id is its center frequency rounded
+ * to the hertz, a request for an id already allocated is refused, and a
+ * request with a sample rate of zero releases the channel with that id. Every
+ * run of samples is preceded by the state message of the channel it belongs
+ * to. Errors and release acknowledgements are preceded by a state message for
+ * the request's center frequency too, with a sample rate of zero unless a
+ * channel is open there. When udp_output_address is set a request with a
+ * negative max rate diff asks for its channel over datagrams, the magnitude
+ * is the max rate diff, and the connection is sent the datagram descriptor
+ * and state messages in place of samples. Servers not on float32 without
+ * compression follow capabilities with the sample encoding descriptor, written
+ * past the compressor so clients can read it before knowing the compression.
+ */
 public class ServerHandler extends ChannelInboundHandlerAdapter {
 
   private static final Logger       log   = LoggerFactory.getLogger(ServerHandler.class);
   private final        ProtoFactory proto = new ProtoFactory();
 
-  private final SamplesSinkFactory      sinks;
-  private final SamplesSourceController source;
-  private final MessageBuilder          capabilities;
-  private final int                     queueSize;
+  private final SamplesSinkFactory       sinks;
+  private final SourceRouter             source;
+  private final MessageBuilder           capabilities;
+  private final Optional<MessageBuilder> encoding;
+  private final int                      queueSize;
+  private final int                      maxChannels;
+  private final ChnlzrMetrics            metrics;
 
-  private Optional<ChannelAllocationRef> allocation = Optional.empty();
+  private final Map<Long, ChannelAllocationRef> allocations = new LinkedHashMap<>();
+  private       Optional<ChannelMultiplexer>    multiplexer = Optional.empty();
 
   public ServerHandler(
-      ChnlzrServerConfig config, SamplesSinkFactory sinks, SamplesSourceController source
+      ChnlzrServerConfig config, SamplesSinkFactory sinks, SourceRouter source, ChnlzrMetrics metrics
   ) {
-    this.sinks     = sinks;
-    this.source    = source;
-    this.queueSize = config.clientWriteQueueSize();
-    capabilities   = proto.capabilities(
+    this.sinks       = sinks;
+    this.source      = source;
+    this.metrics     = metrics;
+    this.queueSize   = config.clientWriteQueueSize();
+    this.maxChannels = Math.max(1, config.maxChannelsPerConnection());
+    capabilities     = proto.capabilities(
         config.latitude(),     config.longitude(),
         config.polarization(), source.getCapabilities().getMinFreq(),
         source.getCapabilities().getMaxFreq(), source.getCapabilities().getSampleRate()
     );
+
+    if (config.sampleFormat() != SampleFormat.FLOAT32 || config.sampleCompression() != SampleCompression.NONE) {
+      encoding = Optional.of(SampleEncoder.descriptor(config.sampleFormat(), config.sampleCompression()));
+    } else {
+      encoding = Optional.empty();
+    }
+  }
+
+  public ServerHandler(
+      ChnlzrServerConfig config, SamplesSinkFactory sinks, SourceRouter source
+  ) {
+    this(config, sinks, source, new ChnlzrMetrics());
   }
 
   @Override
   public void channelActive(ChannelHandlerContext context) {
-    context.writeAndFlush(capabilities);
+    context.write(capabilities);
+    encoding.ifPresent(descriptor -> {
+      ChannelHandlerContext compressor = context.pipeline().context("compressor");
+      ((compressor != null) ? compressor : context).write(descriptor);
+    });
+    context.flush();
   }
 
-  private void handleChannelRequest(ChannelHandlerContext context, ChannelRequest.Reader request) {
-    if (allocation.isPresent()) {
-      log.warn("received channel request after channel allocation, closing");
-      context.close();
+  private void writeError(ChannelHandlerContext context, double channelFrequency, int error) {
+    if (multiplexer.isPresent()) {
+      multiplexer.get().writeTagged(channelFrequency, proto.error(error));
+    } else {
+      context.writeAndFlush(proto.error(error));
+    }
+  }
+
+  private void allocate(
+      ChannelHandlerContext context, ChannelRequest.Reader request, ClientWriteQueue channelQueue
+  ) {
+    boolean datagram = request.getMaxRateDiff() < 0l;
+    if (datagram && !sinks.isDatagramAvailable()) {
+      log.warn(proto.spec(request) + " requested datagrams without udp_output_address configured");
+      multiplexer.ifPresent(mux -> mux.close(channelQueue));
+      metrics.remove(channelQueue.getMetrics());
+      writeError(context, request.getCenterFrequency(), Error.ERROR_INCAPABLE);
       return;
+    } else if (datagram) {
+      request = proto.channelRequest(
+          request.getCenterFrequency(), request.getBandwidth(), request.getSampleRate(), -request.getMaxRateDiff()
+      );
     }
 
-    WriteQueuingContext channelQueue = new WriteQueuingContext(context, queueSize);
-    SamplesSink         channelSink  = sinks.create(channelQueue, request);
-    int                 error        = source.configureSourceForSink(channelSink);
+    SamplesSink channelSink = sinks.create(channelQueue, request, datagram);
+    int         error       = source.configureSourceForSink(channelSink);
 
     if (error == 0x00) {
-      allocation = Optional.of(new ChannelAllocationRef(channelQueue, channelSink));
+      long channelId = ChannelMultiplexer.channelId(request.getCenterFrequency());
+      allocations.put(channelId, new ChannelAllocationRef(channelQueue, channelSink));
       log.info(proto.spec(request) + " channel sink started");
     } else {
-      context.writeAndFlush(proto.error(error));
+      if (sinks.release(channelQueue, channelSink)) {
+        source.releaseSink(channelSink);
+      }
+      multiplexer.ifPresent(mux -> mux.close(channelQueue));
+      metrics.remove(channelQueue.getMetrics());
+      writeError(context, request.getCenterFrequency(), error);
     }
   }
 
+  private void release(ChannelAllocationRef allocation) {
+    if (sinks.release(allocation.getChannelQueue(), allocation.getChannelSink())) {
+      source.releaseSink(allocation.getChannelSink());
+    }
+    multiplexer.ifPresent(mux -> mux.close(allocation.getChannelQueue()));
+    metrics.remove(allocation.getChannelQueue().getMetrics());
+    log.info(allocation.getChannelSink().getSpec() + " channel sink stopped");
+  }
+
+  private void handleChannelRequest(ChannelHandlerContext context, ChannelRequest.Reader request) {
+    if (!allocations.isEmpty()) {
+      log.warn("received channel request after channel allocation, closing");
+      context.close();
+      return;
+    }
+
+    String        client        = String.valueOf(context.channel().remoteAddress());
+    ClientMetrics clientMetrics = metrics.client(client);
+
+    allocate(context, request, new ClientWriteQueue(context, queueSize, clientMetrics));
+  }
+
+  private void handleMultiplexedRequest(ChannelHandlerContext context, ChannelRequest.Reader request) {
+    double               frequency = request.getCenterFrequency();
+    long                 channelId = ChannelMultiplexer.channelId(frequency);
+    ChannelAllocationRef allocated = allocations.get(channelId);
+
+    if (request.getSampleRate() == 0l) {
+      if (allocated != null) {
+        release(allocations.remove(channelId));
+      } else {
+        log.warn("received release for unallocated channel " + channelId);
+      }
+      if (multiplexer.isPresent()) {
+        multiplexer.get().writeReleased(frequency);
+      } else {
+        context.writeAndFlush(proto.state(0l, frequency));
+      }
+      return;
+    }
+
+    if (allocated != null) {
+      log.warn("refusing channel request for " + frequency + "hz, channel " + channelId + " is already allocated");
+      writeError(context, frequency, Error.ERROR_INCAPABLE);
+      return;
+    } else if (allocations.size() >= maxChannels) {
+      log.warn("received channel request beyond " + maxChannels + " channels per connection");
+      writeError(context, frequency, Error.ERROR_PROCESSING_UNAVAILABLE);
+      return;
+    }
+
+    if (!multiplexer.isPresent()) {
+      multiplexer = Optional.of(new ChannelMultiplexer(context));
+    }
+
+    String        client        = context.channel().remoteAddress() + "/" + channelId;
+    ClientMetrics clientMetrics = metrics.client(client);
+
+    allocate(context, request, multiplexer.get().open(frequency, queueSize, clientMetrics));
+  }
+
   @Override
   public void channelRead(ChannelHandlerContext context, Object request) {
     BaseMessage.Reader message = (BaseMessage.Reader) request;
 
     switch (message.getType()) {
       case CHANNEL_REQUEST:
-        handleChannelRequest(context, message.getChannelRequest());
+        if (maxChannels > 1) {
+          handleMultiplexedRequest(context, message.getChannelRequest());
+        } else {
+          handleChannelRequest(context, message.getChannelRequest());
+        }
         break;
 
       default:
@@ -99,15 +236,22 @@ public class ServerHandler extends ChannelInboundHandlerAdapter {
 
   @Override
   public void channelWritabilityChanged(ChannelHandlerContext context) {
-    allocation.ifPresent(alloc ->
-        alloc.getChannelQueue().onWritabilityChanged()
-    );
+    if (multiplexer.isPresent()) {
+      multiplexer.get().drain();
+    } else {
+      allocations.values().forEach(alloc ->
+          alloc.getChannelQueue().onWritabilityChanged()
+      );
+    }
   }
 
   @Override
   public void exceptionCaught(ChannelHandlerContext context, Throwable cause) {
-    if (allocation.isPresent()) {
-      log.error(allocation.get().getChannelSink().getSpec() + " caught unexpected exception, closing", cause);
+    if (!allocations.isEmpty()) {
+      String specs = allocations.values().stream()
+                                .map(alloc -> String.valueOf(alloc.getChannelSink().getSpec()))
+                                .collect(Collectors.joining(", "));
+      log.error(specs + " caught unexpected exception, closing", cause);
     } else {
       log.error("caught unexpected exception, closing", cause);
     }
@@ -116,23 +260,20 @@ public class ServerHandler extends ChannelInboundHandlerAdapter {
 
   @Override
   public void channelInactive(ChannelHandlerContext context) {
-    if (allocation.isPresent()) {
-      source.releaseSink(allocation.get().getChannelSink());
-      log.info(allocation.get().getChannelSink().getSpec() + " channel sink stopped");
-      allocation = Optional.empty();
-    }
+    allocations.values().forEach(this::release);
+    allocations.clear();
   }
 
   private static class ChannelAllocationRef {
-    private final WriteQueuingContext channelQueue;
+    private final ClientWriteQueue channelQueue;
     private final SamplesSink channelSink;
 
-    public ChannelAllocationRef(WriteQueuingContext channelQueue, SamplesSink channelSink) {
+    public ChannelAllocationRef(ClientWriteQueue channelQueue, SamplesSink channelSink) {
       this.channelQueue = channelQueue;
       this.channelSink  = channelSink;
     }
 
-    public WriteQueuingContext getChannelQueue() {
+    public ClientWriteQueue getChannelQueue() {
       return channelQueue;
     }
 
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.util.Arrays;
+
+/**
+ * Netty transports the server can bind with. The native transports are looked
+ * up reflectively so their jars only need to be on the classpath of hosts that
+ * use them, isAvailable() is false when a jar or its native library is missing.
+ */
+public enum ServerTransport {
+
+  NIO(
+      null,
+      NioEventLoopGroup.class.getName(),
+      NioServerSocketChannel.class.getName(),
+      NioSocketChannel.class.getName()
+  ),
+
+  EPOLL(
+      "io.netty.channel.epoll.Epoll",
+      "io.netty.channel.epoll.EpollEventLoopGroup",
+      "io.netty.channel.epoll.EpollServerSocketChannel",
+      "io.netty.channel.epoll.EpollSocketChannel"
+  ),
+
+  IO_URING(
+      "io.netty.incubator.channel.uring.IOUring",
+      "io.netty.incubator.channel.uring.IOUringEventLoopGroup",
+      "io.netty.incubator.channel.uring.IOUringServerSocketChannel",
+      "io.netty.incubator.channel.uring.IOUringSocketChannel"
+  );
+
+  private final String availability;
+  private final String eventLoopGroup;
+  private final String serverChannel;
+  private final String channel;
+
+  ServerTransport(String availability, String eventLoopGroup, String serverChannel, String channel) {
+    this.availability   = availability;
+    this.eventLoopGroup = eventLoopGroup;
+    this.serverChannel  = serverChannel;
+    this.channel        = channel;
+  }
+
+  /**
+   * @param name nio, epoll, io_uring or auto for the best available.
+   */
+  public static ServerTransport fromString(String name) {
+    String transport = name.trim().replace('-', '_').toUpperCase();
+    if (transport.equals("AUTO")) {
+      return bestAvailable();
+    } else {
+      return valueOf(transport);
+    }
+  }
+
+  public static ServerTransport bestAvailable() {
+    return Arrays.asList(IO_URING, EPOLL).stream()
+        .filter(ServerTransport::isAvailable)
+        .findFirst()
+        .orElse(NIO);
+  }
+
+  public boolean isAvailable() {
+    if (availability == null) {
+      return true;
+    }
+
+    try {
+      return (Boolean) Class.forName(availability).getMethod("isAvailable").invoke(null);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * @param threads event loop threads, zero for the netty default.
+   */
+  public EventLoopGroup newEventLoopGroup(int threads) {
+    try {
+      return (EventLoopGroup) Class.forName(eventLoopGroup).getConstructor(int.class).newInstance(threads);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(this + " transport is not available", e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public Class<? extends ServerChannel> getServerChannelClass() {
+    try {
+      return (Class<? extends ServerChannel>) Class.forName(serverChannel);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(this + " transport is not available", e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public Class<? extends Channel> getChannelClass() {
+    try {
+      return (Class<? extends Channel>) Class.forName(channel);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(this + " transport is not available", e);
+    }
+  }
+
+}
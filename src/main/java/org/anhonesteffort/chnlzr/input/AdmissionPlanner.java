@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.dsp.util.ChannelSpec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Chooses what to tune to when a new channel does not fit the current tune.
+ * Rather than the narrowest span covering the active channels the planner asks
+ * for a span that also keeps the current tune and covers the band of interest,
+ * so channels requested later within either are admitted without a retune.
+ */
+public class AdmissionPlanner {
+
+  private final boolean               enabled;
+  private final Optional<ChannelSpec> bandOfInterest;
+
+  public AdmissionPlanner(boolean enabled, Optional<ChannelSpec> bandOfInterest) {
+    this.enabled        = enabled;
+    this.bandOfInterest = bandOfInterest;
+  }
+
+  public static AdmissionPlanner disabled() {
+    return new AdmissionPlanner(false, Optional.empty());
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  private static ChannelSpec union(ChannelSpec a, ChannelSpec b) {
+    double minFreq = Math.min(a.getMinFreq(), b.getMinFreq());
+    double maxFreq = Math.max(a.getMaxFreq(), b.getMaxFreq());
+    long   rate    = Math.max(Math.max(a.getSampleRate(), b.getSampleRate()), (long) Math.ceil(maxFreq - minFreq));
+
+    return ChannelSpec.fromMinMax(minFreq, maxFreq, rate);
+  }
+
+  /**
+   * @param required span covering every active channel and the new channel.
+   * @param tuned    span the source is currently tuned to, if any.
+   * @return spans to try before falling back to required, most preferred first.
+   */
+  public List<ChannelSpec> plan(ChannelSpec required, Optional<ChannelSpec> tuned) {
+    List<ChannelSpec> plans = new ArrayList<>(3);
+    if (!enabled) {
+      return plans;
+    }
+
+    if (bandOfInterest.isPresent()) {
+      ChannelSpec withBand = union(required, bandOfInterest.get());
+      if (tuned.isPresent()) {
+        plans.add(union(withBand, tuned.get()));
+      }
+      plans.add(withBand);
+    }
+
+    if (tuned.isPresent()) {
+      plans.add(union(required, tuned.get()));
+    }
+
+    return plans;
+  }
+
+}
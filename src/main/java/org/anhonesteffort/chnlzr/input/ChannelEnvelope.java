@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.dsp.util.ChannelSpec;
+
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Min frequency, max frequency and max sample rate over a multiset of channels,
+ * maintained incrementally so that add, remove and each query are O(log n).
+ * Not thread safe.
+ */
+class ChannelEnvelope {
+
+  private final TreeMap<Double, Integer> minFreqs    = new TreeMap<>();
+  private final TreeMap<Double, Integer> maxFreqs    = new TreeMap<>();
+  private final TreeMap<Long, Integer>   sampleRates = new TreeMap<>();
+  private int size = 0;
+
+  private static <K> void increment(TreeMap<K, Integer> counts, K key) {
+    counts.merge(key, 1, Integer::sum);
+  }
+
+  private static <K> void decrement(TreeMap<K, Integer> counts, K key) {
+    Integer count = counts.get(key);
+    if (count == null) {
+      throw new IllegalStateException("channel envelope does not contain " + key);
+    } else if (count == 1) {
+      counts.remove(key);
+    } else {
+      counts.put(key, count - 1);
+    }
+  }
+
+  public void add(ChannelSpec spec) {
+    increment(minFreqs,    spec.getMinFreq());
+    increment(maxFreqs,    spec.getMaxFreq());
+    increment(sampleRates, spec.getSampleRate());
+    size++;
+  }
+
+  public void remove(ChannelSpec spec) {
+    decrement(minFreqs,    spec.getMinFreq());
+    decrement(maxFreqs,    spec.getMaxFreq());
+    decrement(sampleRates, spec.getSampleRate());
+    size--;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public Optional<Double> getMinFrequency() {
+    return isEmpty() ? Optional.empty() : Optional.of(minFreqs.firstKey());
+  }
+
+  public Optional<Double> getMaxFrequency() {
+    return isEmpty() ? Optional.empty() : Optional.of(maxFreqs.lastKey());
+  }
+
+  public Optional<Long> getMaxSampleRate() {
+    return isEmpty() ? Optional.empty() : Optional.of(sampleRates.lastKey());
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.chnlzr.resample.BlockSamplesSink;
+import org.anhonesteffort.chnlzr.resample.PolyphaseChannelizer;
+import org.anhonesteffort.chnlzr.resample.SamplesSink;
+import org.anhonesteffort.dsp.sample.SdrSamplesSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ChannelizerSinkHost implements SinkHost {
+
+  private static final Logger log = LoggerFactory.getLogger(ChannelizerSinkHost.class);
+
+  private final SdrSamplesSource     source;
+  private final PolyphaseChannelizer channelizer;
+
+  private int sinkCount = 0;
+
+  public ChannelizerSinkHost(SdrSamplesSource source, int bands) {
+    this.source = source;
+    channelizer = new PolyphaseChannelizer(bands);
+  }
+
+  @Override
+  public boolean addSink(SamplesSink sink) {
+    if (!(sink instanceof BlockSamplesSink)) {
+      log.error("polyphase channelizer requires block sinks, not " + sink.getClass().getSimpleName());
+      return false;
+    } else if (sinkCount == 0 && !source.addSink(channelizer)) {
+      return false;
+    }
+
+    channelizer.addSink((BlockSamplesSink) sink);
+    sinkCount++;
+    return true;
+  }
+
+  @Override
+  public void removeSink(SamplesSink sink) {
+    if (sink instanceof BlockSamplesSink) {
+      channelizer.removeSink((BlockSamplesSink) sink);
+      if (--sinkCount == 0) {
+        source.removeSink(channelizer);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.chnlzr.replay.ReplayPacing;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Tells driver providers which source index is being opened and with what
+ * settings. dsp-common instantiates providers itself, so the selection is
+ * handed over on the opening thread for the length of one open() call
+ * rather than through process wide state.
+ */
+public class DeviceSelection {
+
+  private static final ThreadLocal<DeviceSelection> selected = new ThreadLocal<>();
+
+  private final int              index;
+  private final Optional<String> replayFile;
+  private final ReplayPacing     replayPacing;
+
+  public DeviceSelection(int index, Optional<String> replayFile, ReplayPacing replayPacing) {
+    this.index        = index;
+    this.replayFile   = replayFile;
+    this.replayPacing = replayPacing;
+  }
+
+  public static Optional<DeviceSelection> current() {
+    return Optional.ofNullable(selected.get());
+  }
+
+  public <T> T open(Supplier<T> opener) {
+    DeviceSelection previous = selected.get();
+    selected.set(this);
+
+    try {
+      return opener.get();
+    } finally {
+      if (previous == null) {
+        selected.remove();
+      } else {
+        selected.set(previous);
+      }
+    }
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public Optional<String> getReplayFile() {
+    return replayFile;
+  }
+
+  public ReplayPacing getReplayPacing() {
+    return replayPacing;
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.LifecycleAware;
+import net.openhft.affinity.AffinityLock;
+import org.anhonesteffort.chnlzr.resample.BlockSamplesSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class DspWorker implements EventHandler<SamplesBlockEvent>, LifecycleAware {
+
+  private static final Logger log = LoggerFactory.getLogger(DspWorker.class);
+
+  private final Queue<Runnable>        pending = new ConcurrentLinkedQueue<>();
+  private final List<BlockSamplesSink> sinks   = new ArrayList<>();
+
+  private final int id;
+  private final int cpuAffinity;
+
+  private AffinityLock affinityLock;
+  private long         sampleRate = -1l;
+  private double       frequency;
+  private int          sinkCount  = 0;
+
+  public DspWorker(int id, int cpuAffinity) {
+    this.id          = id;
+    this.cpuAffinity = cpuAffinity;
+  }
+
+  public int getSinkCount() {
+    return sinkCount;
+  }
+
+  public void addSink(BlockSamplesSink sink) {
+    sinkCount++;
+    pending.add(() -> {
+      sinks.add(sink);
+      if (sampleRate > 0l) { sink.onStateChange(sampleRate, frequency); }
+    });
+  }
+
+  public void removeSink(BlockSamplesSink sink) {
+    sinkCount--;
+    pending.add(() -> sinks.remove(sink));
+  }
+
+  private void applyPending() {
+    Runnable operation;
+    while ((operation = pending.poll()) != null) {
+      operation.run();
+    }
+  }
+
+  @Override
+  public void onStart() {
+    if (cpuAffinity >= 0) {
+      affinityLock = AffinityLock.acquireLock(cpuAffinity);
+      log.info("dsp worker " + id + " bound to cpu " + affinityLock.cpuId());
+    }
+  }
+
+  @Override
+  public void onShutdown() {
+    if (affinityLock != null) {
+      affinityLock.release();
+    }
+  }
+
+  @Override
+  public void onEvent(SamplesBlockEvent event, long sequence, boolean endOfBatch) {
+    if (!pending.isEmpty()) { applyPending(); }
+
+    if (event.isStateChange()) {
+      sampleRate = event.getSampleRate();
+      frequency  = event.getFrequency();
+      for (int i = 0; i < sinks.size(); i++) {
+        sinks.get(i).onStateChange(sampleRate, frequency);
+      }
+    } else {
+      for (int i = 0; i < sinks.size(); i++) {
+        sinks.get(i).consume(event.getSamples(), event.getCount());
+      }
+    }
+  }
+
+}
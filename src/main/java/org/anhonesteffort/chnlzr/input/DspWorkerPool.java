@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.anhonesteffort.chnlzr.resample.BlockSamplesSink;
+import org.anhonesteffort.dsp.StatefulSink;
+import org.anhonesteffort.dsp.sample.Samples;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Copies each block from the source thread into one ring buffer per worker
+ * thread, every sink is pinned to the least loaded worker so channel DSP
+ * scales with cores. The source thread never waits on a worker, if a worker's
+ * ring is full the block is dropped for that worker alone and counted. State
+ * changes are never dropped, one that finds the ring full is held back and
+ * published ahead of the next block that fits. A drop marks the ring's
+ * channels discontinuous the same way, the current state is published again
+ * ahead of the next block that fits so every channel on that worker restarts
+ * its sample index and its clients see a state message at the gap.
+ */
+public class DspWorkerPool implements StatefulSink<Samples> {
+
+  private static final Logger log = LoggerFactory.getLogger(DspWorkerPool.class);
+
+  private final Map<BlockSamplesSink, DspWorker> assignments = new HashMap<>();
+  private final LongAdder                        dropped     = new LongAdder();
+  private final WorkerRing[]                     rings;
+
+  @SuppressWarnings("unchecked")
+  public DspWorkerPool(
+      int workerCount, int ringSize, int[] cpuAffinity,
+      Supplier<WaitStrategy> waitStrategies, ExceptionHandler exceptionHandler
+  ) {
+    rings = new WorkerRing[workerCount];
+
+    for (int i = 0; i < workerCount; i++) {
+      DspWorker worker = new DspWorker(i, (cpuAffinity.length > 0) ? cpuAffinity[i % cpuAffinity.length] : -1);
+      rings[i]         = new WorkerRing(i, worker, ringSize, waitStrategies.get(), exceptionHandler);
+    }
+  }
+
+  public long getRingFill() {
+    long fill = 0l;
+    for (WorkerRing ring : rings) {
+      fill += ring.ringBuffer.getBufferSize() - ring.ringBuffer.remainingCapacity();
+    }
+    return fill;
+  }
+
+  public long getDroppedBlocks() {
+    return dropped.sum();
+  }
+
+  public synchronized int getSinkCount() {
+    return assignments.size();
+  }
+
+  public synchronized void addSink(BlockSamplesSink sink) {
+    DspWorker leastLoaded = rings[0].worker;
+    for (WorkerRing ring : rings) {
+      if (ring.worker.getSinkCount() < leastLoaded.getSinkCount()) {
+        leastLoaded = ring.worker;
+      }
+    }
+
+    leastLoaded.addSink(sink);
+    assignments.put(sink, leastLoaded);
+  }
+
+  public synchronized void removeSink(BlockSamplesSink sink) {
+    DspWorker worker = assignments.remove(sink);
+    if (worker != null) {
+      worker.removeSink(sink);
+    }
+  }
+
+  @Override
+  public void onStateChange(long sampleRate, double frequency) {
+    for (WorkerRing ring : rings) {
+      ring.pendingState = true;
+      ring.stated       = true;
+      ring.sampleRate   = sampleRate;
+      ring.frequency    = frequency;
+      ring.tryPublishState();
+    }
+  }
+
+  @Override
+  public void consume(Samples samples) {
+    for (WorkerRing ring : rings) {
+      if (!ring.tryPublishState() || !ring.tryPublishSamples(samples)) {
+        dropped.increment();
+        ring.pendingState = ring.stated;
+        if (!ring.dropping) {
+          log.warn("dsp worker " + ring.id + " fell behind, dropping blocks");
+          ring.dropping = true;
+        }
+      } else {
+        ring.dropping = false;
+      }
+    }
+  }
+
+  public void shutdown() {
+    for (WorkerRing ring : rings) {
+      ring.disruptor.halt();
+    }
+  }
+
+  /**
+   * All fields but the disruptor are only touched from the source thread.
+   */
+  private static class WorkerRing {
+    private final int                           id;
+    private final DspWorker                     worker;
+    private final Disruptor<SamplesBlockEvent>  disruptor;
+    private final RingBuffer<SamplesBlockEvent> ringBuffer;
+
+    private boolean pendingState = false;
+    private boolean stated       = false;
+    private long    sampleRate;
+    private double  frequency;
+    private boolean dropping     = false;
+
+    @SuppressWarnings("unchecked")
+    public WorkerRing(
+        int id, DspWorker worker, int ringSize, WaitStrategy waitStrategy, ExceptionHandler exceptionHandler
+    ) {
+      this.id     = id;
+      this.worker = worker;
+      disruptor   = new Disruptor<>(
+          SamplesBlockEvent::new, ringSize, runnable -> {
+            Thread thread = new Thread(runnable, "dsp worker " + id);
+            thread.setDaemon(true);
+            return thread;
+          }, ProducerType.SINGLE, waitStrategy
+      );
+
+      disruptor.handleEventsWith(worker);
+      disruptor.setDefaultExceptionHandler(exceptionHandler);
+      ringBuffer = disruptor.start();
+    }
+
+    /**
+     * @return false if a held back state change still does not fit.
+     */
+    public boolean tryPublishState() {
+      if (!pendingState) {
+        return true;
+      }
+
+      try {
+        long sequence = ringBuffer.tryNext();
+        try {
+          ringBuffer.get(sequence).setState(sampleRate, frequency);
+        } finally {
+          ringBuffer.publish(sequence);
+        }
+        pendingState = false;
+        return true;
+      } catch (InsufficientCapacityException e) {
+        return false;
+      }
+    }
+
+    public boolean tryPublishSamples(Samples samples) {
+      try {
+        long sequence = ringBuffer.tryNext();
+        try {
+          ringBuffer.get(sequence).setSamples(samples.getSamples());
+        } finally {
+          ringBuffer.publish(sequence);
+        }
+        return true;
+      } catch (InsufficientCapacityException e) {
+        return false;
+      }
+    }
+  }
+
+}
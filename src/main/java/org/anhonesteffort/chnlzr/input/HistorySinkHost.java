@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.chnlzr.resample.SamplesSink;
+import org.anhonesteffort.dsp.StatefulSink;
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Hosts sinks behind a SamplesHistory so that new sinks start with the
+ * recent past instead of the moment they were added. The host is the only
+ * sink on its source, every block is written to the history before being
+ * passed on. A new sink is primed from the history on the primer executor,
+ * as fast as it can consume, and once caught up the source thread hands it
+ * whatever arrived since and moves it to the live sinks. A state change
+ * invalidates the history and cancels priming.
+ */
+public class HistorySinkHost implements SinkHost, StatefulSink<Samples> {
+
+  private static final Logger log        = LoggerFactory.getLogger(HistorySinkHost.class);
+  private static final int    READ_CHUNK = 8192;
+
+  private final Queue<Runnable>   pending = new ConcurrentLinkedQueue<>();
+  private final List<SamplesSink> sinks   = new ArrayList<>();
+  private final List<Primer>      primers = new ArrayList<>();
+
+  private final SamplesHistory history;
+  private final Executor       primerExecutor;
+
+  public HistorySinkHost(SamplesHistory history, Executor primerExecutor) {
+    this.history        = history;
+    this.primerExecutor = primerExecutor;
+  }
+
+  @Override
+  public boolean addSink(SamplesSink sink) {
+    pending.add(() -> attach(sink));
+    return true;
+  }
+
+  @Override
+  public void removeSink(SamplesSink sink) {
+    pending.add(() -> detach(sink));
+  }
+
+  private void applyPending() {
+    Runnable operation;
+    while ((operation = pending.poll()) != null) {
+      operation.run();
+    }
+  }
+
+  private void attach(SamplesSink sink) {
+    if (history.getSampleRate() <= 0l) {
+      sinks.add(sink);
+    } else {
+      Primer primer = new Primer(sink, history.getSampleRate(), history.getFrequency(), history.getOldest());
+      primers.add(primer);
+      primerExecutor.execute(primer);
+    }
+  }
+
+  private void detach(SamplesSink sink) {
+    sinks.remove(sink);
+
+    Iterator<Primer> primed = primers.iterator();
+    while (primed.hasNext()) {
+      Primer primer = primed.next();
+      if (primer.sink == sink) {
+        primer.cancel();
+        primed.remove();
+      }
+    }
+  }
+
+  private void joinCaughtUp() {
+    Iterator<Primer> primed = primers.iterator();
+    while (primed.hasNext()) {
+      Primer primer = primed.next();
+      if (primer.caughtUp) {
+        synchronized (history) {
+          for (ComplexNumber[] samples = primer.readNext(); samples != null; samples = primer.readNext()) {
+            primer.sink.consume(new Samples(samples));
+          }
+        }
+        log.info(primer.sink.getSpec() + " primed with " + primer.primed + " samples of history");
+        sinks.add(primer.sink);
+        primed.remove();
+      }
+    }
+  }
+
+  @Override
+  public void onStateChange(long sampleRate, double frequency) {
+    applyPending();
+
+    synchronized (history) {
+      primers.forEach(Primer::cancel);
+      history.onStateChange(sampleRate, frequency);
+    }
+
+    primers.forEach(primer -> sinks.add(primer.sink));
+    primers.clear();
+
+    for (int i = 0; i < sinks.size(); i++) {
+      sinks.get(i).onStateChange(sampleRate, frequency);
+    }
+  }
+
+  @Override
+  public void consume(Samples samples) {
+    applyPending();
+
+    synchronized (history) {
+      history.write(samples.getSamples());
+    }
+
+    for (int i = 0; i < sinks.size(); i++) {
+      sinks.get(i).consume(samples);
+    }
+
+    if (!primers.isEmpty()) { joinCaughtUp(); }
+  }
+
+  private class Primer implements Runnable {
+    private final ComplexNumber[] buffer = new ComplexNumber[READ_CHUNK];
+    private final SamplesSink     sink;
+    private final long            sampleRate;
+    private final double          frequency;
+
+    private volatile boolean caughtUp  = false;
+    private volatile boolean cancelled = false;
+    private long             next;
+    private long             primed    = 0l;
+
+    public Primer(SamplesSink sink, long sampleRate, double frequency, long oldest) {
+      this.sink       = sink;
+      this.sampleRate = sampleRate;
+      this.frequency  = frequency;
+      next            = oldest;
+    }
+
+    public synchronized void cancel() {
+      cancelled = true;
+    }
+
+    /**
+     * Must be called holding the history lock.
+     * @return the next samples to prime with, null once caught up.
+     */
+    private ComplexNumber[] readNext() {
+      if (next < history.getOldest()) {
+        log.warn(sink.getSpec() + " priming fell behind, skipping " + (history.getOldest() - next) + " samples");
+        next = history.getOldest();
+      }
+
+      int count = history.read(next, buffer);
+      if (count == 0) {
+        return null;
+      }
+
+      next   += count;
+      primed += count;
+      return Arrays.copyOf(buffer, count);
+    }
+
+    private boolean consumeNext() {
+      ComplexNumber[] samples;
+
+      synchronized (history) {
+        if (cancelled) {
+          return false;
+        } else if ((samples = readNext()) == null) {
+          caughtUp = true;
+          return false;
+        }
+      }
+
+      synchronized (this) {
+        if (!cancelled) {
+          sink.consume(new Samples(samples));
+        }
+        return !cancelled;
+      }
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        if (cancelled) {
+          return;
+        }
+        sink.onStateChange(sampleRate, frequency);
+      }
+
+      while (consumeNext()) { }
+    }
+  }
+
+}
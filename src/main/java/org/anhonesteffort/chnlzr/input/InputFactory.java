@@ -17,41 +17,137 @@
 
 package org.anhonesteffort.chnlzr.input;
 
-import com.lmax.disruptor.BlockingWaitStrategy;
 import com.lmax.disruptor.ExceptionHandler;
 import org.anhonesteffort.chnlzr.ChnlzrServerConfig;
+import org.anhonesteffort.chnlzr.metrics.SourceMetrics;
+import org.anhonesteffort.chnlzr.replay.SamplesRecorder;
 import org.anhonesteffort.dsp.sample.SdrSamplesSource;
 import org.anhonesteffort.dsp.sample.SdrSamplesSourceProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class InputFactory {
 
-  private final Optional<SdrSamplesSource> source;
-  private final Optional<SamplesSourceController> sourceController;
+  private static final Logger log = LoggerFactory.getLogger(InputFactory.class);
+
+  private final List<SdrSamplesSource>    sources     = new ArrayList<>();
+  private final List<DspWorkerPool>       workerPools = new ArrayList<>();
+  private final Optional<SourceRouter>    router;
+  private final Optional<SamplesRecorder> recorder;
 
   public InputFactory(ChnlzrServerConfig config, ExceptionHandler disruptorCallback) {
-    SdrSamplesSourceProvider sourceProvider = new SdrSamplesSourceProvider(
-        new BlockingWaitStrategy(), config.ringBufferSize(),
-        config.cicPoolSize(), config.sourceCpuAffinity(), disruptorCallback
-    );
-
-    source = sourceProvider.getSource();
-    if (source.isPresent()) {
-      this.sourceController = Optional.of(new SamplesSourceController(
-          source.get(), config.cicPoolSize(), config.dcOffset()
-      ));
+    this(config, disruptorCallback, new SourceMetrics());
+  }
+
+  public InputFactory(ChnlzrServerConfig config, ExceptionHandler disruptorCallback, SourceMetrics metrics) {
+    List<SamplesSourceController> controllers = new ArrayList<>();
+
+    if (config.historyMs() > 0l && (config.channelizerMode() != ChannelizerMode.DIRECT || config.dspWorkerCount() > 0)) {
+      log.warn("history_ms only applies to the direct channelizer without dsp workers, ignoring");
+    }
+
+    for (int i = 0; i < config.sourceCount(); i++) {
+      SdrSamplesSourceProvider sourceProvider = new SdrSamplesSourceProvider(
+          config.waitStrategy().create(), config.ringBufferSize(),
+          config.cicPoolSize(), config.sourceCpuAffinity(i), disruptorCallback
+      );
+
+      DeviceSelection            selection = new DeviceSelection(i, config.replayFile(i), config.replayPacing());
+      Optional<SdrSamplesSource> source    = selection.open(sourceProvider::getSource);
+      if (!source.isPresent()) {
+        log.warn("found " + i + " of " + config.sourceCount() + " configured samples sources");
+        break;
+      }
+
+      sources.add(source.get());
+      controllers.add(controllerFor(config, source.get(), disruptorCallback, metrics));
+    }
+
+    if (controllers.isEmpty()) {
+      router = Optional.empty();
+    } else {
+      router = Optional.of(new SourceRouter(controllers, metrics));
+    }
+
+    if (config.recordFile().isPresent() && !sources.isEmpty()) {
+      recorder = Optional.of(new SamplesRecorder(Paths.get(config.recordFile().get())));
+      sources.get(0).addSink(recorder.get());
     } else {
-      this.sourceController = Optional.empty();
+      recorder = Optional.empty();
     }
   }
 
-  public Optional<SdrSamplesSource> getSource() {
-    return source;
+  private SamplesSourceController controllerFor(
+      ChnlzrServerConfig config, SdrSamplesSource source, ExceptionHandler disruptorCallback, SourceMetrics metrics
+  ) {
+    AdmissionPlanner planner = new AdmissionPlanner(config.admissionPlanner(), config.bandOfInterest());
+
+    switch (config.channelizerMode()) {
+      case POLYPHASE:
+        return new SamplesSourceController(
+            source, new ChannelizerSinkHost(source, config.channelizerBands()),
+            config.channelizerMaxSinks(), config.dcOffset(), metrics, planner
+        );
+
+      default:
+        if (config.dspWorkerCount() > 0) {
+          DspWorkerPool workers = new DspWorkerPool(
+              config.dspWorkerCount(), config.ringBufferSize(), config.dspWorkerCpuAffinity(),
+              config.waitStrategy()::create, disruptorCallback
+          );
+          workerPools.add(workers);
+          metrics.addRingFill(workers::getRingFill);
+          metrics.addDroppedBlocks(workers::getDroppedBlocks);
+          return new SamplesSourceController(
+              source, new WorkerPoolSinkHost(source, workers), config.cicPoolSize(), config.dcOffset(), metrics, planner
+          );
+        }
+
+        if (config.historyMs() > 0l) {
+          HistorySinkHost historyHost = new HistorySinkHost(
+              new SamplesHistory(config.historyMs(), config.historyMaxMb() * (1l << 20)), primerExecutor()
+          );
+          source.addSink(historyHost);
+          return new SamplesSourceController(
+              source, historyHost, config.cicPoolSize(), config.dcOffset(), metrics, planner
+          );
+        }
+
+        return new SamplesSourceController(
+            source, new SourceSinkHost(source), config.cicPoolSize(), config.dcOffset(), metrics, planner
+        );
+    }
+  }
+
+  private static ExecutorService primerExecutor() {
+    return Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "history primer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public List<SdrSamplesSource> getSources() {
+    return sources;
+  }
+
+  public List<DspWorkerPool> getWorkerPools() {
+    return workerPools;
+  }
+
+  public Optional<SourceRouter> getRouter() {
+    return router;
   }
 
-  public Optional<SamplesSourceController> getSourceController() {
-    return sourceController;
+  public Optional<SamplesRecorder> getRecorder() {
+    return recorder;
   }
 
 }
\ No newline at end of file
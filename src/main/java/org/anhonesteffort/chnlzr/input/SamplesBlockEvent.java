@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.dsp.util.ComplexNumber;
+
+class SamplesBlockEvent {
+
+  private boolean stateChange;
+  private long    sampleRate;
+  private double  frequency;
+  private float[] samples = new float[0];
+  private int     count;
+
+  public void setState(long sampleRate, double frequency) {
+    stateChange     = true;
+    this.sampleRate = sampleRate;
+    this.frequency  = frequency;
+  }
+
+  public void setSamples(ComplexNumber[] source) {
+    if (samples.length < (source.length << 1)) {
+      samples = new float[source.length << 1];
+    }
+
+    for (int i = 0; i < source.length; i++) {
+      samples[(i << 1)]     = source[i].getInPhase();
+      samples[(i << 1) + 1] = source[i].getQuadrature();
+    }
+
+    stateChange = false;
+    count       = source.length;
+  }
+
+  public boolean isStateChange() {
+    return stateChange;
+  }
+
+  public long getSampleRate() {
+    return sampleRate;
+  }
+
+  public double getFrequency() {
+    return frequency;
+  }
+
+  public float[] getSamples() {
+    return samples;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+}
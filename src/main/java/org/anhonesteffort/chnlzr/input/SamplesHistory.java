@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.dsp.util.ComplexNumber;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Off-heap ring of the most recent wideband samples from one source. Samples
+ * are addressed by their index since the last state change and only the last
+ * retainMs worth, bounded by the size of the ring, can be read back. Not
+ * thread safe, callers synchronize on the history.
+ */
+public class SamplesHistory {
+
+  private static final int SAMPLE_BYTES = 8;
+
+  private final FloatBuffer ring;
+  private final int         capacity;
+  private final long        retainMs;
+
+  private long   sampleRate = -1l;
+  private double frequency  = 0d;
+  private int    retain     = 0;
+  private long   written    = 0l;
+
+  public SamplesHistory(long retainMs, long maxBytes) {
+    this.retainMs = retainMs;
+    capacity      = (int) Math.min(Integer.MAX_VALUE / SAMPLE_BYTES, maxBytes / SAMPLE_BYTES);
+
+    if (capacity < 1) {
+      throw new IllegalArgumentException("history of " + maxBytes + " bytes cannot hold a sample");
+    }
+
+    ring = ByteBuffer.allocateDirect(capacity * SAMPLE_BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public long getSampleRate() {
+    return sampleRate;
+  }
+
+  public double getFrequency() {
+    return frequency;
+  }
+
+  public long getWritten() {
+    return written;
+  }
+
+  public long getOldest() {
+    return Math.max(0l, written - retain);
+  }
+
+  public void onStateChange(long sampleRate, double frequency) {
+    this.sampleRate = sampleRate;
+    this.frequency  = frequency;
+    retain          = (int) Math.min(capacity, (sampleRate * retainMs) / 1000l);
+    written         = 0l;
+  }
+
+  public void write(ComplexNumber[] samples) {
+    int index = (int) (written % capacity) << 1;
+
+    for (int i = 0; i < samples.length; i++) {
+      ring.put(index,     samples[i].getInPhase());
+      ring.put(index + 1, samples[i].getQuadrature());
+      index = (index + 2 == ring.capacity()) ? 0 : index + 2;
+    }
+
+    written += samples.length;
+  }
+
+  /**
+   * @return count of samples copied into buffer starting at sample index from,
+   *         zero once from reaches the newest sample.
+   */
+  public int read(long from, ComplexNumber[] buffer) {
+    if (from < getOldest()) {
+      throw new IllegalArgumentException("sample " + from + " is no longer retained");
+    }
+
+    int count = (int) Math.min(buffer.length, written - from);
+    int index = (int) (from % capacity) << 1;
+
+    for (int i = 0; i < count; i++) {
+      buffer[i] = new ComplexNumber(ring.get(index), ring.get(index + 1));
+      index     = (index + 2 == ring.capacity()) ? 0 : index + 2;
+    }
+
+    return count;
+  }
+
+}
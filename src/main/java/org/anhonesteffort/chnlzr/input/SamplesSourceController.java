@@ -17,6 +17,7 @@
 
 package org.anhonesteffort.chnlzr.input;
 
+import org.anhonesteffort.chnlzr.metrics.SourceMetrics;
 import org.anhonesteffort.chnlzr.resample.SamplesSink;
 import org.anhonesteffort.dsp.sample.SdrSamplesSource;
 import org.anhonesteffort.dsp.util.ChannelSpec;
@@ -24,8 +25,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Optional;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.anhonesteffort.chnlzr.capnp.Proto.Error;
@@ -36,57 +37,52 @@ public class SamplesSourceController {
 
   private final Object txnLock = new Object();
   private final AtomicReference<ChannelSpec> tunedChannel = new AtomicReference<>();
-  private final Queue<SamplesSink> sinks = new ConcurrentLinkedQueue<>();
+  private final Set<SamplesSink> sinks = ConcurrentHashMap.newKeySet();
+  private final ChannelEnvelope envelope = new ChannelEnvelope();
 
   private final SdrSamplesSource source;
+  private final SinkHost sinkHost;
   private final int maxSinks;
   private final double dcOffsetHz;
+  private final SourceMetrics metrics;
+  private final AdmissionPlanner planner;
 
-  public SamplesSourceController(SdrSamplesSource source, int maxSinks, double dcOffsetHz) {
+  private ChannelSpec baselineTuned;
+
+  public SamplesSourceController(
+      SdrSamplesSource source, SinkHost sinkHost, int maxSinks, double dcOffsetHz,
+      SourceMetrics metrics, AdmissionPlanner planner
+  ) {
     this.source     = source;
+    this.sinkHost   = sinkHost;
     this.maxSinks   = maxSinks;
     this.dcOffsetHz = dcOffsetHz;
+    this.metrics    = metrics;
+    this.planner    = planner;
+
+    metrics.addActiveSinks(sinks::size);
   }
 
-  private Optional<Double> getMinChannelFrequency() {
-    if (sinks.isEmpty()) {
-      return Optional.empty();
-    } else {
-      return Optional.of(sinks.stream()
-          .mapToDouble(sink -> sink.getSpec().getMinFreq())
-          .min()
-          .getAsDouble());
-    }
+  public SamplesSourceController(
+      SdrSamplesSource source, SinkHost sinkHost, int maxSinks, double dcOffsetHz, SourceMetrics metrics
+  ) {
+    this(source, sinkHost, maxSinks, dcOffsetHz, metrics, AdmissionPlanner.disabled());
   }
 
-  private Optional<Double> getMaxChannelFrequency() {
-    if (sinks.isEmpty()) {
-      return Optional.empty();
-    } else {
-      return Optional.of(sinks.stream()
-          .mapToDouble(sink -> sink.getSpec().getMaxFreq())
-          .max()
-          .getAsDouble());
-    }
+  public SamplesSourceController(SdrSamplesSource source, SinkHost sinkHost, int maxSinks, double dcOffsetHz) {
+    this(source, sinkHost, maxSinks, dcOffsetHz, new SourceMetrics());
   }
 
-  private Optional<Long> getMaxChannelSampleRate() {
-    if (sinks.isEmpty()) {
-      return Optional.empty();
-    } else {
-      return Optional.of(sinks.stream()
-          .mapToLong(sink -> sink.getSpec().getSampleRate())
-          .max()
-          .getAsLong());
-    }
+  public SamplesSourceController(SdrSamplesSource source, int maxSinks, double dcOffsetHz) {
+    this(source, new SourceSinkHost(source), maxSinks, dcOffsetHz);
   }
 
   private ChannelSpec fitAllChannels(ChannelSpec newChannel) {
-    double minRequiredFreq   = Math.min(getMinChannelFrequency().get(), newChannel.getMinFreq());
-    double maxRequiredFreq   = Math.max(getMaxChannelFrequency().get(), newChannel.getMaxFreq());
+    double minRequiredFreq   = Math.min(envelope.getMinFrequency().get(), newChannel.getMinFreq());
+    double maxRequiredFreq   = Math.max(envelope.getMaxFrequency().get(), newChannel.getMaxFreq());
     double requiredBandwidth = maxRequiredFreq - minRequiredFreq;
 
-    long maxChannelSampleRate = Math.max(getMaxChannelSampleRate().get(), newChannel.getSampleRate());
+    long maxChannelSampleRate = Math.max(envelope.getMaxSampleRate().get(), newChannel.getSampleRate());
     long requiredSampleRate   = Math.max(maxChannelSampleRate, (long) requiredBandwidth);
 
     return ChannelSpec.fromMinMax(minRequiredFreq, maxRequiredFreq, requiredSampleRate);
@@ -107,18 +103,43 @@ public class SamplesSourceController {
   }
 
   private boolean isTunable(ChannelSpec spec) {
-    if (sinks.isEmpty()) {
+    if (envelope.isEmpty()) {
       return source.getCapabilities().contains(fitDcOffset(spec));
     } else {
       return source.getCapabilities().contains(fitAllChannels(spec));
     }
   }
 
-  private ChannelSpec tryTune(ChannelSpec newChannel) {
-    if (sinks.isEmpty()) {
-      return source.tryTune(fitDcOffset(newChannel));
+  private ChannelSpec baselineTuneFor(ChannelSpec newChannel) {
+    if (envelope.isEmpty()) {
+      return fitDcOffset(newChannel);
     } else {
-      return source.tryTune(fitAllChannels(newChannel));
+      return fitAllChannels(newChannel);
+    }
+  }
+
+  private ChannelSpec tryTune(ChannelSpec newChannel) {
+    metrics.onRetune();
+
+    ChannelSpec required = envelope.isEmpty() ? newChannel : fitAllChannels(newChannel);
+    for (ChannelSpec plan : planner.plan(required, Optional.ofNullable(tunedChannel.get()))) {
+      ChannelSpec offsetPlan = fitDcOffset(plan);
+      if (source.getCapabilities().contains(offsetPlan)) {
+        return source.tryTune(offsetPlan);
+      }
+    }
+
+    return source.tryTune(baselineTuneFor(newChannel));
+  }
+
+  /**
+   * Tracks what the baseline tuning would have asked for so that admissions
+   * which only fit because of the planner are counted as avoided retunes.
+   */
+  private void onAdmittedWithoutRetune(ChannelSpec spec) {
+    if (planner.isEnabled() && (baselineTuned == null || !baselineTuned.contains(spec))) {
+      baselineTuned = baselineTuneFor(spec);
+      metrics.onRetuneAvoided();
     }
   }
 
@@ -126,26 +147,57 @@ public class SamplesSourceController {
     return source.getCapabilities();
   }
 
+  public int getSinkCount() {
+    return sinks.size();
+  }
+
+  public boolean hostsSink(SamplesSink sink) {
+    return sinks.contains(sink);
+  }
+
+  /**
+   * @return true if sink fits within this source without exceeding maxSinks.
+   */
+  public boolean canHost(SamplesSink sink) {
+    synchronized (txnLock) {
+      return sinks.contains(sink) || (envelope.size() < maxSinks && isTunable(sink.getSpec()));
+    }
+  }
+
+  /**
+   * @return true if hosting sink would retune the source.
+   */
+  public boolean requiresRetune(SamplesSink sink) {
+    ChannelSpec tuned = tunedChannel.get();
+    return !sinks.contains(sink) && (tuned == null || !tuned.contains(sink.getSpec()));
+  }
+
   public int configureSourceForSink(SamplesSink sink) {
     synchronized (txnLock) {
 
-      if (sinks.size() >= maxSinks) {
+      if (sinks.contains(sink)) {
+        return 0x00;
+      } else if (envelope.size() >= maxSinks) {
         return Error.ERROR_PROCESSING_UNAVAILABLE;
       } else if (!isTunable(sink.getSpec())) {
         return Error.ERROR_BANDWIDTH_UNAVAILABLE;
       } else {
         ChannelSpec tuned = tunedChannel.get();
         if (tuned != null && tuned.contains(sink.getSpec())) {
-          if (source.addSink(sink)) {
+          if (sinkHost.addSink(sink)) {
+            onAdmittedWithoutRetune(sink.getSpec());
+            envelope.add(sink.getSpec());
             sinks.add(sink);
             return 0x00;
           } else {
-            log.error("Source.addSink() returned false");
+            log.error("SinkHost.addSink() returned false");
             return Error.ERROR_UNKNOWN;
           }
         } else {
+          baselineTuned = baselineTuneFor(sink.getSpec());
           tunedChannel.set(tryTune(sink.getSpec()));
-          if (tunedChannel.get().contains(sink.getSpec()) && source.addSink(sink)) {
+          if (tunedChannel.get().contains(sink.getSpec()) && sinkHost.addSink(sink)) {
+            envelope.add(sink.getSpec());
             sinks.add(sink);
             return 0x00;
           } else {
@@ -160,8 +212,10 @@ public class SamplesSourceController {
 
   public void releaseSink(SamplesSink sink) {
     synchronized (txnLock) {
-      source.removeSink(sink);
-      sinks.remove(sink);
+      if (sinks.remove(sink)) {
+        envelope.remove(sink.getSpec());
+        sinkHost.removeSink(sink);
+      }
     }
   }
 
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.chnlzr.metrics.SourceMetrics;
+import org.anhonesteffort.chnlzr.resample.SamplesSink;
+import org.anhonesteffort.dsp.util.ChannelSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Places each channel sink on one of several sources. Sources that can host
+ * the channel are tried cheapest first where cost is the number of channels
+ * already hosted plus RETUNE_PENALTY for every channel a retune would disturb.
+ */
+public class SourceRouter {
+
+  private static final Logger log            = LoggerFactory.getLogger(SourceRouter.class);
+  private static final int    RETUNE_PENALTY = 4;
+
+  private final Map<SamplesSink, SamplesSourceController> placements = new ConcurrentHashMap<>();
+  private final List<SamplesSourceController>             controllers;
+  private final ChannelSpec                               capabilities;
+  private final SourceMetrics                             metrics;
+
+  public SourceRouter(List<SamplesSourceController> controllers, SourceMetrics metrics) {
+    if (controllers.isEmpty()) {
+      throw new IllegalArgumentException("at least one source controller is required");
+    }
+
+    this.controllers = controllers;
+    this.metrics     = metrics;
+    capabilities     = unionOf(controllers);
+  }
+
+  private static ChannelSpec unionOf(List<SamplesSourceController> controllers) {
+    double minFreq    = Double.MAX_VALUE;
+    double maxFreq    = -Double.MAX_VALUE;
+    long   sampleRate = 0l;
+
+    for (SamplesSourceController controller : controllers) {
+      minFreq    = Math.min(minFreq, controller.getCapabilities().getMinFreq());
+      maxFreq    = Math.max(maxFreq, controller.getCapabilities().getMaxFreq());
+      sampleRate = Math.max(sampleRate, controller.getCapabilities().getSampleRate());
+    }
+
+    return ChannelSpec.fromMinMax(minFreq, maxFreq, sampleRate);
+  }
+
+  private static long costOf(SamplesSourceController controller, SamplesSink sink) {
+    if (controller.hostsSink(sink)) {
+      return -1l;
+    } else if (controller.requiresRetune(sink)) {
+      return controller.getSinkCount() * (1l + RETUNE_PENALTY);
+    } else {
+      return controller.getSinkCount();
+    }
+  }
+
+  /**
+   * @return the union of every source's frequency range and the highest sample rate.
+   */
+  public ChannelSpec getCapabilities() {
+    return capabilities;
+  }
+
+  public int configureSourceForSink(SamplesSink sink) {
+    int error = placeSink(sink);
+    metrics.onChannelRequest(error);
+    return error;
+  }
+
+  private int placeSink(SamplesSink sink) {
+    List<SamplesSourceController> candidates = new ArrayList<>(controllers.size());
+    for (SamplesSourceController controller : controllers) {
+      if (controller.canHost(sink)) {
+        candidates.add(controller);
+      }
+    }
+
+    if (candidates.isEmpty()) {
+      candidates.addAll(controllers);
+    }
+
+    candidates.sort(Comparator.comparingLong(controller -> costOf(controller, sink)));
+
+    int error = 0x00;
+    for (SamplesSourceController controller : candidates) {
+      error = controller.configureSourceForSink(sink);
+      if (error == 0x00) {
+        placements.put(sink, controller);
+        log.debug(sink.getSpec() + " placed on source " + controllers.indexOf(controller));
+        return error;
+      }
+    }
+
+    return error;
+  }
+
+  public void releaseSink(SamplesSink sink) {
+    SamplesSourceController controller = placements.remove(sink);
+    if (controller != null) {
+      controller.releaseSink(sink);
+    }
+  }
+
+}
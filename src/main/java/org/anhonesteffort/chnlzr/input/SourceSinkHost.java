@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.chnlzr.resample.SamplesSink;
+import org.anhonesteffort.dsp.sample.SdrSamplesSource;
+
+public class SourceSinkHost implements SinkHost {
+
+  private final SdrSamplesSource source;
+
+  public SourceSinkHost(SdrSamplesSource source) {
+    this.source = source;
+  }
+
+  @Override
+  public boolean addSink(SamplesSink sink) {
+    return source.addSink(sink);
+  }
+
+  @Override
+  public void removeSink(SamplesSink sink) {
+    source.removeSink(sink);
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.PhasedBackoffWaitStrategy;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+
+import java.util.concurrent.TimeUnit;
+
+public enum SourceWaitStrategy {
+
+  /**
+   * Consumers park on a lock and condition, lowest cpu use and highest wakeup latency.
+   */
+  BLOCKING,
+
+  /**
+   * Consumers spin, then yield, then sleep for progressively longer.
+   */
+  SLEEPING,
+
+  /**
+   * Consumers spin then yield, one busy core per consumer.
+   */
+  YIELDING,
+
+  /**
+   * Consumers never give up their core, lowest latency when cores are dedicated.
+   */
+  BUSY_SPIN,
+
+  /**
+   * Consumers spin for SPIN_TIMEOUT_US, yield until YIELD_TIMEOUT_US then block.
+   */
+  PHASED_BACKOFF;
+
+  private static final long SPIN_TIMEOUT_US  =   100l;
+  private static final long YIELD_TIMEOUT_US = 1_000l;
+
+  public static SourceWaitStrategy fromString(String name) {
+    return valueOf(name.trim().replace('-', '_').toUpperCase());
+  }
+
+  public WaitStrategy create() {
+    switch (this) {
+      case SLEEPING:
+        return new SleepingWaitStrategy();
+
+      case YIELDING:
+        return new YieldingWaitStrategy();
+
+      case BUSY_SPIN:
+        return new BusySpinWaitStrategy();
+
+      case PHASED_BACKOFF:
+        return PhasedBackoffWaitStrategy.withLock(SPIN_TIMEOUT_US, YIELD_TIMEOUT_US, TimeUnit.MICROSECONDS);
+
+      default:
+        return new BlockingWaitStrategy();
+    }
+  }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.metrics;
+
+import org.anhonesteffort.dsp.util.ChannelSpec;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class ChannelMetrics {
+
+  private final LongAdder        samplesConsumed = new LongAdder();
+  private final LatencyHistogram blockTime       = new LatencyHistogram();
+  private final LatencyHistogram ingestToWire    = new LatencyHistogram();
+  private final LongAdder        sourceGaps      = new LongAdder();
+  private final SampleClock      clock           = new SampleClock(ingestToWire, sourceGaps);
+  private final ChannelSpec      spec;
+
+  public ChannelMetrics(ChannelSpec spec) {
+    this.spec = spec;
+  }
+
+  public ChannelSpec getSpec() {
+    return spec;
+  }
+
+  public void onBlock(int consumed, long nanos) {
+    samplesConsumed.add(consumed);
+    blockTime.record(nanos);
+  }
+
+  public long getSamplesConsumed() {
+    return samplesConsumed.sum();
+  }
+
+  public LatencyHistogram getBlockTime() {
+    return blockTime;
+  }
+
+  public SampleClock getClock() {
+    return clock;
+  }
+
+  public LatencyHistogram getIngestToWire() {
+    return ingestToWire;
+  }
+
+  public long getSourceGaps() {
+    return sourceGaps.sum();
+  }
+
+}
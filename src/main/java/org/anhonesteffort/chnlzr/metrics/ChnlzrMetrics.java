@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.metrics;
+
+import org.anhonesteffort.dsp.util.ChannelSpec;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Registry of source, channel and client metrics. Counters are LongAdders
+ * updated at most once per block or message, reads walk the registry.
+ */
+public class ChnlzrMetrics {
+
+  private final SourceMetrics       source   = new SourceMetrics();
+  private final Set<ChannelMetrics> channels = ConcurrentHashMap.newKeySet();
+  private final Set<ClientMetrics>  clients  = ConcurrentHashMap.newKeySet();
+
+  public SourceMetrics source() {
+    return source;
+  }
+
+  public ChannelMetrics channel(ChannelSpec spec) {
+    ChannelMetrics metrics = new ChannelMetrics(spec);
+    channels.add(metrics);
+    return metrics;
+  }
+
+  public void remove(ChannelMetrics metrics) {
+    channels.remove(metrics);
+  }
+
+  public ClientMetrics client(String client) {
+    ClientMetrics metrics = new ClientMetrics(client);
+    clients.add(metrics);
+    return metrics;
+  }
+
+  public void remove(ClientMetrics metrics) {
+    clients.remove(metrics);
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static String labels(ChannelMetrics channel) {
+    ChannelSpec spec = channel.getSpec();
+    return "{frequency=\"" + (long) spec.getCenterFrequency() + "\",bandwidth=\"" + (long) spec.getBandwidth() +
+           "\",rate=\"" + spec.getSampleRate() + "\"}";
+  }
+
+  private static String labels(ClientMetrics client) {
+    return "{client=\"" + escape(client.getClient()) + "\"}";
+  }
+
+  private static void family(StringBuilder out, String name, String type, String help) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(StringBuilder out, String name, String labels, long value) {
+    out.append(name).append(labels).append(' ').append(value).append('\n');
+  }
+
+  private static <T> void family(
+      StringBuilder out, String name, String type, String help,
+      Collection<T> items, Function<T, String> labels, ToLongFunction<T> value
+  ) {
+    family(out, name, type, help);
+    for (T item : items) {
+      sample(out, name, labels.apply(item), value.applyAsLong(item));
+    }
+  }
+
+  private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+    String prefix     = labels.substring(0, labels.length() - 1);
+    long   cumulative = 0l;
+
+    for (int i = 0; i < histogram.getBucketCount(); i++) {
+      cumulative += histogram.getBucket(i);
+      String upper = (histogram.getUpperBound(i) == Long.MAX_VALUE) ?
+          "+Inf" : Double.toString(histogram.getUpperBound(i) / 1e9d);
+      out.append(name).append("_bucket").append(prefix).append(",le=\"").append(upper).append("\"} ")
+         .append(cumulative).append('\n');
+    }
+
+    out.append(name).append("_sum").append(labels).append(' ').append(histogram.getSum() / 1e9d).append('\n');
+    out.append(name).append("_count").append(labels).append(' ').append(cumulative).append('\n');
+  }
+
+  /**
+   * @return every metric in the Prometheus text exposition format.
+   */
+  public String toPrometheus() {
+    StringBuilder out = new StringBuilder();
+
+    family(out, "chnlzr_channel_requests_total", "counter", "Channel requests received.");
+    sample(out, "chnlzr_channel_requests_total", "", source.getChannelRequests());
+
+    family(out, "chnlzr_channel_errors_total", "counter", "Channel requests refused, by error code.");
+    source.getChannelErrors().forEach((code, count) ->
+        sample(out, "chnlzr_channel_errors_total", "{code=\"" + code + "\"}", count.sum())
+    );
+
+    family(out, "chnlzr_source_retunes_total", "counter", "Times the source was retuned.");
+    sample(out, "chnlzr_source_retunes_total", "", source.getRetunes());
+
+    family(out, "chnlzr_source_retunes_avoided_total", "counter", "Channels admitted by the planner without a retune.");
+    sample(out, "chnlzr_source_retunes_avoided_total", "", source.getRetunesAvoided());
+
+    family(out, "chnlzr_source_sinks", "gauge", "Resampling pipelines attached to the source.");
+    sample(out, "chnlzr_source_sinks", "", source.getActiveSinks());
+
+    family(out, "chnlzr_ring_buffer_fill", "gauge", "Unconsumed entries in the dsp worker ring buffer.");
+    sample(out, "chnlzr_ring_buffer_fill", "", source.getRingFill());
+
+    family(out, "chnlzr_dsp_worker_dropped_blocks_total", "counter", "Source blocks dropped by a full dsp worker ring.");
+    sample(out, "chnlzr_dsp_worker_dropped_blocks_total", "", source.getDroppedBlocks());
+
+    family(out, "chnlzr_channel_samples_consumed_total", "counter", "Source samples consumed per channel.",
+           channels, ChnlzrMetrics::labels, ChannelMetrics::getSamplesConsumed);
+
+    family(out, "chnlzr_channel_block_seconds", "histogram", "Time spent resampling one source block.");
+    for (ChannelMetrics channel : channels) {
+      histogram(out, "chnlzr_channel_block_seconds", labels(channel), channel.getBlockTime());
+    }
+
+    family(out, "chnlzr_channel_ingest_to_wire_seconds", "histogram", "Time from a source block arriving to its samples being written.");
+    for (ChannelMetrics channel : channels) {
+      histogram(out, "chnlzr_channel_ingest_to_wire_seconds", labels(channel), channel.getIngestToWire());
+    }
+
+    family(out, "chnlzr_channel_source_gaps_total", "counter", "Source blocks that arrived too late to be contiguous.",
+           channels, ChnlzrMetrics::labels, ChannelMetrics::getSourceGaps);
+
+    family(out, "chnlzr_client_messages_written_total", "counter", "Messages written to each client.",
+           clients, ChnlzrMetrics::labels, ClientMetrics::getMessagesWritten);
+    family(out, "chnlzr_client_messages_queued_total", "counter", "Messages queued while a client was unwritable.",
+           clients, ChnlzrMetrics::labels, ClientMetrics::getMessagesQueued);
+    family(out, "chnlzr_client_messages_dropped_total", "counter", "Messages dropped with a full write queue.",
+           clients, ChnlzrMetrics::labels, ClientMetrics::getMessagesDropped);
+    family(out, "chnlzr_client_samples_sent_total", "counter", "Channel samples packed for each client.",
+           clients, ChnlzrMetrics::labels, ClientMetrics::getSamplesSent);
+    family(out, "chnlzr_client_queue_depth", "gauge", "Messages waiting in each client write queue.",
+           clients, ChnlzrMetrics::labels, ClientMetrics::getQueueDepth);
+    family(out, "chnlzr_client_drain_rate", "gauge", "Messages per second written to each client.",
+           clients, ChnlzrMetrics::labels, ClientMetrics::getDrainRate);
+    family(out, "chnlzr_client_rate_divisor", "gauge", "Factor each client's channel rate is degraded by.",
+           clients, ChnlzrMetrics::labels, ClientMetrics::getRateDivisor);
+
+    return out.toString();
+  }
+
+  /**
+   * @return a short human readable summary for periodic logging.
+   */
+  public String toSummary() {
+    long errors  = source.getChannelErrors().values().stream().mapToLong(count -> count.sum()).sum();
+    long written = clients.stream().mapToLong(ClientMetrics::getMessagesWritten).sum();
+    long dropped = clients.stream().mapToLong(ClientMetrics::getMessagesDropped).sum();
+    long p99     = channels.stream().mapToLong(channel -> channel.getBlockTime().getQuantile(0.99d)).max().orElse(0l);
+    long wireP99 = channels.stream().mapToLong(channel -> channel.getIngestToWire().getQuantile(0.99d)).max().orElse(0l);
+
+    return "channels " + channels.size() + ", clients " + clients.size() + ", requests " +
+           source.getChannelRequests() + ", errors " + errors + ", retunes " + source.getRetunes() +
+           ", avoided " + source.getRetunesAvoided() +
+           ", messages written " + written + ", dropped " + dropped + ", ring fill " + source.getRingFill() +
+           ", worst p99 block time " + (p99 / 1_000l) + "us, worst p99 ingest to wire " + (wireP99 / 1_000l) + "us";
+  }
+
+}
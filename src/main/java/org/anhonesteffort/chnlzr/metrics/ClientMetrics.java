@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+public class ClientMetrics {
+
+  private final LongAdder messagesWritten = new LongAdder();
+  private final LongAdder messagesQueued  = new LongAdder();
+  private final LongAdder messagesDropped = new LongAdder();
+  private final LongAdder samplesSent     = new LongAdder();
+  private final String    client;
+
+  private volatile LongSupplier queueDepth  = () -> 0l;
+  private volatile long         drainRate   = 0l;
+  private volatile long         rateDivisor = 1l;
+
+  public ClientMetrics(String client) {
+    this.client = client;
+  }
+
+  public String getClient() {
+    return client;
+  }
+
+  public void setQueueDepth(LongSupplier queueDepth) {
+    this.queueDepth = queueDepth;
+  }
+
+  public void onWritten() {
+    messagesWritten.increment();
+  }
+
+  public void onQueued() {
+    messagesQueued.increment();
+  }
+
+  public void onDropped() {
+    messagesDropped.increment();
+  }
+
+  public void onSamplesPacked(int samples) {
+    samplesSent.add(samples);
+  }
+
+  public long getMessagesWritten() {
+    return messagesWritten.sum();
+  }
+
+  public long getMessagesQueued() {
+    return messagesQueued.sum();
+  }
+
+  public long getMessagesDropped() {
+    return messagesDropped.sum();
+  }
+
+  public long getSamplesSent() {
+    return samplesSent.sum();
+  }
+
+  public long getQueueDepth() {
+    return queueDepth.getAsLong();
+  }
+
+  public void setDrainRate(long messagesPerSecond) {
+    drainRate = messagesPerSecond;
+  }
+
+  public long getDrainRate() {
+    return drainRate;
+  }
+
+  public void setRateDivisor(long divisor) {
+    rateDivisor = divisor;
+  }
+
+  public long getRateDivisor() {
+    return rateDivisor;
+  }
+
+}
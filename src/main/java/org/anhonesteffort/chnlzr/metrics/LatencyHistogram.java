@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of nanosecond durations with power of two buckets from
+ * one microsecond to roughly one second.
+ */
+public class LatencyHistogram {
+
+  private static final int MIN_BUCKET_BITS = 10;
+  private static final int BUCKETS         = 21;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS + 1];
+  private final LongAdder   sum     = new LongAdder();
+
+  public LatencyHistogram() {
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  private static int bucketFor(long nanos) {
+    int bits = 64 - Long.numberOfLeadingZeros(Math.max(nanos - 1l, 0l));
+    return Math.min(Math.max(bits - MIN_BUCKET_BITS, 0), BUCKETS);
+  }
+
+  public void record(long nanos) {
+    buckets[bucketFor(nanos)].increment();
+    sum.add(nanos);
+  }
+
+  public int getBucketCount() {
+    return buckets.length;
+  }
+
+  /**
+   * @return upper bound of bucket in nanoseconds, Long.MAX_VALUE for the last.
+   */
+  public long getUpperBound(int bucket) {
+    return (bucket < BUCKETS) ? (1l << (bucket + MIN_BUCKET_BITS)) : Long.MAX_VALUE;
+  }
+
+  public long getBucket(int bucket) {
+    return buckets[bucket].sum();
+  }
+
+  public long getCount() {
+    long count = 0l;
+    for (LongAdder bucket : buckets) {
+      count += bucket.sum();
+    }
+    return count;
+  }
+
+  public long getSum() {
+    return sum.sum();
+  }
+
+  /**
+   * @return upper bound in nanoseconds of the bucket holding the given quantile.
+   */
+  public long getQuantile(double quantile) {
+    long[] counts = new long[buckets.length];
+    long   total  = 0l;
+
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets[i].sum();
+      total    += counts[i];
+    }
+
+    long rank = (long) Math.ceil(total * quantile);
+    long seen = 0l;
+
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank && seen > 0l) {
+        return getUpperBound(i);
+      }
+    }
+
+    return 0l;
+  }
+
+}
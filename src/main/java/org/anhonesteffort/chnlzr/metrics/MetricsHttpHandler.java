@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.metrics;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
+import java.nio.charset.StandardCharsets;
+
+public class MetricsHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final ChnlzrMetrics metrics;
+
+  public MetricsHttpHandler(ChnlzrMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  private static FullHttpResponse response(HttpResponseStatus status, String body) {
+    FullHttpResponse response = new DefaultFullHttpResponse(
+        HttpVersion.HTTP_1_1, status, Unpooled.copiedBuffer(body, StandardCharsets.UTF_8)
+    );
+
+    response.headers().set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE);
+    response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+    return response;
+  }
+
+  @Override
+  protected void channelRead0(ChannelHandlerContext context, FullHttpRequest request) {
+    FullHttpResponse response;
+
+    if (!request.method().equals(HttpMethod.GET)) {
+      response = response(HttpResponseStatus.METHOD_NOT_ALLOWED, "");
+    } else if (!request.uri().equals("/metrics")) {
+      response = response(HttpResponseStatus.NOT_FOUND, "");
+    } else {
+      response = response(HttpResponseStatus.OK, metrics.toPrometheus());
+    }
+
+    context.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.metrics;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves metrics at /metrics on its own single thread event loop and logs a
+ * summary every logIntervalMs, either can be disabled with a value of zero.
+ */
+public class MetricsServer {
+
+  private static final Logger log              = LoggerFactory.getLogger(MetricsServer.class);
+  private static final int    MAX_REQUEST_SIZE = 4096;
+
+  private final EventLoopGroup group = new NioEventLoopGroup(1);
+  private final ChnlzrMetrics  metrics;
+
+  private Channel channel;
+
+  public MetricsServer(ChnlzrMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  public void start(String address, int port, long logIntervalMs) throws InterruptedException {
+    if (port > 0) {
+      channel = new ServerBootstrap()
+          .group(group)
+          .channel(NioServerSocketChannel.class)
+          .childHandler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            public void initChannel(SocketChannel ch) {
+              ch.pipeline().addLast("codec",      new HttpServerCodec());
+              ch.pipeline().addLast("aggregator", new HttpObjectAggregator(MAX_REQUEST_SIZE));
+              ch.pipeline().addLast("handler",    new MetricsHttpHandler(metrics));
+            }
+          })
+          .bind(address, port).sync().channel();
+
+      log.info("serving metrics at http://" + address + ":" + port + "/metrics");
+    }
+
+    if (logIntervalMs > 0) {
+      group.scheduleAtFixedRate(
+          () -> log.info(metrics.toSummary()), logIntervalMs, logIntervalMs, TimeUnit.MILLISECONDS
+      );
+    }
+  }
+
+  public void stop() {
+    if (channel != null) {
+      channel.close();
+    }
+    group.shutdownGracefully();
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Source clock for one channel pipeline, only touched from the pipeline's
+ * thread. The pipeline marks every source block as it arrives and sinks
+ * downstream read back when that block was ingested and the wall clock time
+ * of its first sample. Sample times are anchored to the first block after a
+ * state change and advance by sample count at the source rate, so channels of
+ * the same source stay aligned. A block arriving more than
+ * GAP_TOLERANCE_NANOS later than its sample count predicts means the source
+ * lost samples, the gap is counted and the anchor moves forward to cover it.
+ * A block arriving as much earlier than predicted means the anchor was taken
+ * while catching up on a backlog, as when priming from history, and the
+ * anchor moves back.
+ */
+public class SampleClock {
+
+  private static final long EPOCH_OFFSET_NANOS  =
+      TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - System.nanoTime();
+  private static final long GAP_TOLERANCE_NANOS = TimeUnit.MILLISECONDS.toNanos(250l);
+
+  private final LatencyHistogram ingestToWire;
+  private final LongAdder        sourceGaps;
+
+  private long sampleRate  =  0l;
+  private long anchorNanos = -1l;
+  private long blockIndex  =  0l;
+  private long nextIndex   =  0l;
+  private long blockNanos  =  0l;
+
+  public SampleClock(LatencyHistogram ingestToWire, LongAdder sourceGaps) {
+    this.ingestToWire = ingestToWire;
+    this.sourceGaps   = sourceGaps;
+  }
+
+  public SampleClock() {
+    this(new LatencyHistogram(), new LongAdder());
+  }
+
+  private long nanosFor(long samples, long sampleRate) {
+    return (long) (samples * 1e9d / sampleRate);
+  }
+
+  public void onStateChange(long sampleRate) {
+    this.sampleRate = sampleRate;
+    anchorNanos     = -1l;
+    blockIndex      =  0l;
+    nextIndex       =  0l;
+  }
+
+  public void onSourceBlock(int count) {
+    long now = System.nanoTime();
+
+    if (sampleRate > 0l) {
+      if (anchorNanos < 0l) {
+        anchorNanos = now - nanosFor(count, sampleRate);
+      }
+
+      long late = now - (anchorNanos + nanosFor(nextIndex + count, sampleRate));
+      if (late > GAP_TOLERANCE_NANOS) {
+        sourceGaps.increment();
+        anchorNanos += late;
+      } else if (late < -GAP_TOLERANCE_NANOS) {
+        anchorNanos += late;
+      }
+
+      blockIndex  = nextIndex;
+      nextIndex  += count;
+    }
+
+    blockNanos = now;
+  }
+
+  /**
+   * @return System.nanoTime() when the block being processed arrived.
+   */
+  public long getBlockNanos() {
+    return blockNanos;
+  }
+
+  /**
+   * @return wall clock time in nanoseconds since the epoch of the first sample
+   *         of the block being processed.
+   */
+  public long getBlockTimestamp() {
+    if (anchorNanos < 0l) {
+      return EPOCH_OFFSET_NANOS + blockNanos;
+    } else {
+      return EPOCH_OFFSET_NANOS + anchorNanos + nanosFor(blockIndex, sampleRate);
+    }
+  }
+
+  /**
+   * @return nanoseconds spanned by samples at sampleRate.
+   */
+  public long getDuration(long samples, long sampleRate) {
+    return (sampleRate > 0l) ? nanosFor(samples, sampleRate) : 0l;
+  }
+
+  public void onWire(long ingestNanos) {
+    ingestToWire.record(System.nanoTime() - ingestNanos);
+  }
+
+  public LatencyHistogram getIngestToWire() {
+    return ingestToWire;
+  }
+
+  public long getSourceGaps() {
+    return sourceGaps.sum();
+  }
+
+}
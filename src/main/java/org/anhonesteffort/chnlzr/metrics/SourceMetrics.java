@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+public class SourceMetrics {
+
+  private final LongAdder               channelRequests = new LongAdder();
+  private final LongAdder               retunes         = new LongAdder();
+  private final LongAdder               retunesAvoided  = new LongAdder();
+  private final Map<Integer, LongAdder> channelErrors   = new ConcurrentHashMap<>();
+  private final List<LongSupplier>      activeSinks     = new CopyOnWriteArrayList<>();
+  private final List<LongSupplier>      ringFill        = new CopyOnWriteArrayList<>();
+  private final List<LongSupplier>      droppedBlocks   = new CopyOnWriteArrayList<>();
+
+  public void addActiveSinks(LongSupplier sinks) {
+    activeSinks.add(sinks);
+  }
+
+  public void addRingFill(LongSupplier fill) {
+    ringFill.add(fill);
+  }
+
+  public void addDroppedBlocks(LongSupplier dropped) {
+    droppedBlocks.add(dropped);
+  }
+
+  public void onChannelRequest(int error) {
+    channelRequests.increment();
+    if (error != 0x00) {
+      channelErrors.computeIfAbsent(error, code -> new LongAdder()).increment();
+    }
+  }
+
+  public void onRetune() {
+    retunes.increment();
+  }
+
+  public long getChannelRequests() {
+    return channelRequests.sum();
+  }
+
+  public Map<Integer, LongAdder> getChannelErrors() {
+    return channelErrors;
+  }
+
+  public long getRetunes() {
+    return retunes.sum();
+  }
+
+  public void onRetuneAvoided() {
+    retunesAvoided.increment();
+  }
+
+  public long getRetunesAvoided() {
+    return retunesAvoided.sum();
+  }
+
+  public long getActiveSinks() {
+    return activeSinks.stream().mapToLong(LongSupplier::getAsLong).sum();
+  }
+
+  public long getRingFill() {
+    return ringFill.stream().mapToLong(LongSupplier::getAsLong).sum();
+  }
+
+  public long getDroppedBlocks() {
+    return droppedBlocks.stream().mapToLong(LongSupplier::getAsLong).sum();
+  }
+
+}
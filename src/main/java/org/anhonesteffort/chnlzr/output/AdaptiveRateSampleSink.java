@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import org.anhonesteffort.chnlzr.metrics.ClientMetrics;
+import org.anhonesteffort.chnlzr.resample.ChannelizerKernel;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Degrades one client's channel rate by powers of two while its write queue
+ * backs up and restores it once the queue has stayed drained, announcing every
+ * change with a state message. Only a change of rate touches the decimator or
+ * the state downstream, drops at a steady rate are left to the client's
+ * metrics so that reporting them never loses more samples. Decimation runs the
+ * same CIC as the block channelizer, without mixing, so the halved band is
+ * anti-aliased. Runs on the thread feeding the channel and never blocks it.
+ */
+public class AdaptiveRateSampleSink implements SampleBlockSink {
+
+  private static final Logger log = LoggerFactory.getLogger(AdaptiveRateSampleSink.class);
+
+  public  static final int  MAX_STEPS         = 8;
+  private static final long CHECK_INTERVAL_NS = 250_000_000l;
+  private static final int  RESTORE_CHECKS    = 8;
+
+  private final float[]          sampleBlock = new float[2];
+  private final ClientWriteQueue context;
+  private final SampleBlockSink  nextSink;
+  private final int              maxSteps;
+  private final long             checkIntervalNs;
+
+  private long              sampleRate   = -1l;
+  private double            frequency    = 0d;
+  private int               steps        = 0;
+  private ChannelizerKernel decimator    = null;
+  private float[]           channelBlock = new float[0];
+
+  private long lastCheck   = System.nanoTime();
+  private long lastWritten = 0l;
+  private long lastDropped = 0l;
+  private int  clearChecks = 0;
+
+  public AdaptiveRateSampleSink(
+      ClientWriteQueue context, SampleBlockSink nextSink, int maxSteps, long checkIntervalNs
+  ) {
+    if (maxSteps > MAX_STEPS) {
+      throw new IllegalArgumentException("adaptive rate steps must be at most " + MAX_STEPS);
+    }
+
+    this.context         = context;
+    this.nextSink        = nextSink;
+    this.maxSteps        = maxSteps;
+    this.checkIntervalNs = checkIntervalNs;
+  }
+
+  public AdaptiveRateSampleSink(ClientWriteQueue context, SampleBlockSink nextSink, int maxSteps) {
+    this(context, nextSink, maxSteps, CHECK_INTERVAL_NS);
+  }
+
+  public int getRateDivisor() {
+    return 1 << steps;
+  }
+
+  private void announceState() {
+    decimator = (steps > 0) ? new ChannelizerKernel(sampleRate, 0d, 0d, 1, getRateDivisor()) : null;
+    context.getMetrics().setRateDivisor(getRateDivisor());
+    nextSink.onStateChange(sampleRate / getRateDivisor(), frequency);
+  }
+
+  @Override
+  public void onStateChange(long sampleRate, double frequency) {
+    this.sampleRate = sampleRate;
+    this.frequency  = frequency;
+    announceState();
+  }
+
+  private void checkBackpressure() {
+    long now = System.nanoTime();
+    if ((now - lastCheck) < checkIntervalNs || sampleRate < 0l) {
+      return;
+    }
+
+    ClientMetrics metrics = context.getMetrics();
+    long          written = metrics.getMessagesWritten();
+    long          dropped = metrics.getMessagesDropped();
+    boolean       behind  = dropped > lastDropped || context.getQueueSize() > (context.getMaxQueueSize() >> 1);
+    int           next    = steps;
+
+    metrics.setDrainRate(((written - lastWritten) * 1_000_000_000l) / Math.max(1l, now - lastCheck));
+    clearChecks = (context.getQueueSize() <= (context.getMaxQueueSize() >> 3) && !behind) ? clearChecks + 1 : 0;
+
+    if (behind && steps < maxSteps) {
+      next = steps + 1;
+    } else if (clearChecks >= RESTORE_CHECKS && steps > 0) {
+      next        = steps - 1;
+      clearChecks = 0;
+    }
+
+    if (next != steps) {
+      log.info(metrics.getClient() + " channel rate divisor " + getRateDivisor() + " -> " + (1 << next));
+      steps = next;
+      announceState();
+    }
+
+    lastCheck   = now;
+    lastWritten = written;
+    lastDropped = dropped;
+  }
+
+  @Override
+  public void consume(ComplexNumber sample) {
+    checkBackpressure();
+    if (steps == 0) {
+      nextSink.consume(sample);
+      return;
+    }
+
+    sampleBlock[0] = sample.getInPhase();
+    sampleBlock[1] = sample.getQuadrature();
+    decimate(sampleBlock, 1);
+  }
+
+  @Override
+  public void consume(float[] samples, int count) {
+    checkBackpressure();
+    if (steps == 0) {
+      nextSink.consume(samples, count);
+    } else {
+      decimate(samples, count);
+    }
+  }
+
+  private void decimate(float[] samples, int count) {
+    int capacity = decimator.getOutputCapacity(count) << 1;
+    if (channelBlock.length < capacity) {
+      channelBlock = new float[capacity];
+    }
+
+    int outCount = decimator.process(samples, count, channelBlock);
+    if (outCount > 0) {
+      nextSink.consume(channelBlock, outCount);
+    }
+  }
+
+  @Override
+  public void close() {
+    nextSink.close();
+  }
+
+}
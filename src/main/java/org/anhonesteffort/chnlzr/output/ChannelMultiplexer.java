@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import io.netty.channel.ChannelHandlerContext;
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.anhonesteffort.chnlzr.metrics.ClientMetrics;
+import org.capnproto.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shares one client connection between many channels. Each channel gets its
+ * own bounded write queue so a busy channel only ever drops its own messages,
+ * and queues are drained round robin on the event loop, at most QUANTUM
+ * messages per channel per turn. A channel's id is its center frequency
+ * rounded to the hertz, see channelId(). On a multiplexed connection a state
+ * message always means the messages that follow belong to the channel with
+ * that id, running at that sample rate. One is written whenever the
+ * connection switches channels and whenever a channel's rate changes, so a
+ * client never has to tell a switch from a rate change. Replies to requests
+ * are preceded the same way, a channel that is not open has a sample rate of
+ * zero.
+ */
+public class ChannelMultiplexer {
+
+  private static final int QUANTUM = 4;
+
+  private final ProtoFactory                proto          = new ProtoFactory();
+  private final List<MultiplexedWriteQueue> queues         = new ArrayList<>();
+  private final AtomicBoolean               drainScheduled = new AtomicBoolean(false);
+  private final Runnable                    drainQueues    = this::drain;
+  private final ChannelHandlerContext       context;
+
+  private MultiplexedWriteQueue lastWritten = null;
+  private int                   nextQueue   = 0;
+
+  public ChannelMultiplexer(ChannelHandlerContext context) {
+    this.context = context;
+  }
+
+  /**
+   * @return the id of the channel centered at centerFrequency.
+   */
+  public static long channelId(double centerFrequency) {
+    return Math.round(centerFrequency);
+  }
+
+  public ClientWriteQueue open(double channelFrequency, int maxQueueSize, ClientMetrics metrics) {
+    MultiplexedWriteQueue queue = new MultiplexedWriteQueue(context, this, channelFrequency, maxQueueSize, metrics);
+    queues.add(queue);
+    return queue;
+  }
+
+  public void close(ClientWriteQueue queue) {
+    if (queues.remove(queue)) {
+      ((MultiplexedWriteQueue) queue).close();
+      if (lastWritten == queue) {
+        lastWritten = null;
+      }
+    }
+  }
+
+  public int getChannelCount() {
+    return queues.size();
+  }
+
+  private MessageBuilder tagFor(double channelFrequency) {
+    for (MultiplexedWriteQueue queue : queues) {
+      if (queue.getChannelId() == channelId(channelFrequency)) {
+        return queue.tag();
+      }
+    }
+    return proto.state(0l, channelFrequency);
+  }
+
+  /**
+   * Writes message from the event loop ahead of anything queued, preceded by
+   * the tag of the channel at channelFrequency.
+   */
+  public void writeTagged(double channelFrequency, MessageBuilder message) {
+    context.write(tagFor(channelFrequency));
+    context.writeAndFlush(message);
+    lastWritten = null;
+  }
+
+  /**
+   * Acknowledges the release of the channel at channelFrequency, which must
+   * already be closed, with its tag alone.
+   */
+  public void writeReleased(double channelFrequency) {
+    context.writeAndFlush(tagFor(channelFrequency));
+    lastWritten = null;
+  }
+
+  void scheduleDrain() {
+    if (context.channel().isWritable() && drainScheduled.compareAndSet(false, true)) {
+      context.executor().execute(drainQueues);
+    }
+  }
+
+  public void drain() {
+    drainScheduled.set(false);
+
+    boolean wrote = false;
+    int     idle  = 0;
+
+    while (context.channel().isWritable() && idle < queues.size()) {
+      nextQueue = (nextQueue >= queues.size()) ? 0 : nextQueue;
+      MultiplexedWriteQueue queue = queues.get(nextQueue++);
+
+      int written = 0;
+      while (written < QUANTUM && context.channel().isWritable() && queue.writeNext(queue != lastWritten)) {
+        lastWritten = queue;
+        written++;
+      }
+
+      idle  = (written == 0) ? idle + 1 : 0;
+      wrote = wrote || written > 0;
+    }
+
+    if (wrote) {
+      context.flush();
+    }
+  }
+
+}
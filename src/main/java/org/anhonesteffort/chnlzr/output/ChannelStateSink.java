@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.capnproto.MessageBuilder;
+
+/**
+ * Sends a client only the channel state, for channels whose samples are
+ * carried some other way such as datagrams. The descriptor telling the client
+ * where to find its samples is sent once, ahead of the first state.
+ */
+public class ChannelStateSink implements SampleBlockSink {
+
+  private final ClientWriteQueue context;
+  private final MessageBuilder   descriptor;
+
+  private boolean described = false;
+
+  public ChannelStateSink(ClientWriteQueue context, MessageBuilder descriptor) {
+    this.context    = context;
+    this.descriptor = descriptor;
+  }
+
+  @Override
+  public void onStateChange(long sampleRate, double frequency) {
+    if (!described) {
+      context.writeControl(descriptor);
+      described = true;
+    }
+    context.writeState(sampleRate);
+  }
+
+  @Override
+  public void consume(ComplexNumber sample) { }
+
+  @Override
+  public void consume(float[] samples, int count) { }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.ReferenceCountUtil;
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.anhonesteffort.chnlzr.metrics.ClientMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes messages to a client from any thread, queuing up to maxQueueSize
+ * messages while the channel is unwritable and dropping beyond that. Pooled
+ * samples messages are returned to their pool and reference counted messages
+ * are released once written or dropped.
+ */
+public class ClientWriteQueue {
+
+  private static final Logger log = LoggerFactory.getLogger(ClientWriteQueue.class);
+
+  private final ProtoFactory  proto      = new ProtoFactory();
+  private final Queue<Object> queue      = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queueSize  = new AtomicInteger(0);
+  private final Runnable      drainQueue = this::onWritabilityChanged;
+
+  private final ChannelHandlerContext context;
+  private final int maxQueueSize;
+  private final ClientMetrics metrics;
+
+  private boolean dropping = false;
+
+  public ClientWriteQueue(ChannelHandlerContext context, int maxQueueSize, ClientMetrics metrics) {
+    this.context      = context;
+    this.maxQueueSize = maxQueueSize;
+    this.metrics      = metrics;
+
+    metrics.setQueueDepth(queueSize::get);
+  }
+
+  public ClientWriteQueue(ChannelHandlerContext context, int maxQueueSize) {
+    this(context, maxQueueSize, new ClientMetrics(String.valueOf(context.channel().remoteAddress())));
+  }
+
+  public ClientMetrics getMetrics() {
+    return metrics;
+  }
+
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+
+  public int getQueueSize() {
+    return queueSize.get();
+  }
+
+  public ByteBufAllocator alloc() {
+    return context.alloc();
+  }
+
+  void write(Object message, boolean flush) {
+    metrics.onWritten();
+    if (message instanceof PooledSamplesMessage) {
+      PooledSamplesMessage pooled = (PooledSamplesMessage) message;
+      if (flush) {
+        context.writeAndFlush(pooled.getMessage()).addListener(pooled);
+      } else {
+        context.write(pooled.getMessage()).addListener(pooled);
+      }
+    } else if (flush) {
+      context.writeAndFlush(message);
+    } else {
+      context.write(message);
+    }
+  }
+
+  void drop(Object message) {
+    metrics.onDropped();
+    if (message instanceof PooledSamplesMessage) {
+      ((PooledSamplesMessage) message).release();
+    } else {
+      ReferenceCountUtil.release(message);
+    }
+  }
+
+  /**
+   * Queues message regardless of the queue limit, for the few messages a
+   * client cannot decode the stream without.
+   */
+  void enqueueControl(Object message) {
+    queue.add(message);
+    queueSize.incrementAndGet();
+    metrics.onQueued();
+  }
+
+  void enqueue(Object message) {
+    if (queueSize.get() < maxQueueSize) {
+      enqueueControl(message);
+    } else {
+      if (!dropping) {
+        log.warn(context.channel().remoteAddress() + " write queue full, dropping messages");
+        dropping = true;
+      }
+      drop(message);
+    }
+  }
+
+  Object poll() {
+    Object message = queue.poll();
+    if (message != null) {
+      queueSize.decrementAndGet();
+    }
+    return message;
+  }
+
+  private void writeOrQueue(Object message, boolean droppable) {
+    if (queueSize.get() == 0 && context.channel().isWritable()) {
+      write(message, true);
+      dropping = false;
+      return;
+    }
+
+    if (droppable) {
+      enqueue(message);
+    } else {
+      enqueueControl(message);
+    }
+
+    if (context.channel().isWritable()) {
+      context.executor().execute(drainQueue);
+    }
+  }
+
+  public void writeOrQueue(Object message) {
+    writeOrQueue(message, true);
+  }
+
+  /**
+   * Writes or queues message past the queue limit, for messages a client
+   * cannot decode the stream without.
+   */
+  public void writeControl(Object message) {
+    writeOrQueue(message, false);
+  }
+
+  /**
+   * State messages are never dropped, a client that missed one would decode
+   * every following sample at the wrong rate.
+   */
+  public void writeState(long sampleRate) {
+    writeControl(proto.state(sampleRate, 0d));
+  }
+
+  public void onWritabilityChanged() {
+    boolean wrote = false;
+
+    while (context.channel().isWritable()) {
+      Object message = poll();
+      if (message == null) {
+        break;
+      }
+
+      write(message, false);
+      wrote = true;
+    }
+
+    if (wrote) {
+      context.flush();
+    }
+  }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import org.anhonesteffort.chnlzr.metrics.SampleClock;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.capnproto.MessageBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
+
+/**
+ * Streams one channel as sequence numbered datagrams sized to fit the MTU,
+ * to a unicast address or multicast group shared by every channel. Receivers
+ * pick their channel by center frequency and detect loss from gaps in the
+ * sequence. Sends never block, a datagram the socket cannot take is dropped
+ * and shows up as a sequence gap. The sample index counts channel samples
+ * since the last rate change and the timestamp, from the channel's
+ * SampleClock, lets receivers align channels of the same source and spot
+ * source gaps as a jump against the index. Big endian layout:
+ *
+ *   int    MAGIC
+ *   long   sequence
+ *   long   index of the first sample
+ *   long   nanoseconds since the epoch of the first sample
+ *   double channel center frequency
+ *   long   channel sample rate
+ *   byte   SampleFormat ordinal
+ *   short  sample count
+ *   byte[] samples packed in the SampleFormat
+ *
+ * Clients learn where to listen from the descriptor() sent over TCP in place
+ * of the first samples message.
+ */
+public class DatagramSampleSink implements SampleBlockSink {
+
+  private static final Logger log = LoggerFactory.getLogger(DatagramSampleSink.class);
+
+  public  static final int MAGIC          = 0x43484e4c;
+  public  static final int HEADER_LENGTH  = 4 + 8 + 8 + 8 + 8 + 8 + 1 + 2;
+  private static final int IP_UDP_HEADERS = 20 + 8;
+
+  private final DatagramChannel channel;
+  private final SocketAddress   target;
+  private final double          centerFrequency;
+  private final SampleFormat    format;
+  private final SampleEncoder   encoder;
+  private final int             samplesPerDatagram;
+  private final float[]         staged;
+  private final ByteBuffer      datagram;
+  private final SampleClock     clock;
+  private final SampleTimeline  timeline;
+
+  private long    sampleRate  = -1l;
+  private long    sequence    = 0l;
+  private int     stagedCount = 0;
+  private boolean dropping    = false;
+
+  public DatagramSampleSink(
+      DatagramChannel channel, SocketAddress target, double centerFrequency,
+      SampleFormat format, int mtu, SampleClock clock
+  ) {
+    this.channel         = channel;
+    this.target          = target;
+    this.centerFrequency = centerFrequency;
+    this.format          = format;
+    this.clock           = clock;
+    timeline             = new SampleTimeline(clock);
+    samplesPerDatagram   = samplesPerDatagram(format, mtu);
+    encoder              = new SampleEncoder(format, samplesPerDatagram);
+    staged               = new float[samplesPerDatagram << 1];
+    datagram             = ByteBuffer.allocateDirect(HEADER_LENGTH + format.getEncodedLength(samplesPerDatagram));
+  }
+
+  public DatagramSampleSink(
+      DatagramChannel channel, SocketAddress target, double centerFrequency, SampleFormat format, int mtu
+  ) {
+    this(channel, target, centerFrequency, format, mtu, new SampleClock());
+  }
+
+  /**
+   * @return the most samples whose datagram fits within mtu.
+   */
+  public static int samplesPerDatagram(SampleFormat format, int mtu) {
+    int available = mtu - IP_UDP_HEADERS - HEADER_LENGTH;
+    int samples   = 1;
+
+    while (format.getEncodedLength(samples + 1) <= available) {
+      samples++;
+    }
+
+    if (format.getEncodedLength(samples) > available) {
+      throw new IllegalArgumentException("mtu " + mtu + " is too small for a single sample");
+    }
+
+    return samples;
+  }
+
+  public int getSamplesPerDatagram() {
+    return samplesPerDatagram;
+  }
+
+  /**
+   * @return a samples message whose payload tells a client where its channel's
+   *         datagrams are sent, big endian:
+   *
+   *   int    MAGIC
+   *   byte   address length, 4 or 16
+   *   byte[] address
+   *   short  port
+   *   byte   SampleFormat ordinal
+   *   short  samples per datagram
+   */
+  public static MessageBuilder descriptor(InetSocketAddress target, SampleFormat format, int mtu) {
+    byte[]         address = target.getAddress().getAddress();
+    MessageBuilder message = new MessageBuilder();
+
+    BaseMessage.Builder base = message.initRoot(BaseMessage.factory);
+    base.setType(BaseMessage.Type.SAMPLES);
+
+    ByteBuffer payload = base.initSamples().initSamples(4 + 1 + address.length + 2 + 1 + 2).asByteBuffer();
+    payload.putInt(MAGIC);
+    payload.put((byte) address.length);
+    payload.put(address);
+    payload.putShort((short) target.getPort());
+    payload.put((byte) format.ordinal());
+    payload.putShort((short) samplesPerDatagram(format, mtu));
+
+    return message;
+  }
+
+  private void send() {
+    datagram.clear();
+    datagram.putInt(MAGIC);
+    datagram.putLong(sequence++);
+    datagram.putLong(timeline.getSampleIndex());
+    datagram.putLong(timeline.getTimestamp());
+    datagram.putDouble(centerFrequency);
+    datagram.putLong(sampleRate);
+    datagram.put((byte) format.ordinal());
+    datagram.putShort((short) stagedCount);
+    encoder.encode(staged, stagedCount, datagram);
+    datagram.flip();
+    timeline.advance(stagedCount);
+    stagedCount = 0;
+
+    try {
+
+      if (channel.send(datagram, target) > 0) {
+        clock.onWire(clock.getBlockNanos());
+        dropping = false;
+      } else if (!dropping) {
+        log.warn("socket buffer full, dropping datagrams to " + target);
+        dropping = true;
+      }
+
+    } catch (IOException e) {
+      if (!dropping) {
+        log.warn("failed to send datagram to " + target, e);
+        dropping = true;
+      }
+    }
+  }
+
+  @Override
+  public void onStateChange(long sampleRate, double frequency) {
+    if (stagedCount > 0 && this.sampleRate > 0l) {
+      send();
+    }
+    this.sampleRate = sampleRate;
+    timeline.onStateChange(sampleRate);
+  }
+
+  @Override
+  public void consume(ComplexNumber sample) {
+    timeline.sync(stagedCount);
+    staged[(stagedCount << 1)]     = sample.getInPhase();
+    staged[(stagedCount << 1) + 1] = sample.getQuadrature();
+
+    if (++stagedCount >= samplesPerDatagram) {
+      send();
+    }
+  }
+
+  @Override
+  public void consume(float[] samples, int count) {
+    timeline.sync(stagedCount);
+    for (int offset = 0; offset < count;) {
+      int chunk = Math.min(count - offset, samplesPerDatagram - stagedCount);
+      System.arraycopy(samples, offset << 1, staged, stagedCount << 1, chunk << 1);
+      stagedCount += chunk;
+      offset      += chunk;
+
+      if (stagedCount >= samplesPerDatagram) {
+        send();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import io.netty.buffer.ByteBuf;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+
+/**
+ * Writes samples frames straight into pooled direct buffers laid out exactly
+ * as the encoder would have serialized them, the encoder passes them through.
+ * The partly filled frame is released on close(), which can race a block
+ * still in flight on the pipeline thread so every entry point synchronizes.
+ */
+public class DirectNetworkSampleSink implements SampleBlockSink {
+
+  private final ClientWriteQueue     context;
+  private final SamplesFrameTemplate template;
+
+  private ByteBuf nextFrame;
+  private int     nextRemaining;
+  private boolean closed = false;
+
+  public DirectNetworkSampleSink(ClientWriteQueue context, SamplesFrameTemplate template) {
+    this.context  = context;
+    this.template = template;
+  }
+
+  private void initNextFrame() {
+    nextFrame     = context.alloc().directBuffer(template.getFrameLength(), template.getFrameLength());
+    nextRemaining = template.getSamplesPerMessage();
+    template.writeHeader(nextFrame);
+  }
+
+  private void onSampleWritten() {
+    if (--nextRemaining <= 0) {
+      template.writeTrailer(nextFrame);
+      context.getMetrics().onSamplesPacked(template.getSamplesPerMessage());
+      context.writeOrQueue(nextFrame);
+      initNextFrame();
+    }
+  }
+
+  @Override
+  public synchronized void onStateChange(long sampleRate, double frequency) {
+    if (closed) {
+      return;
+    } else if (nextFrame != null) {
+      nextFrame.release();
+    }
+
+    initNextFrame();
+    context.writeState(sampleRate);
+  }
+
+  @Override
+  public synchronized void consume(ComplexNumber sample) {
+    if (nextFrame == null) {
+      return;
+    }
+
+    nextFrame.writeFloat(sample.getInPhase());
+    nextFrame.writeFloat(sample.getQuadrature());
+    onSampleWritten();
+  }
+
+  @Override
+  public synchronized void consume(float[] samples, int count) {
+    if (nextFrame == null) {
+      return;
+    }
+
+    for (int i = 0; i < (count << 1); i += 2) {
+      nextFrame.writeFloat(samples[i]);
+      nextFrame.writeFloat(samples[i + 1]);
+      onSampleWritten();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (nextFrame != null) {
+      nextFrame.release();
+      nextFrame = null;
+    }
+    closed = true;
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import org.anhonesteffort.dsp.util.ComplexNumber;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Copies the output of one resampling pipeline to every subscribed sink,
+ * subscribers are added and removed from the pipeline thread and a subscriber
+ * added mid-stream is sent the most recent channel state before any samples.
+ */
+public class FanOutSampleSink implements SampleBlockSink {
+
+  private final Queue<Runnable>       pending     = new ConcurrentLinkedQueue<>();
+  private final List<SampleBlockSink> subscribers = new ArrayList<>();
+
+  private long   sampleRate = -1l;
+  private double frequency;
+
+  public void subscribe(SampleBlockSink sink) {
+    pending.add(() -> {
+      subscribers.add(sink);
+      if (sampleRate > 0l) { sink.onStateChange(sampleRate, frequency); }
+    });
+  }
+
+  public void unsubscribe(SampleBlockSink sink) {
+    pending.add(() -> subscribers.remove(sink));
+  }
+
+  private void applyPending() {
+    Runnable operation;
+    while ((operation = pending.poll()) != null) {
+      operation.run();
+    }
+  }
+
+  @Override
+  public void onStateChange(long sampleRate, double frequency) {
+    applyPending();
+    this.sampleRate = sampleRate;
+    this.frequency  = frequency;
+
+    for (int i = 0; i < subscribers.size(); i++) {
+      subscribers.get(i).onStateChange(sampleRate, frequency);
+    }
+  }
+
+  @Override
+  public void consume(ComplexNumber sample) {
+    if (!pending.isEmpty()) { applyPending(); }
+    for (int i = 0; i < subscribers.size(); i++) {
+      subscribers.get(i).consume(sample);
+    }
+  }
+
+  @Override
+  public void consume(float[] samples, int count) {
+    if (!pending.isEmpty()) { applyPending(); }
+    for (int i = 0; i < subscribers.size(); i++) {
+      subscribers.get(i).consume(samples, count);
+    }
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import io.netty.channel.ChannelHandlerContext;
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.anhonesteffort.chnlzr.metrics.ClientMetrics;
+import org.capnproto.MessageBuilder;
+
+/**
+ * One channel's write queue on a multiplexed connection. Messages are always
+ * queued and written by the connection's ChannelMultiplexer so that channels
+ * share the socket fairly and every run of messages can be tagged with the
+ * channel it belongs to.
+ */
+class MultiplexedWriteQueue extends ClientWriteQueue {
+
+  private final ProtoFactory       proto = new ProtoFactory();
+  private final ChannelMultiplexer multiplexer;
+  private final double             channelFrequency;
+
+  private          long    sampleRate = 0l;
+  private volatile boolean closed     = false;
+
+  MultiplexedWriteQueue(
+      ChannelHandlerContext context, ChannelMultiplexer multiplexer,
+      double channelFrequency, int maxQueueSize, ClientMetrics metrics
+  ) {
+    super(context, maxQueueSize, metrics);
+    this.multiplexer      = multiplexer;
+    this.channelFrequency = channelFrequency;
+  }
+
+  public long getChannelId() {
+    return ChannelMultiplexer.channelId(channelFrequency);
+  }
+
+  @Override
+  public void writeOrQueue(Object message) {
+    if (closed) {
+      drop(message);
+    } else {
+      enqueue(message);
+      multiplexer.scheduleDrain();
+    }
+  }
+
+  @Override
+  public void writeControl(Object message) {
+    if (closed) {
+      drop(message);
+    } else {
+      enqueueControl(message);
+      multiplexer.scheduleDrain();
+    }
+  }
+
+  @Override
+  public void writeState(long sampleRate) {
+    writeControl(new StateChange(sampleRate));
+  }
+
+  @Override
+  public void onWritabilityChanged() {
+    multiplexer.drain();
+  }
+
+  /**
+   * @return the state message identifying this channel at the rate of the
+   *         last state written.
+   */
+  MessageBuilder tag() {
+    return proto.state(sampleRate, channelFrequency);
+  }
+
+  /**
+   * Writes the next queued message without flushing, preceded by tag() if
+   * the previous message on the connection belonged to another channel.
+   * @return false if nothing was queued.
+   */
+  boolean writeNext(boolean switched) {
+    Object message = poll();
+    if (message == null) {
+      return false;
+    }
+
+    if (message instanceof StateChange) {
+      sampleRate = ((StateChange) message).sampleRate;
+      write(tag(), false);
+    } else {
+      if (switched) {
+        write(tag(), false);
+      }
+      write(message, false);
+    }
+
+    return true;
+  }
+
+  void close() {
+    closed = true;
+    for (Object message = poll(); message != null; message = poll()) {
+      drop(message);
+    }
+  }
+
+  private static class StateChange {
+    private final long sampleRate;
+
+    public StateChange(long sampleRate) {
+      this.sampleRate = sampleRate;
+    }
+  }
+
+}
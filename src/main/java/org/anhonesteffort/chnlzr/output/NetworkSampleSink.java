@@ -17,48 +17,117 @@
 
 package org.anhonesteffort.chnlzr.output;
 
-import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
-import org.anhonesteffort.chnlzr.netty.WriteQueuingContext;
+import org.anhonesteffort.chnlzr.metrics.SampleClock;
 import org.anhonesteffort.dsp.util.ComplexNumber;
-import org.capnproto.MessageBuilder;
 
 import java.nio.ByteBuffer;
 
-import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
+public class NetworkSampleSink implements SampleBlockSink {
 
-public class NetworkSampleSink implements SampleSink {
+  private static final int IN_FLIGHT_MESSAGES = 4;
 
-  private final ProtoFactory        proto = new ProtoFactory();
-  private final WriteQueuingContext context;
-  private final int                 samplesPerMessage;
+  private final ClientWriteQueue   context;
+  private final SamplesMessagePool pool;
+  private final int                samplesPerMessage;
+  private final SampleEncoder      encoder;
+  private final float[]            staged;
+  private final SampleClock        clock;
 
-  private MessageBuilder nextMessage;
-  private ByteBuffer     nextSamples;
+  private PooledSamplesMessage nextMessage;
+  private ByteBuffer           nextSamples;
+  private int                  stagedCount = 0;
 
-  public NetworkSampleSink(WriteQueuingContext context, int samplesPerMessage) {
+  public NetworkSampleSink(ClientWriteQueue context, int samplesPerMessage, SampleFormat format, SampleClock clock) {
     this.context           = context;
     this.samplesPerMessage = samplesPerMessage;
+    this.clock             = clock;
+    pool                   = new SamplesMessagePool(samplesPerMessage, context.getMaxQueueSize() + IN_FLIGHT_MESSAGES, format);
+    encoder                = new SampleEncoder(format, samplesPerMessage);
+    staged                 = (format == SampleFormat.FLOAT32) ? null : new float[samplesPerMessage << 1];
+  }
+
+  public NetworkSampleSink(ClientWriteQueue context, int samplesPerMessage, SampleFormat format) {
+    this(context, samplesPerMessage, format, new SampleClock());
+  }
+
+  public NetworkSampleSink(ClientWriteQueue context, int samplesPerMessage) {
+    this(context, samplesPerMessage, SampleFormat.FLOAT32);
   }
 
   private void initNextMessage() {
-    nextMessage = proto.samples(samplesPerMessage);
-    nextSamples = nextMessage.getRoot(BaseMessage.factory).getSamples().getSamples().asByteBuffer();
+    nextMessage = pool.acquire();
+    nextSamples = nextMessage.getSamples();
   }
 
+  /**
+   * Samples staged at the old rate are discarded so that no message mixes
+   * samples from either side of a state change.
+   */
   @Override
   public void onStateChange(long sampleRate, double frequency) {
-    if (nextMessage == null) { initNextMessage(); }
-    context.writeOrQueue(proto.state(sampleRate, 0d));
+    if (nextMessage == null) {
+      initNextMessage();
+    } else {
+      nextSamples.rewind();
+      stagedCount = 0;
+    }
+
+    context.writeState(sampleRate);
+  }
+
+  private void writeNextMessage() {
+    context.getMetrics().onSamplesPacked(samplesPerMessage);
+    nextMessage.stamp(clock);
+    context.writeOrQueue(nextMessage);
+    initNextMessage();
+  }
+
+  private void encodeStagedIfFull() {
+    if (stagedCount >= samplesPerMessage) {
+      encoder.encode(staged, stagedCount, nextSamples);
+      stagedCount = 0;
+      writeNextMessage();
+    }
   }
 
   @Override
   public void consume(ComplexNumber sample) {
+    if (staged != null) {
+      staged[(stagedCount << 1)]     = sample.getInPhase();
+      staged[(stagedCount << 1) + 1] = sample.getQuadrature();
+      stagedCount++;
+      encodeStagedIfFull();
+      return;
+    }
+
     nextSamples.putFloat(sample.getInPhase());
     nextSamples.putFloat(sample.getQuadrature());
 
     if (nextSamples.remaining() <= 0) {
-      context.writeOrQueue(nextMessage);
-      initNextMessage();
+      writeNextMessage();
+    }
+  }
+
+  @Override
+  public void consume(float[] samples, int count) {
+    if (staged != null) {
+      for (int offset = 0; offset < count;) {
+        int chunk = Math.min(count - offset, samplesPerMessage - stagedCount);
+        System.arraycopy(samples, offset << 1, staged, stagedCount << 1, chunk << 1);
+        stagedCount += chunk;
+        offset      += chunk;
+        encodeStagedIfFull();
+      }
+      return;
+    }
+
+    for (int i = 0; i < (count << 1); i += 2) {
+      nextSamples.putFloat(samples[i]);
+      nextSamples.putFloat(samples[i + 1]);
+
+      if (nextSamples.remaining() <= 0) {
+        writeNextMessage();
+      }
     }
   }
 
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import org.anhonesteffort.chnlzr.metrics.SampleClock;
+import org.capnproto.MessageBuilder;
+
+import java.nio.ByteBuffer;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
+
+public class PooledSamplesMessage implements ChannelFutureListener {
+
+  private final SamplesMessagePool pool;
+  private final MessageBuilder     message;
+  private final ByteBuffer         samples;
+
+  private SampleClock clock       = null;
+  private long        ingestNanos = 0l;
+
+  protected PooledSamplesMessage(SamplesMessagePool pool, MessageBuilder message) {
+    this.pool    = pool;
+    this.message = message;
+    samples      = message.getRoot(BaseMessage.factory).getSamples().getSamples().asByteBuffer();
+  }
+
+  public MessageBuilder getMessage() {
+    return message;
+  }
+
+  public ByteBuffer getSamples() {
+    return samples;
+  }
+
+  /**
+   * Records the ingest time of the source block that completed this message,
+   * ingest to wire latency is recorded with clock once it has been written.
+   */
+  public void stamp(SampleClock clock) {
+    this.clock  = clock;
+    ingestNanos = clock.getBlockNanos();
+  }
+
+  public void release() {
+    clock = null;
+    samples.rewind();
+    pool.release(this);
+  }
+
+  @Override
+  public void operationComplete(ChannelFuture future) {
+    if (clock != null && future.isSuccess()) {
+      clock.onWire(ingestNanos);
+    }
+    release();
+  }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+public interface SampleBlockSink extends SampleSink {
+
+  /**
+   * @param samples interleaved in-phase and quadrature components.
+   * @param count   number of complex samples to consume from the start of samples.
+   */
+  void consume(float[] samples, int count);
+
+  /**
+   * Releases anything held for samples not yet written once the sink has been
+   * unsubscribed, may be called from any thread.
+   */
+  default void close() { }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+public enum SampleCompression {
+
+  /**
+   * Samples payloads are written as packed by the network sink.
+   */
+  NONE,
+
+  /**
+   * Samples payloads are raw deflated at BEST_SPEED.
+   */
+  DEFLATE,
+
+  /**
+   * Each I and Q component is replaced by its difference from the previous
+   * one, XOR of the bits for float32, before deflating. Slowly varying
+   * channels leave mostly small residuals which deflate much better.
+   */
+  DELTA_DEFLATE;
+
+  public static SampleCompression fromString(String name) {
+    return valueOf(name.trim().replace('-', '_').toUpperCase());
+  }
+
+}
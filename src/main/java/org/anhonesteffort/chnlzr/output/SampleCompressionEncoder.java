@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import org.capnproto.MessageBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
+
+/**
+ * Replaces the payload of outbound samples messages with its compressed form
+ * on the channel's event loop, every other message passes through untouched.
+ * Sits between the server handler and BaseMessageEncoder, one per channel.
+ * Compressed messages are pooled by payload size rounded up to a whole capnp
+ * word, which costs nothing on the wire, and reused once BaseMessageEncoder
+ * has serialized them within the same write.
+ */
+public class SampleCompressionEncoder extends MessageToMessageEncoder<MessageBuilder> {
+
+  private static final int MAX_POOLED_SIZES = 64;
+
+  private final Map<Integer, MessageBuilder> pool = new HashMap<>();
+  private final SampleCompressor             compressor;
+
+  public SampleCompressionEncoder(SampleCompression compression, SampleFormat format) {
+    compressor = new SampleCompressor(compression, format);
+  }
+
+  @Override
+  protected void encode(ChannelHandlerContext context, MessageBuilder message, List<Object> out) {
+    BaseMessage.Builder root = message.getRoot(BaseMessage.factory);
+    if (root.getType() != BaseMessage.Type.SAMPLES) {
+      out.add(message);
+      return;
+    }
+
+    ByteBuffer     packed     = compressor.compress(root.getSamples().getSamples().asByteBuffer());
+    MessageBuilder compressed = messageFor((packed.remaining() + 7) & ~7);
+    ByteBuffer     payload    = compressed.getRoot(BaseMessage.factory).getSamples().getSamples().asByteBuffer();
+
+    payload.put(packed);
+    while (payload.hasRemaining()) {
+      payload.put((byte) 0x00);
+    }
+
+    out.add(compressed);
+  }
+
+  private MessageBuilder messageFor(int length) {
+    MessageBuilder message = pool.get(length);
+    if (message != null) {
+      return message;
+    }
+
+    message = new MessageBuilder();
+    BaseMessage.Builder base = message.initRoot(BaseMessage.factory);
+    base.setType(BaseMessage.Type.SAMPLES);
+    base.initSamples().initSamples(length);
+
+    if (pool.size() < MAX_POOLED_SIZES) {
+      pool.put(length, message);
+    }
+
+    return message;
+  }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses samples payloads packed in a SampleFormat. A compressed payload
+ * is the uncompressed length as a 32-bit int followed by the raw deflate
+ * stream, bytes after the end of the stream are ignored. Not thread safe, one
+ * per client channel.
+ */
+public class SampleCompressor {
+
+  public static final int DEFAULT_MAX_PAYLOAD_LENGTH = 1 << 20;
+
+  private final SampleCompression compression;
+  private final SampleFormat      format;
+  private final int               maxPayloadLength;
+  private final Deflater          deflater = new Deflater(Deflater.BEST_SPEED, true);
+  private final Inflater          inflater = new Inflater(true);
+
+  private byte[] scratch    = new byte[0];
+  private byte[] compressed = new byte[0];
+
+  public SampleCompressor(SampleCompression compression, SampleFormat format, int maxPayloadLength) {
+    this.compression      = compression;
+    this.format           = format;
+    this.maxPayloadLength = maxPayloadLength;
+  }
+
+  public SampleCompressor(SampleCompression compression, SampleFormat format) {
+    this(compression, format, DEFAULT_MAX_PAYLOAD_LENGTH);
+  }
+
+  public SampleCompression getCompression() {
+    return compression;
+  }
+
+  private int headerLength() {
+    return (format == SampleFormat.INT16 || format == SampleFormat.INT8) ? 4 : 0;
+  }
+
+  /**
+   * Runs backwards so each component is differenced against its original predecessor.
+   */
+  private void encodeDelta(byte[] payload, int length) {
+    ByteBuffer buffer = ByteBuffer.wrap(payload, 0, length);
+    int        from   = headerLength();
+
+    switch (format) {
+      case FLOAT32:
+        for (int i = length - 4; i >= from + 8; i -= 4) {
+          buffer.putInt(i, buffer.getInt(i) ^ buffer.getInt(i - 8));
+        }
+        break;
+
+      case INT16:
+        for (int i = length - 2; i >= from + 4; i -= 2) {
+          buffer.putShort(i, (short) (buffer.getShort(i) - buffer.getShort(i - 4)));
+        }
+        break;
+
+      case INT8:
+        for (int i = length - 1; i >= from + 2; i--) {
+          payload[i] = (byte) (payload[i] - payload[i - 2]);
+        }
+        break;
+
+      default:
+        // bfp exponent bytes are interleaved with mantissas, deflate alone.
+    }
+  }
+
+  private void decodeDelta(byte[] payload, int length) {
+    ByteBuffer buffer = ByteBuffer.wrap(payload, 0, length);
+    int        from   = headerLength();
+
+    switch (format) {
+      case FLOAT32:
+        for (int i = from + 8; i < length; i += 4) {
+          buffer.putInt(i, buffer.getInt(i) ^ buffer.getInt(i - 8));
+        }
+        break;
+
+      case INT16:
+        for (int i = from + 4; i < length; i += 2) {
+          buffer.putShort(i, (short) (buffer.getShort(i) + buffer.getShort(i - 4)));
+        }
+        break;
+
+      case INT8:
+        for (int i = from + 2; i < length; i++) {
+          payload[i] = (byte) (payload[i] + payload[i - 2]);
+        }
+        break;
+
+      default:
+        break;
+    }
+  }
+
+  /**
+   * @param payload samples payload, read from position to limit.
+   * @return compressed payload, valid until the next call.
+   */
+  public ByteBuffer compress(ByteBuffer payload) {
+    int length = payload.remaining();
+    if (scratch.length < length) {
+      scratch    = new byte[length];
+      compressed = new byte[4 + length + (length >> 3) + 64];
+    }
+
+    payload.duplicate().get(scratch, 0, length);
+    if (compression == SampleCompression.DELTA_DEFLATE) {
+      encodeDelta(scratch, length);
+    }
+
+    deflater.reset();
+    deflater.setInput(scratch, 0, length);
+    deflater.finish();
+
+    int written = 4;
+    while (!deflater.finished()) {
+      if (written == compressed.length) {
+        byte[] grown = new byte[compressed.length << 1];
+        System.arraycopy(compressed, 0, grown, 0, written);
+        compressed = grown;
+      }
+      written += deflater.deflate(compressed, written, compressed.length - written);
+    }
+
+    ByteBuffer out = ByteBuffer.wrap(compressed, 0, written);
+    out.putInt(0, length);
+    return out;
+  }
+
+  /**
+   * @param payload compressed payload as returned by compress().
+   * @return the original samples payload.
+   * @throws DataFormatException if payload is corrupt, truncated or declares
+   *                             more than maxPayloadLength bytes.
+   */
+  public byte[] decompress(ByteBuffer payload) throws DataFormatException {
+    ByteBuffer input = payload.duplicate();
+    if (input.remaining() < 4) {
+      throw new DataFormatException("compressed payload is missing its length");
+    }
+
+    int length = input.getInt();
+    if (length < 0 || length > maxPayloadLength) {
+      throw new DataFormatException("declared payload length " + length + " exceeds " + maxPayloadLength);
+    }
+
+    byte[] samples  = new byte[length];
+    byte[] deflated = new byte[input.remaining()];
+
+    input.get(deflated);
+    inflater.reset();
+    inflater.setInput(deflated);
+
+    int read = 0;
+    while (read < samples.length && !inflater.finished()) {
+      int inflated = inflater.inflate(samples, read, samples.length - read);
+      if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+        throw new DataFormatException("compressed payload truncated after " + read + " of " + length + " bytes");
+      }
+      read += inflated;
+    }
+
+    if (read < samples.length) {
+      throw new DataFormatException("compressed payload ended after " + read + " of " + length + " bytes");
+    }
+
+    if (compression == SampleCompression.DELTA_DEFLATE) {
+      decodeDelta(samples, samples.length);
+    }
+
+    return samples;
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import org.capnproto.MessageBuilder;
+
+import java.nio.ByteBuffer;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
+
+/**
+ * Packs interleaved I/Q floats into a samples message in one of the
+ * SampleFormats. Each format is a max-abs pass then a scale and convert pass
+ * into a primitive scratch array, both simple enough for C2 to vectorize,
+ * followed by a bulk put. Not thread safe, one per network sink.
+ */
+public class SampleEncoder {
+
+  public static final int MAGIC = 0x43484e45;
+
+  private final SampleFormat format;
+  private final short[]      shorts;
+  private final byte[]       bytes;
+
+  public SampleEncoder(SampleFormat format, int samplesPerMessage) {
+    this.format = format;
+    shorts      = new short[(format == SampleFormat.INT16) ? samplesPerMessage << 1 : 0];
+    bytes       = new byte[(format == SampleFormat.INT8 || format == SampleFormat.BFP) ? samplesPerMessage << 1 : 0];
+  }
+
+  public SampleFormat getFormat() {
+    return format;
+  }
+
+  /**
+   * The capabilities message has no field for the sample encoding, so servers
+   * not on float32 without compression follow it with this samples message,
+   * big endian:
+   *   int    MAGIC
+   *   byte   SampleFormat ordinal
+   *   byte   SampleCompression ordinal
+   */
+  public static MessageBuilder descriptor(SampleFormat format, SampleCompression compression) {
+    MessageBuilder      message = new MessageBuilder();
+    BaseMessage.Builder base    = message.initRoot(BaseMessage.factory);
+    base.setType(BaseMessage.Type.SAMPLES);
+
+    ByteBuffer payload = base.initSamples().initSamples(4 + 1 + 1).asByteBuffer();
+    payload.putInt(MAGIC);
+    payload.put((byte) format.ordinal());
+    payload.put((byte) compression.ordinal());
+
+    return message;
+  }
+
+  private static float maxAbs(float[] samples, int from, int to) {
+    float max = 0f;
+    for (int i = from; i < to; i++) {
+      max = Math.max(max, Math.abs(samples[i]));
+    }
+    return max;
+  }
+
+  private void encodeInt16(float[] samples, int length, ByteBuffer out) {
+    float scale = maxAbs(samples, 0, length);
+    float gain  = (scale > 0f) ? Short.MAX_VALUE / scale : 0f;
+
+    for (int i = 0; i < length; i++) {
+      shorts[i] = (short) Math.round(samples[i] * gain);
+    }
+
+    out.putFloat(scale);
+    out.asShortBuffer().put(shorts, 0, length);
+    out.position(out.position() + (length << 1));
+  }
+
+  private void encodeInt8(float[] samples, int length, ByteBuffer out) {
+    float scale = maxAbs(samples, 0, length);
+    float gain  = (scale > 0f) ? Byte.MAX_VALUE / scale : 0f;
+
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) Math.round(samples[i] * gain);
+    }
+
+    out.putFloat(scale);
+    out.put(bytes, 0, length);
+  }
+
+  private void encodeBfp(float[] samples, int length, ByteBuffer out) {
+    for (int from = 0; from < length; from += SampleFormat.BFP_BLOCK_SAMPLES << 1) {
+      int   to       = Math.min(length, from + (SampleFormat.BFP_BLOCK_SAMPLES << 1));
+      float max      = maxAbs(samples, from, to);
+      int   exponent = (max > 0f) ? Math.max(-120, Math.min(127, Math.getExponent(max) + 1)) : -120;
+      float gain     = Math.scalb(1f, 7 - exponent);
+
+      for (int i = from; i < to; i++) {
+        bytes[i] = (byte) Math.max(-127, Math.min(127, Math.round(samples[i] * gain)));
+      }
+
+      out.put((byte) exponent);
+      out.put(bytes, from, to - from);
+    }
+  }
+
+  /**
+   * @param samples interleaved I/Q samples.
+   * @param count   number of complex samples to encode.
+   * @param out     buffer with at least format.getEncodedLength(count) bytes remaining.
+   */
+  public void encode(float[] samples, int count, ByteBuffer out) {
+    int length = count << 1;
+
+    switch (format) {
+      case INT16:
+        encodeInt16(samples, length, out);
+        break;
+
+      case INT8:
+        encodeInt8(samples, length, out);
+        break;
+
+      case BFP:
+        encodeBfp(samples, length, out);
+        break;
+
+      default:
+        for (int i = 0; i < length; i++) {
+          out.putFloat(samples[i]);
+        }
+    }
+  }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+public enum SampleFormat {
+
+  /**
+   * Two 32-bit floats per sample, the format every client understands.
+   */
+  FLOAT32,
+
+  /**
+   * A 32-bit float scale per message followed by two 16-bit integers per
+   * sample, a sample is the integer times scale / Short.MAX_VALUE.
+   */
+  INT16,
+
+  /**
+   * A 32-bit float scale per message followed by two 8-bit integers per
+   * sample, a sample is the integer times scale / Byte.MAX_VALUE.
+   */
+  INT8,
+
+  /**
+   * Blocks of BFP_BLOCK_SAMPLES samples, each an exponent byte followed by two
+   * 8-bit mantissas per sample, a sample is the mantissa times 2^(exponent - 7).
+   */
+  BFP;
+
+  public static final int BFP_BLOCK_SAMPLES = 16;
+
+  public static SampleFormat fromString(String name) {
+    return valueOf(name.trim().toUpperCase());
+  }
+
+  public int getEncodedLength(int samples) {
+    switch (this) {
+      case INT16:
+        return 4 + (samples * 4);
+
+      case INT8:
+        return 4 + (samples * 2);
+
+      case BFP:
+        return ((samples + BFP_BLOCK_SAMPLES - 1) / BFP_BLOCK_SAMPLES) + (samples * 2);
+
+      default:
+        return samples * 8;
+    }
+  }
+
+}
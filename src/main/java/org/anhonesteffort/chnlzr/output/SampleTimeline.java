@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import org.anhonesteffort.chnlzr.metrics.SampleClock;
+
+/**
+ * Tracks the index and wall clock time of channel samples written by one
+ * sink. The index counts channel samples since the last state change and
+ * times come from the channel's SampleClock, anchored to the block being
+ * processed on the first samples after a state change and again whenever the
+ * source skipped ahead.
+ */
+public class SampleTimeline {
+
+  private final SampleClock clock;
+
+  private long sampleRate  =  0l;
+  private long sampleIndex =  0l;
+  private long origin      = -1l;
+  private long syncedBlock = -1l;
+  private long sourceGaps  =  0l;
+
+  public SampleTimeline(SampleClock clock) {
+    this.clock = clock;
+  }
+
+  public void onStateChange(long sampleRate) {
+    this.sampleRate = sampleRate;
+    sampleIndex     = 0l;
+    origin          = -1l;
+  }
+
+  /**
+   * Gaps are only counted once per source block.
+   *
+   * @param pending samples consumed since the last call to advance().
+   */
+  public void sync(int pending) {
+    if (origin >= 0l && clock.getBlockNanos() == syncedBlock) {
+      return;
+    }
+
+    long gaps   = clock.getSourceGaps();
+    syncedBlock = clock.getBlockNanos();
+
+    if (origin < 0l || gaps != sourceGaps) {
+      sourceGaps = gaps;
+      origin     = clock.getBlockTimestamp() - clock.getDuration(sampleIndex + pending, sampleRate);
+    }
+  }
+
+  public long getSampleIndex() {
+    return sampleIndex;
+  }
+
+  /**
+   * @return nanoseconds since the epoch of the sample at getSampleIndex().
+   */
+  public long getTimestamp() {
+    return origin + clock.getDuration(sampleIndex, sampleRate);
+  }
+
+  public void advance(int samples) {
+    sampleIndex += samples;
+  }
+
+}
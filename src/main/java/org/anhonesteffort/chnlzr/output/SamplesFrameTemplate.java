@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.capnproto.MessageBuilder;
+import org.capnproto.Serialize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
+
+/**
+ * The bytes an encoder writes for a samples message, split around the samples
+ * payload so that frames can be written straight into a ByteBuf without
+ * building or serializing a MessageBuilder.
+ */
+public class SamplesFrameTemplate {
+
+  private final byte[] header;
+  private final byte[] trailer;
+  private final int    samplesPerMessage;
+
+  private SamplesFrameTemplate(byte[] header, byte[] trailer, int samplesPerMessage) {
+    this.header            = header;
+    this.trailer           = trailer;
+    this.samplesPerMessage = samplesPerMessage;
+  }
+
+  private static byte[] encode(ChannelHandler encoder, MessageBuilder message) {
+    EmbeddedChannel       channel = new EmbeddedChannel(encoder);
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+
+    channel.writeAndFlush(message);
+
+    ByteBuf buffer;
+    while ((buffer = channel.readOutbound()) != null) {
+      byte[] bytes = new byte[buffer.readableBytes()];
+      buffer.readBytes(bytes);
+      encoded.write(bytes, 0, bytes.length);
+      buffer.release();
+    }
+
+    channel.finish();
+    return encoded.toByteArray();
+  }
+
+  private static int indexOf(byte[] frame, byte[] payload) {
+    for (int i = 0; i <= frame.length - payload.length; i++) {
+      int matched = 0;
+      while (matched < payload.length && frame[i + matched] == payload[matched]) {
+        matched++;
+      }
+      if (matched == payload.length) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return a template for frames written by encoder, or empty if encoder does
+   *         not write the samples payload verbatim and unpacked.
+   */
+  public static Optional<SamplesFrameTemplate> forEncoder(ChannelHandler encoder, int samplesPerMessage) {
+    MessageBuilder message = new ProtoFactory().samples(samplesPerMessage);
+    ByteBuffer     samples = message.getRoot(BaseMessage.factory).getSamples().getSamples().asByteBuffer();
+    byte[]         payload = new byte[samples.remaining()];
+
+    for (int i = 0; i < payload.length; i++) {
+      payload[i] = (byte) (1 + (i % 251));
+    }
+    samples.put(payload);
+
+    byte[] frame  = encode(encoder, message);
+    int    offset = indexOf(frame, payload);
+
+    if (offset < 0 || frame.length != Serialize.computeSerializedSizeInWords(message) * 8l) {
+      return Optional.empty();
+    }
+
+    return Optional.of(new SamplesFrameTemplate(
+        Arrays.copyOfRange(frame, 0, offset),
+        Arrays.copyOfRange(frame, offset + payload.length, frame.length),
+        samplesPerMessage
+    ));
+  }
+
+  public int getSamplesPerMessage() {
+    return samplesPerMessage;
+  }
+
+  public int getFrameLength() {
+    return header.length + (samplesPerMessage * 8) + trailer.length;
+  }
+
+  public void writeHeader(ByteBuf frame) {
+    frame.writeBytes(header);
+  }
+
+  public void writeTrailer(ByteBuf frame) {
+    frame.writeBytes(trailer);
+  }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.capnproto.MessageBuilder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
+
+/**
+ * Recycles samples messages for a single channel, messages are acquired on the
+ * thread filling them and released once netty has finished writing them or
+ * they have been dropped.
+ */
+public class SamplesMessagePool {
+
+  private final ProtoFactory proto = new ProtoFactory();
+  private final BlockingQueue<PooledSamplesMessage> messages;
+  private final int samplesPerMessage;
+  private final SampleFormat format;
+
+  public SamplesMessagePool(int samplesPerMessage, int capacity, SampleFormat format) {
+    this.samplesPerMessage = samplesPerMessage;
+    this.format            = format;
+    messages               = new ArrayBlockingQueue<>(capacity);
+  }
+
+  public SamplesMessagePool(int samplesPerMessage, int capacity) {
+    this(samplesPerMessage, capacity, SampleFormat.FLOAT32);
+  }
+
+  private MessageBuilder samples() {
+    if (format == SampleFormat.FLOAT32) {
+      return proto.samples(samplesPerMessage);
+    }
+
+    MessageBuilder      message = new MessageBuilder();
+    BaseMessage.Builder base    = message.initRoot(BaseMessage.factory);
+
+    base.setType(BaseMessage.Type.SAMPLES);
+    base.initSamples().initSamples(format.getEncodedLength(samplesPerMessage));
+
+    return message;
+  }
+
+  public PooledSamplesMessage acquire() {
+    PooledSamplesMessage message = messages.poll();
+    if (message == null) {
+      return new PooledSamplesMessage(this, samples());
+    } else {
+      return message;
+    }
+  }
+
+  protected void release(PooledSamplesMessage message) {
+    messages.offer(message);
+  }
+
+}
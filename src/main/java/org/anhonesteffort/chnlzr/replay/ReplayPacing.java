@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.replay;
+
+public enum ReplayPacing {
+
+  /**
+   * Samples are released no faster than the recorded sample rate.
+   */
+  REALTIME,
+
+  /**
+   * Samples are released as fast as the source ring buffer accepts them.
+   */
+  FAST;
+
+  public static ReplayPacing fromString(String name) {
+    return valueOf(name.trim().replace('-', '_').toUpperCase());
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.replay;
+
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.sample.SdrDriver;
+import org.anhonesteffort.dsp.util.ChannelSpec;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a SamplesRecording back as if it were a radio. The sample rate is
+ * always that of the recording and tuning anywhere within the recorded band
+ * slices the recording by translating it so the tuned frequency lands at DC,
+ * phase continuously across retunes. Playback loops at the end of the
+ * recording, paced in real time or as fast as the source can take it.
+ */
+public class ReplaySdrDriver extends SdrDriver {
+
+  private final SamplesRecording recording;
+  private final ReplayPacing     pacing;
+  private final long             sampleRate;
+  private final double           minFrequency;
+  private final double           maxFrequency;
+
+  private float[] block         = new float[0];
+  private double  oscillatorI   = 1d;
+  private double  oscillatorQ   = 0d;
+  private double  rotationI     = 1d;
+  private double  rotationQ     = 0d;
+  private boolean translating   = false;
+  private long    startNanos    = -1l;
+  private long    samplesPlayed = 0l;
+
+  public ReplaySdrDriver(SamplesRecording recording, ReplayPacing pacing) {
+    super(
+        recording.getSampleRate(),
+        recording.getCenterFrequency() - (recording.getSampleRate() / 2d),
+        recording.getCenterFrequency() + (recording.getSampleRate() / 2d)
+    );
+
+    this.recording = recording;
+    this.pacing    = pacing;
+    sampleRate     = recording.getSampleRate();
+    minFrequency   = recording.getCenterFrequency() - (sampleRate / 2d);
+    maxFrequency   = recording.getCenterFrequency() + (sampleRate / 2d);
+  }
+
+  @Override
+  protected ChannelSpec onStart() {
+    return new ChannelSpec(recording.getCenterFrequency(), sampleRate, sampleRate);
+  }
+
+  @Override
+  protected long setSampleRate(long targetRate) {
+    if (targetRate > sampleRate) {
+      throw new IllegalArgumentException("recording sample rate is " + sampleRate + ", cannot replay at " + targetRate);
+    } else {
+      return sampleRate;
+    }
+  }
+
+  @Override
+  protected double setFrequency(double targetFreq) {
+    if (targetFreq < minFrequency || targetFreq > maxFrequency) {
+      throw new IllegalArgumentException("frequency " + targetFreq + " is outside of the recorded band");
+    }
+
+    double step = -2d * Math.PI * (targetFreq - recording.getCenterFrequency()) / sampleRate;
+    rotationI   = Math.cos(step);
+    rotationQ   = Math.sin(step);
+    translating = targetFreq != recording.getCenterFrequency();
+
+    return targetFreq;
+  }
+
+  private void translate(int count) {
+    double oscI = oscillatorI;
+    double oscQ = oscillatorQ;
+
+    for (int i = 0; i < (count << 1); i += 2) {
+      float  inI  = block[i];
+      float  inQ  = block[i + 1];
+      double next = (oscI * rotationI) - (oscQ * rotationQ);
+
+      block[i]     = (float) ((inI * oscI) - (inQ * oscQ));
+      block[i + 1] = (float) ((inI * oscQ) + (inQ * oscI));
+      oscQ         = (oscI * rotationQ) + (oscQ * rotationI);
+      oscI         = next;
+    }
+
+    double magnitude = Math.sqrt((oscI * oscI) + (oscQ * oscQ));
+    oscillatorI      = oscI / magnitude;
+    oscillatorQ      = oscQ / magnitude;
+  }
+
+  private void pace(int count) {
+    if (startNanos < 0l) {
+      startNanos = System.nanoTime();
+    }
+
+    samplesPlayed += count;
+    long dueNanos  = startNanos + TimeUnit.SECONDS.toNanos(samplesPlayed) / sampleRate;
+
+    for (long wait = dueNanos - System.nanoTime(); wait > 0l; wait = dueNanos - System.nanoTime()) {
+      LockSupport.parkNanos(wait);
+    }
+  }
+
+  @Override
+  protected void fillBuffer(Samples samples) throws Exception {
+    ComplexNumber[] buffer = samples.getSamples();
+    if (block.length < (buffer.length << 1)) {
+      block = new float[buffer.length << 1];
+    }
+
+    recording.read(block, buffer.length);
+    if (translating) {
+      translate(buffer.length);
+    }
+
+    for (int i = 0; i < buffer.length; i++) {
+      buffer[i] = new ComplexNumber(block[(i << 1)], block[(i << 1) + 1]);
+    }
+
+    if (pacing == ReplayPacing.REALTIME) {
+      pace(buffer.length);
+    }
+  }
+
+}
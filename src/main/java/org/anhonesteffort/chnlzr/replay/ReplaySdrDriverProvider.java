@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.replay;
+
+import org.anhonesteffort.chnlzr.input.DeviceSelection;
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.sample.SamplesEvent;
+import org.anhonesteffort.dsp.sample.SdrDriver;
+import org.anhonesteffort.dsp.sample.SdrDriverProvider;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * Offers a ReplaySdrDriver only when the DeviceSelection being opened names
+ * a recording, otherwise stays out of the way of hardware drivers.
+ */
+public class ReplaySdrDriverProvider implements SdrDriverProvider {
+
+  private static final Logger log            = LoggerFactory.getLogger(ReplaySdrDriverProvider.class);
+  private static final int    BUFFER_SAMPLES = 8192;
+
+  @Override
+  public Optional<SdrDriver> getDriver() {
+    Optional<DeviceSelection> selection = DeviceSelection.current();
+    if (!selection.isPresent() || !selection.get().getReplayFile().isPresent()) {
+      return Optional.empty();
+    }
+
+    String       file   = selection.get().getReplayFile().get();
+    ReplayPacing pacing = selection.get().getReplayPacing();
+
+    try {
+
+      SamplesRecording recording = new SamplesRecording(Paths.get(file));
+
+      log.info(
+          "source " + selection.get().getIndex() + " replaying " + file + " at " +
+          recording.getSampleRate() + "sps, " + pacing + " pacing"
+      );
+      return Optional.of(new ReplaySdrDriver(recording, pacing));
+
+    } catch (IOException e) {
+      log.error("failed to open recording " + file, e);
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public SamplesEvent newInstance() {
+    return new SamplesEvent(-1l, -1d, new Samples(new ComplexNumber[BUFFER_SAMPLES]));
+  }
+
+}
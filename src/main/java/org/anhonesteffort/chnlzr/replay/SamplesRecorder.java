@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.replay;
+
+import org.anhonesteffort.dsp.StatefulSink;
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Taps a samples source and records it as a SamplesRecording. Samples are
+ * copied into one of BLOCK_COUNT direct blocks of BLOCK_BYTES and a writer
+ * thread writes full blocks out sequentially, so the source thread never
+ * waits on the disk. If the disk falls behind and no block is free samples
+ * are dropped and counted. Every change of source state starts a new
+ * recording, the first at path and the next at path.1, path.2 and so on.
+ */
+public class SamplesRecorder implements StatefulSink<Samples> {
+
+  private static final Logger log         = LoggerFactory.getLogger(SamplesRecorder.class);
+  private static final int    BLOCK_BYTES = 4 << 20;
+  private static final int    BLOCK_COUNT = 8;
+  private static final Block  END         = new Block(0);
+
+  private final BlockingQueue<Block> free    = new ArrayBlockingQueue<>(BLOCK_COUNT);
+  private final BlockingQueue<Block> filled  = new ArrayBlockingQueue<>(BLOCK_COUNT + 1);
+  private final LongAdder            dropped = new LongAdder();
+  private final Path                 path;
+  private final Thread               writer;
+
+  private Block   block      = null;
+  private long    sampleRate = 0l;
+  private double  frequency  = 0d;
+  private boolean dropping   = false;
+
+  public SamplesRecorder(Path path) {
+    this(path, BLOCK_BYTES);
+  }
+
+  SamplesRecorder(Path path, int blockBytes) {
+    this.path = path;
+
+    for (int i = 0; i < BLOCK_COUNT; i++) {
+      free.add(new Block(blockBytes - (blockBytes % SamplesRecording.SAMPLE_BYTES)));
+    }
+
+    writer = new Thread(this::writeBlocks, "samples recorder");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  public long getDroppedSamples() {
+    return dropped.sum();
+  }
+
+  private void submit() {
+    if (block != null) {
+      filled.add(block);
+      block = null;
+    }
+  }
+
+  @Override
+  public void onStateChange(long sampleRate, double frequency) {
+    submit();
+    this.sampleRate = sampleRate;
+    this.frequency  = frequency;
+  }
+
+  @Override
+  public void consume(Samples samples) {
+    ComplexNumber[] buffer = samples.getSamples();
+
+    for (int i = 0; i < buffer.length; i++) {
+      if (block == null) {
+        block = free.poll();
+        if (block == null) {
+          if (!dropping) {
+            log.warn("recording to " + path + " fell behind, dropping samples");
+            dropping = true;
+          }
+          dropped.add(buffer.length - i);
+          return;
+        }
+
+        dropping = false;
+        block.reset(sampleRate, frequency);
+      }
+
+      block.buffer.putFloat(buffer[i].getInPhase());
+      block.buffer.putFloat(buffer[i].getQuadrature());
+
+      if (!block.buffer.hasRemaining()) {
+        submit();
+      }
+    }
+  }
+
+  private Path segmentPath(int segment) {
+    return (segment == 0) ? path : Paths.get(path + "." + segment);
+  }
+
+  private FileChannel openSegment(int segment, Block first) throws IOException {
+    FileChannel channel = FileChannel.open(
+        segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+    );
+
+    ByteBuffer header = ByteBuffer.allocate(SamplesRecording.HEADER_LENGTH);
+    SamplesRecording.writeHeader(header, first.sampleRate, first.frequency);
+    header.flip();
+    writeFully(channel, header);
+
+    log.info("recording " + first.sampleRate + "sps at " + first.frequency + "hz to " + segmentPath(segment));
+    return channel;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private void writeBlocks() {
+    FileChannel channel = null;
+    int         segment = -1;
+    long        rate    = -1l;
+    double      freq    = Double.NaN;
+
+    try {
+
+      for (Block next = filled.take(); next != END; next = filled.take()) {
+        if (next.sampleRate != rate || Double.compare(next.frequency, freq) != 0) {
+          if (channel != null) {
+            channel.close();
+          }
+          channel = openSegment(++segment, next);
+          rate    = next.sampleRate;
+          freq    = next.frequency;
+        }
+
+        next.buffer.flip();
+        writeFully(channel, next.buffer);
+        free.add(next);
+      }
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      log.error("recording to " + path + " failed", e);
+    } finally {
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException e) {
+          log.warn("failed to close recording " + path, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes out any partial block and waits for the writer to finish. Must be
+   * called from the thread feeding the recorder or once it has stopped.
+   */
+  public void close() {
+    submit();
+    filled.add(END);
+
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class Block {
+    private final ByteBuffer buffer;
+    private long   sampleRate;
+    private double frequency;
+
+    public Block(int bytes) {
+      buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public void reset(long sampleRate, double frequency) {
+      this.sampleRate = sampleRate;
+      this.frequency  = frequency;
+      buffer.clear();
+    }
+  }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A wideband recording on disk, a HEADER_LENGTH byte header followed by
+ * interleaved little-endian float32 I and Q samples. Samples are read
+ * through memory mapped windows of at most WINDOW_BYTES and reading wraps
+ * back to the first sample at the end of the recording.
+ */
+public class SamplesRecording implements Closeable {
+
+  public  static final int  MAGIC         = 0x43485243;
+  public  static final int  VERSION       = 1;
+  public  static final int  HEADER_LENGTH = 32;
+  public  static final int  SAMPLE_BYTES  = 8;
+  private static final long WINDOW_BYTES  = 1l << 30;
+
+  private final FileChannel channel;
+  private final long        sampleRate;
+  private final double      centerFrequency;
+  private final long        sampleCount;
+
+  private FloatBuffer window;
+  private long        windowEnd = 0l;
+
+  public SamplesRecording(Path path) throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.READ);
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    while (header.hasRemaining() && channel.read(header) >= 0) { }
+    header.flip();
+
+    if (header.remaining() < HEADER_LENGTH || header.getInt() != MAGIC) {
+      channel.close();
+      throw new IOException(path + " is not a samples recording");
+    } else if (header.getInt() != VERSION) {
+      channel.close();
+      throw new IOException(path + " has an unsupported recording version");
+    }
+
+    sampleRate      = header.getLong();
+    centerFrequency = header.getDouble();
+    sampleCount     = (channel.size() - HEADER_LENGTH) / SAMPLE_BYTES;
+
+    if (sampleCount <= 0l) {
+      channel.close();
+      throw new IOException(path + " holds no samples");
+    }
+  }
+
+  public static void writeHeader(ByteBuffer buffer, long sampleRate, double centerFrequency) {
+    buffer.order(ByteOrder.LITTLE_ENDIAN)
+          .putInt(MAGIC)
+          .putInt(VERSION)
+          .putLong(sampleRate)
+          .putDouble(centerFrequency)
+          .putLong(0l);
+  }
+
+  public long getSampleRate() {
+    return sampleRate;
+  }
+
+  public double getCenterFrequency() {
+    return centerFrequency;
+  }
+
+  public long getSampleCount() {
+    return sampleCount;
+  }
+
+  private void mapNextWindow() throws IOException {
+    long windowStart = (windowEnd >= sampleCount) ? 0l : windowEnd;
+    long windowBytes = Math.min(WINDOW_BYTES, (sampleCount - windowStart) * SAMPLE_BYTES);
+
+    window    = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH + (windowStart * SAMPLE_BYTES), windowBytes)
+                       .order(ByteOrder.LITTLE_ENDIAN)
+                       .asFloatBuffer();
+    windowEnd = windowStart + (windowBytes / SAMPLE_BYTES);
+  }
+
+  /**
+   * Reads the next count interleaved I and Q samples into samples, wrapping
+   * around to the start of the recording as needed.
+   */
+  public void read(float[] samples, int count) throws IOException {
+    int offset = 0;
+    int length = count << 1;
+
+    while (offset < length) {
+      if (window == null || !window.hasRemaining()) {
+        mapNextWindow();
+      }
+
+      int chunk = Math.min(length - offset, window.remaining());
+      window.get(samples, offset, chunk);
+      offset += chunk;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+}
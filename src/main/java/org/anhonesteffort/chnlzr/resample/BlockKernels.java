@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+/**
+ * Block at a time stages of the ChannelizerKernel over split I/Q arrays.
+ * Every implementation must give bit identical results, integrators and combs
+ * are exact in wrapping fixed point and the mixer must not fuse or reorder
+ * its multiplies and adds, so choosing one is purely a matter of speed.
+ */
+public interface BlockKernels {
+
+  /**
+   * Mixes count samples starting at offset with an oscillator formed by
+   * rotating the table entries from tableOffset by the base phasor.
+   */
+  void mix(
+      double[] inPhase, double[] quadrature, int offset,
+      double[] tableCos, double[] tableSin, int tableOffset, double baseCos, double baseSin, int count
+  );
+
+  /**
+   * out[i] = (long) (in[i] * scale), saturating as a Java cast does.
+   */
+  void toFixed(double[] in, long[] out, int count, double scale);
+
+  /**
+   * Runs count samples in place through a cascade of integrators with one
+   * running sum per stage in state.
+   */
+  void integrate(long[] state, long[] samples, int count);
+
+  /**
+   * Runs count samples in place through a cascade of combs with one delay
+   * per stage in state.
+   */
+  void comb(long[] state, long[] samples, int count);
+
+}
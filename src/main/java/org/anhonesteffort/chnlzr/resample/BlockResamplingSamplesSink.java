@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.anhonesteffort.chnlzr.metrics.ChannelMetrics;
+import org.anhonesteffort.chnlzr.output.SampleBlockSink;
+import org.anhonesteffort.dsp.filter.FilterFactory;
+import org.anhonesteffort.dsp.filter.rate.RateChangeFilter;
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.util.ChannelSpec;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.ChannelRequest;
+
+public class BlockResamplingSamplesSink implements BlockSamplesSink {
+
+  private static final Logger log = LoggerFactory.getLogger(BlockResamplingSamplesSink.class);
+
+  private final SampleBlockSink nextSink;
+  private final ChannelSpec spec;
+  private final long maxRateDiff;
+  private final ChannelMetrics metrics;
+  private final RetuneMode retuneMode;
+
+  private ChannelizerKernel kernel;
+  private float[] sourceBlock  = new float[0];
+  private float[] channelBlock = new float[0];
+
+  public BlockResamplingSamplesSink(
+      ChannelRequest.Reader request, SampleBlockSink nextSink, ChannelMetrics metrics, RetuneMode retuneMode
+  ) {
+    this.nextSink   = nextSink;
+    this.metrics    = metrics;
+    this.retuneMode = retuneMode;
+    spec            = new ProtoFactory().spec(request);
+    maxRateDiff     = request.getMaxRateDiff();
+  }
+
+  public BlockResamplingSamplesSink(ChannelRequest.Reader request, SampleBlockSink nextSink, ChannelMetrics metrics) {
+    this(request, nextSink, metrics, RetuneMode.RESET);
+  }
+
+  public BlockResamplingSamplesSink(ChannelRequest.Reader request, SampleBlockSink nextSink) {
+    this(request, nextSink, new ChannelMetrics(new ProtoFactory().spec(request)));
+  }
+
+  @Override
+  public ChannelSpec getSpec() {
+    return spec;
+  }
+
+  @Override
+  public void onStateChange(long sampleRate, double frequency) {
+    metrics.getClock().onStateChange(sampleRate);
+
+    if (retuneMode == RetuneMode.SEAMLESS && kernel != null && kernel.getSampleRate() == sampleRate) {
+      kernel.retune(frequency);
+      log.info(spec + " retuned in place to source frequency " + frequency);
+      return;
+    }
+
+    RateChangeFilter<ComplexNumber> cic = FilterFactory.getCicResampler(
+        sampleRate, spec.getSampleRate(), maxRateDiff
+    );
+
+    kernel = new ChannelizerKernel(
+        sampleRate, frequency, spec.getCenterFrequency(), cic.getInterpolation(), cic.getDecimation()
+    );
+
+    long channelRate = (long) (sampleRate * cic.getRateChange());
+    nextSink.onStateChange(channelRate, 0d);
+
+    log.info(spec + " source rate " + sampleRate + ", desired rate " + spec.getSampleRate() + ", channel rate " + channelRate);
+    log.info(spec + " interpolation " + kernel.getInterpolation() + ", decimation " + kernel.getDecimation());
+  }
+
+  @Override
+  public void consume(float[] samples, int count) {
+    metrics.getClock().onSourceBlock(count);
+
+    long start    = System.nanoTime();
+    int  capacity = kernel.getOutputCapacity(count) << 1;
+    if (channelBlock.length < capacity) {
+      channelBlock = new float[capacity];
+    }
+
+    int channelCount = kernel.process(samples, count, channelBlock);
+
+    if (channelCount > 0) {
+      nextSink.consume(channelBlock, channelCount);
+    }
+
+    metrics.onBlock(count, System.nanoTime() - start);
+  }
+
+  @Override
+  public void consume(Samples samples) {
+    ComplexNumber[] samps = samples.getSamples();
+    if (sourceBlock.length < (samps.length << 1)) {
+      sourceBlock = new float[samps.length << 1];
+    }
+
+    for (int i = 0; i < samps.length; i++) {
+      sourceBlock[(i << 1)]     = samps[i].getInPhase();
+      sourceBlock[(i << 1) + 1] = samps[i].getQuadrature();
+    }
+
+    consume(sourceBlock, samps.length);
+  }
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Frequency translation and rational L/M CIC resampling over interleaved I/Q
+ * blocks, run a stage at a time through BlockKernels. The oscillator is a
+ * precomputed table of OSC_TABLE_SIZE phasors rotated by a renormalized
+ * recurrence once per table period. Integrators and combs run in wrapping
+ * fixed point so their state can never drift, the result is exact as long as
+ * the output fits, which input headroom bits guarantee. Vector kernels are
+ * used when the JVM provides jdk.incubator.vector, scalar kernels otherwise.
+ */
+public class ChannelizerKernel {
+
+  private static final Logger log = LoggerFactory.getLogger(ChannelizerKernel.class);
+
+  public  static final int    STAGES         = 4;
+  private static final int    OSC_TABLE_SIZE = 256;
+  private static final int    HEADROOM_BITS  = 4;
+  private static final int    MAX_FRAC_BITS  = 24;
+  private static final int    MIN_FRAC_BITS  = 8;
+  private static final String VECTOR_KERNELS = "org.anhonesteffort.chnlzr.resample.VectorBlockKernels";
+
+  private static final BlockKernels DEFAULT_KERNELS = loadKernels();
+
+  private final BlockKernels kernels;
+  private final long         sampleRate;
+  private final double       channelFrequency;
+  private final int          interpolation;
+  private final int          decimation;
+  private final double       inputScale;
+  private final double       outputScale;
+
+  private final double[] tableCos = new double[OSC_TABLE_SIZE];
+  private final double[] tableSin = new double[OSC_TABLE_SIZE];
+  private       double   oscPeriodCos;
+  private       double   oscPeriodSin;
+
+  private final long[] inCombsI;
+  private final long[] inCombsQ;
+  private final long[] integratorsI;
+  private final long[] integratorsQ;
+  private final long[] outCombsI;
+  private final long[] outCombsQ;
+
+  private double[] mixedI = new double[0];
+  private double[] mixedQ = new double[0];
+  private long[]   fixedI = new long[0];
+  private long[]   fixedQ = new long[0];
+  private long[]   outI   = new long[0];
+  private long[]   outQ   = new long[0];
+
+  private double oscBaseCos = 1d;
+  private double oscBaseSin = 0d;
+  private int    oscIndex   = 0;
+  private int    decimationPhase = 0;
+
+  public ChannelizerKernel(
+      long sampleRate, double sourceFrequency, double channelFrequency, int interpolation, int decimation,
+      BlockKernels kernels
+  ) {
+    if (interpolation < 1 || decimation < 1) {
+      throw new IllegalArgumentException("interpolation and decimation must be positive");
+    }
+
+    this.kernels          = kernels;
+    this.sampleRate       = sampleRate;
+    this.channelFrequency = channelFrequency;
+    this.interpolation    = interpolation;
+    this.decimation       = decimation;
+
+    int    interpStages = (interpolation > 1) ? STAGES : 0;
+    double gain         = Math.pow(interpolation, STAGES - 1) * Math.pow(decimation, STAGES);
+    int    growthBits   = (int) Math.ceil(Math.log(gain) / Math.log(2d));
+    int    fracBits     = Math.min(MAX_FRAC_BITS, 62 - HEADROOM_BITS - growthBits);
+
+    if (fracBits < MIN_FRAC_BITS) {
+      throw new IllegalArgumentException(
+          "rate change " + interpolation + "/" + decimation + " exceeds fixed point range"
+      );
+    }
+
+    inputScale   = Math.pow(2d, fracBits);
+    outputScale  = 1d / (inputScale * gain);
+    inCombsI     = new long[interpStages];
+    inCombsQ     = new long[interpStages];
+    integratorsI = new long[interpStages + STAGES];
+    integratorsQ = new long[interpStages + STAGES];
+    outCombsI    = new long[STAGES];
+    outCombsQ    = new long[STAGES];
+
+    fillOscillatorTable(sourceFrequency);
+  }
+
+  public ChannelizerKernel(
+      long sampleRate, double sourceFrequency, double channelFrequency, int interpolation, int decimation
+  ) {
+    this(sampleRate, sourceFrequency, channelFrequency, interpolation, decimation, DEFAULT_KERNELS);
+  }
+
+  private static BlockKernels loadKernels() {
+    try {
+
+      BlockKernels kernels = (BlockKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+      log.info("channelizer using vector kernels");
+      return kernels;
+
+    } catch (ReflectiveOperationException | LinkageError e) {
+      log.info("jdk.incubator.vector unavailable, channelizer using scalar kernels");
+      return new ScalarBlockKernels();
+    }
+  }
+
+  /**
+   * @return kernels used by channelizers not given their own.
+   */
+  public static BlockKernels getDefaultKernels() {
+    return DEFAULT_KERNELS;
+  }
+
+  private void fillOscillatorTable(double sourceFrequency) {
+    double phaseInc = 2d * Math.PI * (sourceFrequency - channelFrequency) / sampleRate;
+    oscPeriodCos    = Math.cos(phaseInc * OSC_TABLE_SIZE);
+    oscPeriodSin    = Math.sin(phaseInc * OSC_TABLE_SIZE);
+
+    for (int i = 0; i < OSC_TABLE_SIZE; i++) {
+      tableCos[i] = Math.cos(phaseInc * i);
+      tableSin[i] = Math.sin(phaseInc * i);
+    }
+  }
+
+  public long getSampleRate() {
+    return sampleRate;
+  }
+
+  public int getInterpolation() {
+    return interpolation;
+  }
+
+  public int getDecimation() {
+    return decimation;
+  }
+
+  public int getOutputCapacity(int inputCount) {
+    return (int) (((long) inputCount * interpolation) / decimation) + 1;
+  }
+
+  private void advanceOscillatorPeriod() {
+    double nextCos   = (oscBaseCos * oscPeriodCos) - (oscBaseSin * oscPeriodSin);
+    double nextSin   = (oscBaseCos * oscPeriodSin) + (oscBaseSin * oscPeriodCos);
+    double magnitude = Math.sqrt((nextCos * nextCos) + (nextSin * nextSin));
+
+    oscBaseCos = nextCos / magnitude;
+    oscBaseSin = nextSin / magnitude;
+    oscIndex   = 0;
+  }
+
+  /**
+   * Moves the oscillator to a new source frequency at the same sample rate.
+   * The oscillator continues from its current phase and the integrator and
+   * comb state is untouched, so output stays continuous across the retune.
+   */
+  public void retune(double sourceFrequency) {
+    double nextCos = (oscBaseCos * tableCos[oscIndex]) - (oscBaseSin * tableSin[oscIndex]);
+    double nextSin = (oscBaseCos * tableSin[oscIndex]) + (oscBaseSin * tableCos[oscIndex]);
+
+    oscBaseCos = nextCos;
+    oscBaseSin = nextSin;
+    oscIndex   = 0;
+
+    fillOscillatorTable(sourceFrequency);
+  }
+
+  private void ensureCapacity(int count) {
+    if (mixedI.length < count) {
+      mixedI = new double[count];
+      mixedQ = new double[count];
+    }
+
+    int upsampled = count * interpolation;
+    if (fixedI.length < upsampled) {
+      fixedI = new long[upsampled];
+      fixedQ = new long[upsampled];
+    }
+
+    int capacity = getOutputCapacity(count);
+    if (outI.length < capacity) {
+      outI = new long[capacity];
+      outQ = new long[capacity];
+    }
+  }
+
+  private void mix(float[] input, int count) {
+    for (int i = 0; i < count; i++) {
+      mixedI[i] = input[(i << 1)];
+      mixedQ[i] = input[(i << 1) + 1];
+    }
+
+    for (int offset = 0; offset < count; ) {
+      int length = Math.min(count - offset, OSC_TABLE_SIZE - oscIndex);
+      kernels.mix(mixedI, mixedQ, offset, tableCos, tableSin, oscIndex, oscBaseCos, oscBaseSin, length);
+
+      offset   += length;
+      oscIndex += length;
+      if (oscIndex >= OSC_TABLE_SIZE) {
+        advanceOscillatorPeriod();
+      }
+    }
+  }
+
+  private static void zeroStuff(long[] samples, int count, int interpolation) {
+    for (int i = count - 1; i >= 0; i--) {
+      long sample = samples[i];
+      for (int phase = interpolation - 1; phase > 0; phase--) {
+        samples[(i * interpolation) + phase] = 0l;
+      }
+      samples[i * interpolation] = sample;
+    }
+  }
+
+  private int decimate(int count) {
+    int outCount = 0;
+
+    for (int i = decimation - 1 - decimationPhase; i < count; i += decimation) {
+      outI[outCount] = fixedI[i];
+      outQ[outCount] = fixedQ[i];
+      outCount++;
+    }
+
+    decimationPhase = (int) ((decimationPhase + (long) count) % decimation);
+    return outCount;
+  }
+
+  /**
+   * @param input  interleaved I/Q samples at the source rate.
+   * @param count  number of complex samples to read from input.
+   * @param output interleaved I/Q samples at the channel rate, must hold
+   *               getOutputCapacity(count) complex samples.
+   * @return number of complex samples written to output.
+   */
+  public int process(float[] input, int count, float[] output) {
+    ensureCapacity(count);
+    mix(input, count);
+
+    kernels.toFixed(mixedI, fixedI, count, inputScale);
+    kernels.toFixed(mixedQ, fixedQ, count, inputScale);
+
+    int upsampled = count;
+    if (interpolation > 1) {
+      kernels.comb(inCombsI, fixedI, count);
+      kernels.comb(inCombsQ, fixedQ, count);
+      zeroStuff(fixedI, count, interpolation);
+      zeroStuff(fixedQ, count, interpolation);
+      upsampled = count * interpolation;
+    }
+
+    kernels.integrate(integratorsI, fixedI, upsampled);
+    kernels.integrate(integratorsQ, fixedQ, upsampled);
+
+    int outCount = decimate(upsampled);
+
+    kernels.comb(outCombsI, outI, outCount);
+    kernels.comb(outCombsQ, outQ, outCount);
+
+    for (int i = 0; i < outCount; i++) {
+      output[(i << 1)]     = (float) (outI[i] * outputScale);
+      output[(i << 1) + 1] = (float) (outQ[i] * outputScale);
+    }
+
+    return outCount;
+  }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+import org.anhonesteffort.dsp.StatefulSink;
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.util.ChannelSpec;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Splits the source stream into uniform sub-bands once per block and feeds each
+ * channel sink from the sub-band nearest its center frequency, channels that do
+ * not fit within the flat part of a single sub-band are fed the full source
+ * stream instead. Sinks are added and removed from the source thread.
+ */
+public class PolyphaseChannelizer implements StatefulSink<Samples> {
+
+  private static final Logger log = LoggerFactory.getLogger(PolyphaseChannelizer.class);
+
+  private final Queue<Runnable>        pending       = new ConcurrentLinkedQueue<>();
+  private final List<BlockSamplesSink> sinks         = new LinkedList<>();
+  private final List<BlockSamplesSink> widebandSinks = new LinkedList<>();
+  private final List<List<BlockSamplesSink>> bandSinks;
+
+  private final int bands;
+
+  private PolyphaseFilterBank filterBank;
+  private long      sampleRate  = -1l;
+  private double    frequency;
+  private float[]   sourceBlock = new float[0];
+  private float[][] bandBlocks;
+
+  public PolyphaseChannelizer(int bands) {
+    this.bands = bands;
+    filterBank = new PolyphaseFilterBank(bands);
+    bandBlocks = new float[bands][];
+    bandSinks  = new ArrayList<>(bands);
+
+    for (int i = 0; i < bands; i++) {
+      bandSinks.add(new LinkedList<>());
+    }
+  }
+
+  public void addSink(BlockSamplesSink sink) {
+    pending.add(() -> {
+      sinks.add(sink);
+      if (sampleRate > 0l) { assign(sink); }
+    });
+  }
+
+  public void removeSink(BlockSamplesSink sink) {
+    pending.add(() -> {
+      sinks.remove(sink);
+      widebandSinks.remove(sink);
+      bandSinks.forEach(band -> band.remove(sink));
+    });
+  }
+
+  private void applyPending() {
+    Runnable operation;
+    while ((operation = pending.poll()) != null) {
+      operation.run();
+    }
+  }
+
+  private void assign(BlockSamplesSink sink) {
+    ChannelSpec spec       = sink.getSpec();
+    int         band       = filterBank.getNearestBand(spec.getCenterFrequency() - frequency, sampleRate);
+    double      bandCenter = frequency + filterBank.getBandOffset(band, sampleRate);
+    double      halfFlat   = filterBank.getFlatBandwidth(sampleRate) / 2d;
+
+    if (spec.getMinFreq() >= (bandCenter - halfFlat) && spec.getMaxFreq() <= (bandCenter + halfFlat)) {
+      bandSinks.get(band).add(sink);
+      sink.onStateChange(filterBank.getBandRate(sampleRate), bandCenter);
+    } else {
+      log.debug(spec + " does not fit within a single sub-band, feeding full rate");
+      widebandSinks.add(sink);
+      sink.onStateChange(sampleRate, frequency);
+    }
+  }
+
+  @Override
+  public void onStateChange(long sampleRate, double frequency) {
+    applyPending();
+
+    this.sampleRate = sampleRate;
+    this.frequency  = frequency;
+    filterBank      = new PolyphaseFilterBank(bands);
+
+    if ((sampleRate % filterBank.getDecimation()) != 0l) {
+      log.warn("source rate " + sampleRate + " is not a multiple of " + filterBank.getDecimation() + ", sub-band rate is rounded");
+    }
+
+    widebandSinks.clear();
+    bandSinks.forEach(List::clear);
+    sinks.forEach(this::assign);
+  }
+
+  private boolean ensureCapacity(int count) {
+    if (sourceBlock.length < (count << 1)) {
+      sourceBlock = new float[count << 1];
+    }
+
+    boolean bandsActive  = false;
+    int     bandCapacity = filterBank.getOutputCapacity(count) << 1;
+
+    for (int band = 0; band < bands; band++) {
+      if (bandSinks.get(band).isEmpty()) {
+        bandBlocks[band] = null;
+      } else if (bandBlocks[band] == null || bandBlocks[band].length < bandCapacity) {
+        bandBlocks[band] = new float[bandCapacity];
+        bandsActive      = true;
+      } else {
+        bandsActive = true;
+      }
+    }
+
+    return bandsActive;
+  }
+
+  @Override
+  public void consume(Samples samples) {
+    applyPending();
+
+    ComplexNumber[] samps       = samples.getSamples();
+    boolean         bandsActive = ensureCapacity(samps.length);
+
+    for (int i = 0; i < samps.length; i++) {
+      sourceBlock[(i << 1)]     = samps[i].getInPhase();
+      sourceBlock[(i << 1) + 1] = samps[i].getQuadrature();
+    }
+
+    int frames = bandsActive ? filterBank.process(sourceBlock, samps.length, bandBlocks) : 0;
+    if (frames > 0) {
+      for (int band = 0; band < bands; band++) {
+        for (BlockSamplesSink sink : bandSinks.get(band)) {
+          sink.consume(bandBlocks[band], frames);
+        }
+      }
+    }
+
+    for (BlockSamplesSink sink : widebandSinks) {
+      sink.consume(sourceBlock, samps.length);
+    }
+  }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+/**
+ * Uniform analysis filter bank splitting a complex stream into getBands()
+ * sub-bands spaced sampleRate / getBands() apart. Each sub-band is shifted to
+ * baseband and decimated by getBands() / 2, so sub-band output is two times
+ * oversampled and the flat part of its passband, +/- sampleRate / (2 * getBands()),
+ * is free of aliasing. Band k is centered at k * sampleRate / getBands(), bands
+ * at or above getBands() / 2 are negative frequencies.
+ */
+public class PolyphaseFilterBank {
+
+  public static final int TAPS_PER_BAND = 12;
+
+  private final int      bands;
+  private final int      decimation;
+  private final int      taps;
+  private final double[] prototype;
+  private final float[]  history;
+  private final double[] dft;
+  private final double[] twiddles;
+  private final int[]    bitReversed;
+
+  private int  historyIndex = 0;
+  private int  inputPhase   = 0;
+  private long outputIndex  = 0;
+
+  public PolyphaseFilterBank(int bands) {
+    if (bands < 2 || Integer.bitCount(bands) != 1) {
+      throw new IllegalArgumentException("band count must be a power of two, not " + bands);
+    }
+
+    this.bands  = bands;
+    decimation  = bands / 2;
+    taps        = bands * TAPS_PER_BAND;
+    prototype   = prototype(bands, taps);
+    history     = new float[taps * 4];
+    dft         = new double[bands * 2];
+    twiddles    = new double[bands];
+    bitReversed = new int[bands];
+
+    for (int i = 0; i < bands / 2; i++) {
+      twiddles[(i << 1)]     = Math.cos(2d * Math.PI * i / bands);
+      twiddles[(i << 1) + 1] = Math.sin(2d * Math.PI * i / bands);
+    }
+
+    int bits = Integer.numberOfTrailingZeros(bands);
+    for (int i = 0; i < bands; i++) {
+      bitReversed[i] = Integer.reverse(i) >>> (32 - bits);
+    }
+  }
+
+  private static double[] prototype(int bands, int taps) {
+    double[] coefficients = new double[taps];
+    double   cutoff       = 0.75d / bands;
+    double   middle       = (taps - 1) / 2d;
+    double   sum          = 0d;
+
+    for (int n = 0; n < taps; n++) {
+      double t      = n - middle;
+      double sinc   = (t == 0d) ? 2d * cutoff : Math.sin(2d * Math.PI * cutoff * t) / (Math.PI * t);
+      double window = 0.42d - (0.5d * Math.cos(2d * Math.PI * n / (taps - 1)))
+                            + (0.08d * Math.cos(4d * Math.PI * n / (taps - 1)));
+
+      coefficients[n] = sinc * window;
+      sum            += coefficients[n];
+    }
+
+    for (int n = 0; n < taps; n++) {
+      coefficients[n] /= sum;
+    }
+
+    return coefficients;
+  }
+
+  public int getBands() {
+    return bands;
+  }
+
+  public int getDecimation() {
+    return decimation;
+  }
+
+  public int getOutputCapacity(int inputCount) {
+    return (inputCount / decimation) + 1;
+  }
+
+  public long getBandRate(long sampleRate) {
+    return sampleRate / decimation;
+  }
+
+  public double getBandOffset(int band, long sampleRate) {
+    int signedBand = (band < (bands / 2)) ? band : band - bands;
+    return ((double) signedBand * sampleRate) / bands;
+  }
+
+  public int getNearestBand(double offset, long sampleRate) {
+    int signedBand = (int) Math.round((offset * bands) / sampleRate);
+    return Math.floorMod(signedBand, bands);
+  }
+
+  public double getFlatBandwidth(long sampleRate) {
+    return (double) sampleRate / bands;
+  }
+
+  private void inverseDft() {
+    for (int i = 0; i < bands; i++) {
+      int j = bitReversed[i];
+      if (j > i) {
+        double re = dft[(i << 1)];
+        double im = dft[(i << 1) + 1];
+        dft[(i << 1)]     = dft[(j << 1)];
+        dft[(i << 1) + 1] = dft[(j << 1) + 1];
+        dft[(j << 1)]     = re;
+        dft[(j << 1) + 1] = im;
+      }
+    }
+
+    for (int size = 2; size <= bands; size <<= 1) {
+      int half   = size >> 1;
+      int stride = bands / size;
+
+      for (int start = 0; start < bands; start += size) {
+        for (int k = 0; k < half; k++) {
+          double wRe = twiddles[(k * stride) << 1];
+          double wIm = twiddles[((k * stride) << 1) + 1];
+          int    a   = (start + k) << 1;
+          int    b   = (start + k + half) << 1;
+          double re  = (dft[b] * wRe) - (dft[b + 1] * wIm);
+          double im  = (dft[b] * wIm) + (dft[b + 1] * wRe);
+
+          dft[b]     = dft[a] - re;
+          dft[b + 1] = dft[a + 1] - im;
+          dft[a]     = dft[a] + re;
+          dft[a + 1] = dft[a + 1] + im;
+        }
+      }
+    }
+  }
+
+  private void computeBands(float[][] outputs, int frame) {
+    int newest = (historyIndex + taps - 1) << 1;
+
+    for (int r = 0; r < bands; r++) {
+      double re = 0d;
+      double im = 0d;
+
+      for (int l = r; l < taps; l += bands) {
+        re += prototype[l] * history[newest - (l << 1)];
+        im += prototype[l] * history[newest - (l << 1) + 1];
+      }
+
+      dft[(r << 1)]     = re;
+      dft[(r << 1) + 1] = im;
+    }
+
+    inverseDft();
+
+    boolean oddFrame = (outputIndex++ & 1l) == 1l;
+    for (int band = 0; band < bands; band++) {
+      if (outputs[band] != null) {
+        double sign = (oddFrame && (band & 1) == 1) ? -1d : 1d;
+        outputs[band][(frame << 1)]     = (float) (dft[(band << 1)]     * sign);
+        outputs[band][(frame << 1) + 1] = (float) (dft[(band << 1) + 1] * sign);
+      }
+    }
+  }
+
+  /**
+   * @param input   interleaved I/Q samples at the source rate.
+   * @param count   number of complex samples to read from input.
+   * @param outputs interleaved I/Q buffers indexed by band, null for bands that
+   *                are not needed, each must hold getOutputCapacity(count)
+   *                complex samples.
+   * @return number of complex samples written to each output.
+   */
+  public int process(float[] input, int count, float[][] outputs) {
+    int frames = 0;
+
+    for (int i = 0; i < (count << 1); i += 2) {
+      history[(historyIndex << 1)]              = input[i];
+      history[(historyIndex << 1) + 1]          = input[i + 1];
+      history[((historyIndex + taps) << 1)]     = input[i];
+      history[((historyIndex + taps) << 1) + 1] = input[i + 1];
+
+      historyIndex = (historyIndex + 1) % taps;
+
+      if (++inputPhase >= decimation) {
+        inputPhase = 0;
+        computeBands(outputs, frames++);
+      }
+    }
+
+    return frames;
+  }
+
+}
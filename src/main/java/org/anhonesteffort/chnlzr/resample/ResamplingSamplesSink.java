@@ -18,6 +18,7 @@
 package org.anhonesteffort.chnlzr.resample;
 
 import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.anhonesteffort.chnlzr.metrics.ChannelMetrics;
 import org.anhonesteffort.chnlzr.output.SampleSink;
 import org.anhonesteffort.dsp.filter.ComplexNumberFrequencyTranslatingFilter;
 import org.anhonesteffort.dsp.filter.Filter;
@@ -38,15 +39,21 @@ public class ResamplingSamplesSink implements SamplesSink {
   private final SampleSink nextSink;
   private final ChannelSpec spec;
   private final long maxRateDiff;
+  private final ChannelMetrics metrics;
 
   private Filter<ComplexNumber> freqTranslation;
 
-  public ResamplingSamplesSink(ChannelRequest.Reader request, SampleSink nextSink) {
+  public ResamplingSamplesSink(ChannelRequest.Reader request, SampleSink nextSink, ChannelMetrics metrics) {
     this.nextSink = nextSink;
+    this.metrics  = metrics;
     spec          = new ProtoFactory().spec(request);
     maxRateDiff   = request.getMaxRateDiff();
   }
 
+  public ResamplingSamplesSink(ChannelRequest.Reader request, SampleSink nextSink) {
+    this(request, nextSink, new ChannelMetrics(new ProtoFactory().spec(request)));
+  }
+
   @Override
   public ChannelSpec getSpec() {
     return spec;
@@ -54,9 +61,12 @@ public class ResamplingSamplesSink implements SamplesSink {
 
   @Override
   public void onStateChange(long sampleRate, double frequency) {
+    metrics.getClock().onStateChange(sampleRate);
+
     freqTranslation = new ComplexNumberFrequencyTranslatingFilter(
         sampleRate, frequency, spec.getCenterFrequency()
     );
+
     RateChangeFilter<ComplexNumber> resampling = FilterFactory.getCicResampler(
         sampleRate, spec.getSampleRate(), maxRateDiff
     );
@@ -73,10 +83,16 @@ public class ResamplingSamplesSink implements SamplesSink {
 
   @Override
   public void consume(Samples samples) {
+    long            start = System.nanoTime();
     ComplexNumber[] samps = samples.getSamples();
+
+    metrics.getClock().onSourceBlock(samps.length);
+
     for (int i = 0; i < samps.length; i++) {
       freqTranslation.consume(samps[i]);
     }
+
+    metrics.onBlock(samps.length, System.nanoTime() - start);
   }
 
 }
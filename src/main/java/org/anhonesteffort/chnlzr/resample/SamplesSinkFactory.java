@@ -18,21 +18,311 @@
 package org.anhonesteffort.chnlzr.resample;
 
 import org.anhonesteffort.chnlzr.ChnlzrServerConfig;
-import org.anhonesteffort.chnlzr.netty.WriteQueuingContext;
+import org.anhonesteffort.chnlzr.capnp.BaseMessageEncoder;
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.anhonesteffort.chnlzr.input.ChannelizerMode;
+import org.anhonesteffort.chnlzr.metrics.ChannelMetrics;
+import org.anhonesteffort.chnlzr.metrics.ChnlzrMetrics;
+import org.anhonesteffort.chnlzr.metrics.SampleClock;
+import org.anhonesteffort.chnlzr.output.AdaptiveRateSampleSink;
+import org.anhonesteffort.chnlzr.output.ChannelStateSink;
+import org.anhonesteffort.chnlzr.output.ClientWriteQueue;
+import org.anhonesteffort.chnlzr.output.DatagramSampleSink;
+import org.anhonesteffort.chnlzr.output.DirectNetworkSampleSink;
+import org.anhonesteffort.chnlzr.output.FanOutSampleSink;
 import org.anhonesteffort.chnlzr.output.NetworkSampleSink;
+import org.anhonesteffort.chnlzr.output.SampleBlockSink;
+import org.anhonesteffort.chnlzr.output.SampleCompression;
+import org.anhonesteffort.chnlzr.output.SampleFormat;
+import org.anhonesteffort.chnlzr.output.SamplesFrameTemplate;
+import org.capnproto.MessageBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.anhonesteffort.chnlzr.capnp.Proto.ChannelRequest;
 
 public class SamplesSinkFactory {
 
-  private final int samplesPerMessage;
+  private static final Logger log = LoggerFactory.getLogger(SamplesSinkFactory.class);
+
+  private final int                            samplesPerMessage;
+  private final ResamplingMode                 resamplingMode;
+  private final RetuneMode                     retuneMode;
+  private final int                            adaptiveRateSteps;
+  private final Optional<SamplesFrameTemplate> frameTemplate;
+  private final SampleFormat                   sampleFormat;
+  private final Optional<DatagramOutput>       datagramOutput;
+  private final ChnlzrMetrics                  metrics;
+  private final Map<ChannelKey, SharedChannel> channels = new HashMap<>();
 
   public SamplesSinkFactory(ChnlzrServerConfig config) {
+    this(config, new ChnlzrMetrics());
+  }
+
+  public SamplesSinkFactory(ChnlzrServerConfig config, ChnlzrMetrics metrics) {
+    this.metrics           = metrics;
     this.samplesPerMessage = config.samplesPerMessage();
+    this.resamplingMode    = (config.channelizerMode() == ChannelizerMode.POLYPHASE || config.dspWorkerCount() > 0) ?
+                                 ResamplingMode.BLOCK : config.resamplingMode();
+    this.retuneMode        = config.retuneMode();
+    this.adaptiveRateSteps = config.adaptiveRateSteps();
+    this.sampleFormat      = config.sampleFormat();
+
+    if (config.udpOutputAddress().isPresent()) {
+      datagramOutput = Optional.of(new DatagramOutput(config));
+    } else {
+      datagramOutput = Optional.empty();
+    }
+
+    if (config.directSampleFraming() && sampleFormat != SampleFormat.FLOAT32) {
+      log.warn("direct sample framing only supports float32 samples, disabled for " + sampleFormat);
+      frameTemplate = Optional.empty();
+    } else if (config.directSampleFraming() && config.sampleCompression() != SampleCompression.NONE) {
+      log.warn("direct sample framing bypasses sample compression, disabled");
+      frameTemplate = Optional.empty();
+    } else if (config.directSampleFraming()) {
+      frameTemplate = SamplesFrameTemplate.forEncoder(BaseMessageEncoder.INSTANCE, samplesPerMessage);
+      if (!frameTemplate.isPresent()) {
+        log.warn("encoder does not write samples verbatim, direct sample framing disabled");
+      }
+    } else {
+      frameTemplate = Optional.empty();
+    }
   }
 
-  public SamplesSink create(WriteQueuingContext context, ChannelRequest.Reader request) {
-    return new ResamplingSamplesSink(request, new NetworkSampleSink(context, samplesPerMessage));
+  private SampleBlockSink networkSinkFor(ClientWriteQueue context, SampleClock clock) {
+    SampleBlockSink networkSink = frameTemplate.isPresent() ?
+        new DirectNetworkSampleSink(context, frameTemplate.get()) : new NetworkSampleSink(context, samplesPerMessage, sampleFormat, clock);
+
+    if (adaptiveRateSteps > 0) {
+      return new AdaptiveRateSampleSink(context, networkSink, adaptiveRateSteps);
+    } else {
+      return networkSink;
+    }
+  }
+
+  private SamplesSink pipelineFor(ChannelRequest.Reader request, SampleBlockSink networkSink, ChannelMetrics metrics) {
+    switch (resamplingMode) {
+      case BLOCK:
+        return new BlockResamplingSamplesSink(request, networkSink, metrics, retuneMode);
+
+      default:
+        return new ResamplingSamplesSink(request, networkSink, metrics);
+    }
+  }
+
+  /**
+   * @return true if channels can be requested over datagrams.
+   */
+  public boolean isDatagramAvailable() {
+    return datagramOutput.isPresent();
+  }
+
+  /**
+   * @param datagram true to deliver samples over datagrams, leaving context
+   *                 with the datagram descriptor and state messages.
+   * @return the resampling pipeline for request, shared with every other client
+   *         that requested an identical channel and not yet released.
+   */
+  public SamplesSink create(ClientWriteQueue context, ChannelRequest.Reader request, boolean datagram) {
+    if (datagram && !datagramOutput.isPresent()) {
+      throw new IllegalStateException("udp_output_address is not configured");
+    }
+
+    ChannelKey key = new ChannelKey(request);
+
+    synchronized (channels) {
+      SharedChannel channel = channels.get(key);
+      if (channel == null) {
+        FanOutSampleSink fanOut   = new FanOutSampleSink();
+        ChannelMetrics   counters = metrics.channel(new ProtoFactory().spec(request));
+        channel = new SharedChannel(pipelineFor(request, fanOut, counters), fanOut, counters);
+        channels.put(key, channel);
+      } else {
+        log.info(channel.getPipeline().getSpec() + " shared with another client");
+      }
+
+      if (datagram) {
+        DatagramOutput output = datagramOutput.get();
+        SampleClock    clock  = channel.getMetrics().getClock();
+        channel.subscribeDatagram(
+            context, new ChannelStateSink(context, output.descriptor()), () -> output.sinkFor(request, clock)
+        );
+      } else {
+        channel.subscribe(context, networkSinkFor(context, channel.getMetrics().getClock()));
+      }
+
+      return channel.getPipeline();
+    }
+  }
+
+  public SamplesSink create(ClientWriteQueue context, ChannelRequest.Reader request) {
+    return create(context, request, false);
+  }
+
+  /**
+   * @return true if context was the last client subscribed to pipeline and
+   *         pipeline should be released from its source.
+   */
+  public boolean release(ClientWriteQueue context, SamplesSink pipeline) {
+    synchronized (channels) {
+      for (Map.Entry<ChannelKey, SharedChannel> entry : channels.entrySet()) {
+        if (entry.getValue().getPipeline() == pipeline) {
+          if (entry.getValue().unsubscribe(context)) {
+            channels.remove(entry.getKey());
+            metrics.remove(entry.getValue().getMetrics());
+            return true;
+          } else {
+            return false;
+          }
+        }
+      }
+      return false;
+    }
+  }
+
+  private static class DatagramOutput {
+    private final DatagramChannel   channel;
+    private final InetSocketAddress target;
+    private final SampleFormat      format;
+    private final int               mtu;
+
+    public DatagramOutput(ChnlzrServerConfig config) {
+      target = new InetSocketAddress(config.udpOutputAddress().get(), config.udpOutputPort());
+      format = config.sampleFormat();
+      mtu    = config.udpMtu();
+
+      try {
+
+        channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, config.udpMulticastTtl());
+        if (config.udpMulticastInterface().isPresent()) {
+          channel.setOption(
+              StandardSocketOptions.IP_MULTICAST_IF, NetworkInterface.getByName(config.udpMulticastInterface().get())
+          );
+        }
+
+      } catch (IOException e) {
+        throw new IllegalStateException("failed to open datagram output to " + target, e);
+      }
+
+      log.info("streaming requested channels to " + target + ", " + DatagramSampleSink.samplesPerDatagram(format, mtu) + " per datagram");
+    }
+
+    public MessageBuilder descriptor() {
+      return DatagramSampleSink.descriptor(target, format, mtu);
+    }
+
+    public DatagramSampleSink sinkFor(ChannelRequest.Reader request, SampleClock clock) {
+      return new DatagramSampleSink(channel, target, request.getCenterFrequency(), format, mtu, clock);
+    }
+  }
+
+  private static class ChannelKey {
+    private final double centerFrequency;
+    private final double bandwidth;
+    private final long   sampleRate;
+    private final long   maxRateDiff;
+
+    public ChannelKey(ChannelRequest.Reader request) {
+      centerFrequency = request.getCenterFrequency();
+      bandwidth       = request.getBandwidth();
+      sampleRate      = request.getSampleRate();
+      maxRateDiff     = request.getMaxRateDiff();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof ChannelKey)) {
+        return false;
+      }
+
+      ChannelKey key = (ChannelKey) other;
+      return Double.compare(centerFrequency, key.centerFrequency) == 0 &&
+             Double.compare(bandwidth, key.bandwidth)             == 0 &&
+             sampleRate  == key.sampleRate                              &&
+             maxRateDiff == key.maxRateDiff;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(centerFrequency, bandwidth, sampleRate, maxRateDiff);
+    }
+  }
+
+  private static class SharedChannel {
+    private final Map<ClientWriteQueue, SampleBlockSink> subscribers         = new HashMap<>();
+    private final Set<ClientWriteQueue>                  datagramSubscribers = new HashSet<>();
+    private final SamplesSink      pipeline;
+    private final FanOutSampleSink fanOut;
+    private final ChannelMetrics   metrics;
+
+    private SampleBlockSink datagramSink;
+
+    public SharedChannel(SamplesSink pipeline, FanOutSampleSink fanOut, ChannelMetrics metrics) {
+      this.pipeline = pipeline;
+      this.fanOut   = fanOut;
+      this.metrics  = metrics;
+    }
+
+    public SamplesSink getPipeline() {
+      return pipeline;
+    }
+
+    public ChannelMetrics getMetrics() {
+      return metrics;
+    }
+
+    public void subscribe(ClientWriteQueue context, SampleBlockSink networkSink) {
+      subscribers.put(context, networkSink);
+      fanOut.subscribe(networkSink);
+    }
+
+    /**
+     * The channel's one datagram stream starts with its first datagram
+     * subscriber and stops with its last.
+     */
+    public void subscribeDatagram(
+        ClientWriteQueue context, SampleBlockSink stateSink, Supplier<SampleBlockSink> datagramSinks
+    ) {
+      if (datagramSubscribers.isEmpty()) {
+        datagramSink = datagramSinks.get();
+        fanOut.subscribe(datagramSink);
+      }
+
+      datagramSubscribers.add(context);
+      subscribe(context, stateSink);
+    }
+
+    public boolean unsubscribe(ClientWriteQueue context) {
+      SampleBlockSink networkSink = subscribers.remove(context);
+      if (networkSink != null) {
+        fanOut.unsubscribe(networkSink);
+        networkSink.close();
+      }
+
+      if (datagramSubscribers.remove(context) && datagramSubscribers.isEmpty()) {
+        fanOut.unsubscribe(datagramSink);
+        datagramSink = null;
+      }
+
+      return subscribers.isEmpty();
+    }
   }
 
 }
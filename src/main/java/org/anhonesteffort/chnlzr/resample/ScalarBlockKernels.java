@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+public class ScalarBlockKernels implements BlockKernels {
+
+  @Override
+  public void mix(
+      double[] inPhase, double[] quadrature, int offset,
+      double[] tableCos, double[] tableSin, int tableOffset, double baseCos, double baseSin, int count
+  ) {
+    for (int i = 0; i < count; i++) {
+      double oscCos = (baseCos * tableCos[tableOffset + i]) - (baseSin * tableSin[tableOffset + i]);
+      double oscSin = (baseCos * tableSin[tableOffset + i]) + (baseSin * tableCos[tableOffset + i]);
+      double mixedI = (inPhase[offset + i] * oscCos) - (quadrature[offset + i] * oscSin);
+      double mixedQ = (inPhase[offset + i] * oscSin) + (quadrature[offset + i] * oscCos);
+
+      inPhase[offset + i]    = mixedI;
+      quadrature[offset + i] = mixedQ;
+    }
+  }
+
+  @Override
+  public void toFixed(double[] in, long[] out, int count, double scale) {
+    for (int i = 0; i < count; i++) {
+      out[i] = (long) (in[i] * scale);
+    }
+  }
+
+  @Override
+  public void integrate(long[] state, long[] samples, int count) {
+    for (int stage = 0; stage < state.length; stage++) {
+      long sum = state[stage];
+      for (int i = 0; i < count; i++) {
+        sum       += samples[i];
+        samples[i] = sum;
+      }
+      state[stage] = sum;
+    }
+  }
+
+  @Override
+  public void comb(long[] state, long[] samples, int count) {
+    for (int stage = 0; stage < state.length; stage++) {
+      long delayed = state[stage];
+      for (int i = 0; i < count; i++) {
+        long sample = samples[i];
+        samples[i]  = sample - delayed;
+        delayed     = sample;
+      }
+      state[stage] = delayed;
+    }
+  }
+
+}
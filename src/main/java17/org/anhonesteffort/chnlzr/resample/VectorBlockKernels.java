@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * BlockKernels on jdk.incubator.vector, built by the vector profile and only
+ * loaded when the module is present. Combs run backwards through the block so
+ * every vector can subtract its unmodified neighbours loaded one lane back.
+ * Integrators and the fixed point conversion stay scalar, a vector prefix sum
+ * needs lane shifts and D2L needs a conversion that JDK 17 does not
+ * intrinsify, and both lost to the scalar loops in BlockKernelsBenchmark.
+ */
+public class VectorBlockKernels extends ScalarBlockKernels {
+
+  private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Long>   LONGS   = LongVector.SPECIES_PREFERRED;
+
+  @Override
+  public void mix(
+      double[] inPhase, double[] quadrature, int offset,
+      double[] tableCos, double[] tableSin, int tableOffset, double baseCos, double baseSin, int count
+  ) {
+    int bound = DOUBLES.loopBound(count);
+    int i     = 0;
+
+    for (; i < bound; i += DOUBLES.length()) {
+      DoubleVector cos    = DoubleVector.fromArray(DOUBLES, tableCos, tableOffset + i);
+      DoubleVector sin    = DoubleVector.fromArray(DOUBLES, tableSin, tableOffset + i);
+      DoubleVector oscCos = cos.mul(baseCos).sub(sin.mul(baseSin));
+      DoubleVector oscSin = sin.mul(baseCos).add(cos.mul(baseSin));
+      DoubleVector inI    = DoubleVector.fromArray(DOUBLES, inPhase,    offset + i);
+      DoubleVector inQ    = DoubleVector.fromArray(DOUBLES, quadrature, offset + i);
+
+      inI.mul(oscCos).sub(inQ.mul(oscSin)).intoArray(inPhase,    offset + i);
+      inI.mul(oscSin).add(inQ.mul(oscCos)).intoArray(quadrature, offset + i);
+    }
+
+    if (i < count) {
+      super.mix(inPhase, quadrature, offset + i, tableCos, tableSin, tableOffset + i, baseCos, baseSin, count - i);
+    }
+  }
+
+  @Override
+  public void comb(long[] state, long[] samples, int count) {
+    if (count < 1) {
+      return;
+    }
+
+    for (int stage = 0; stage < state.length; stage++) {
+      long last = samples[count - 1];
+      int  i    = count - LONGS.length();
+
+      for (; i >= 1; i -= LONGS.length()) {
+        LongVector.fromArray(LONGS, samples, i)
+                  .sub(LongVector.fromArray(LONGS, samples, i - 1))
+                  .intoArray(samples, i);
+      }
+
+      for (i += LONGS.length() - 1; i >= 1; i--) {
+        samples[i] -= samples[i - 1];
+      }
+
+      samples[0]  -= state[stage];
+      state[stage] = last;
+    }
+  }
+
+}
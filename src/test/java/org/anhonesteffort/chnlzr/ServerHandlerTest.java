@@ -17,12 +17,18 @@
 
 package org.anhonesteffort.chnlzr;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandler;
+import io.netty.channel.ChannelInitializer;
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
-import org.anhonesteffort.chnlzr.input.SamplesSourceController;
+import org.anhonesteffort.chnlzr.input.SourceRouter;
+import org.anhonesteffort.chnlzr.output.SampleCompression;
+import org.anhonesteffort.chnlzr.output.SampleCompressionEncoder;
+import org.anhonesteffort.chnlzr.output.SampleEncoder;
+import org.anhonesteffort.chnlzr.output.SampleFormat;
 import org.anhonesteffort.chnlzr.resample.SamplesSink;
 import org.anhonesteffort.chnlzr.resample.SamplesSinkFactory;
 import org.anhonesteffort.dsp.util.ChannelSpec;
@@ -30,6 +36,8 @@ import org.capnproto.MessageBuilder;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.nio.ByteBuffer;
+
 import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
 import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage.Type;
 
@@ -45,21 +53,32 @@ public class ServerHandlerTest {
     Mockito.when(CONFIG.polarization()).thenReturn(1);
     Mockito.when(CONFIG.clientWriteQueueSize()).thenReturn(8);
     Mockito.when(CONFIG.samplesPerMessage()).thenReturn(1000);
+    Mockito.when(CONFIG.sampleFormat()).thenReturn(SampleFormat.FLOAT32);
+    Mockito.when(CONFIG.sampleCompression()).thenReturn(SampleCompression.NONE);
 
     return CONFIG;
   }
 
   private static MessageBuilder request() {
+    return request(1337d, 48000l);
+  }
+
+  private static MessageBuilder request(double centerFrequency, long sampleRate) {
     return PROTO.channelRequest(PROTO.channelRequest(
-        1337d, 9001d, 48000l, 150l
+        centerFrequency, 9001d, sampleRate, 150l
     ));
   }
 
+  private static BaseMessage.Reader readOutbound(EmbeddedChannel channel) {
+    final MessageBuilder MESSAGE = channel.readOutbound();
+    return MESSAGE.getRoot(BaseMessage.factory).asReader();
+  }
+
   @Test
   public void testCapabilitiesSentFirst() {
     final ChnlzrServerConfig      CONFIG            = config();
     final SamplesSinkFactory      SINK_FACTORY      = Mockito.mock(SamplesSinkFactory.class);
-    final SamplesSourceController SOURCE_CONTROLLER = Mockito.mock(SamplesSourceController.class);
+    final SourceRouter            SOURCE_CONTROLLER = Mockito.mock(SourceRouter.class);
     final ChannelSpec             SPEC              = ChannelSpec.fromMinMax(1337d, 9001d);
 
     Mockito.when(SOURCE_CONTROLLER.getCapabilities()).thenReturn(SPEC);
@@ -69,6 +88,40 @@ public class ServerHandlerTest {
     final MessageBuilder  RECEIVED_MSG = CHANNEL.readOutbound();
 
     assert RECEIVED_MSG.getRoot(BaseMessage.factory).getType() == Type.CAPABILITIES;
+    assert CHANNEL.readOutbound() == null;
+  }
+
+  @Test
+  public void testEncodingSentUncompressedAfterCapabilities() {
+    final ChnlzrServerConfig      CONFIG            = config();
+    final SamplesSinkFactory      SINK_FACTORY      = Mockito.mock(SamplesSinkFactory.class);
+    final SourceRouter            SOURCE_CONTROLLER = Mockito.mock(SourceRouter.class);
+    final ChannelSpec             SPEC              = ChannelSpec.fromMinMax(1337d, 9001d);
+
+    Mockito.when(CONFIG.sampleFormat()).thenReturn(SampleFormat.INT16);
+    Mockito.when(CONFIG.sampleCompression()).thenReturn(SampleCompression.DEFLATE);
+    Mockito.when(SOURCE_CONTROLLER.getCapabilities()).thenReturn(SPEC);
+
+    final ChannelHandler  HANDLER = new ServerHandler(CONFIG, SINK_FACTORY, SOURCE_CONTROLLER);
+    final EmbeddedChannel CHANNEL = new EmbeddedChannel(new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(Channel channel) {
+        channel.pipeline().addLast("compressor", new SampleCompressionEncoder(SampleCompression.DEFLATE, SampleFormat.INT16));
+        channel.pipeline().addLast("handler",    HANDLER);
+      }
+    });
+
+    assert readOutbound(CHANNEL).getType() == Type.CAPABILITIES;
+
+    final BaseMessage.Reader DESCRIPTOR = readOutbound(CHANNEL);
+    assert DESCRIPTOR.getType() == Type.SAMPLES;
+
+    final ByteBuffer PAYLOAD = DESCRIPTOR.getSamples().getSamples().asByteBuffer();
+    assert PAYLOAD.remaining() == 6;
+    assert PAYLOAD.getInt() == SampleEncoder.MAGIC;
+    assert PAYLOAD.get()    == SampleFormat.INT16.ordinal();
+    assert PAYLOAD.get()    == SampleCompression.DEFLATE.ordinal();
+    assert CHANNEL.readOutbound() == null;
   }
 
   @Test
@@ -76,14 +129,15 @@ public class ServerHandlerTest {
     final ChnlzrServerConfig      CONFIG            = config();
     final SamplesSinkFactory      SINK_FACTORY      = Mockito.mock(SamplesSinkFactory.class);
     final SamplesSink             SINK              = Mockito.mock(SamplesSink.class);
-    final SamplesSourceController SOURCE_CONTROLLER = Mockito.mock(SamplesSourceController.class);
+    final SourceRouter            SOURCE_CONTROLLER = Mockito.mock(SourceRouter.class);
     final ChannelSpec             SPEC              = ChannelSpec.fromMinMax(1337d, 9001d);
 
     Mockito.when(SOURCE_CONTROLLER.getCapabilities()).thenReturn(SPEC);
     Mockito.when(SOURCE_CONTROLLER.configureSourceForSink(Mockito.any())).thenReturn(0x00);
 
     Mockito.when(SINK.getSpec()).thenReturn(new ChannelSpec(1337d, 9001d));
-    Mockito.when(SINK_FACTORY.create(Mockito.any(), Mockito.any())).thenReturn(SINK);
+    Mockito.when(SINK_FACTORY.create(Mockito.any(), Mockito.any(), Mockito.anyBoolean())).thenReturn(SINK);
+    Mockito.when(SINK_FACTORY.release(Mockito.any(), Mockito.any())).thenReturn(true);
 
     final ChannelInboundHandler HANDLER = new ServerHandler(CONFIG, SINK_FACTORY, SOURCE_CONTROLLER);
     final EmbeddedChannel       CHANNEL = new EmbeddedChannel(HANDLER);
@@ -105,14 +159,14 @@ public class ServerHandlerTest {
     final ChnlzrServerConfig      CONFIG            = config();
     final SamplesSinkFactory      SINK_FACTORY      = Mockito.mock(SamplesSinkFactory.class);
     final SamplesSink             SINK              = Mockito.mock(SamplesSink.class);
-    final SamplesSourceController SOURCE_CONTROLLER = Mockito.mock(SamplesSourceController.class);
+    final SourceRouter            SOURCE_CONTROLLER = Mockito.mock(SourceRouter.class);
     final ChannelSpec             SPEC              = ChannelSpec.fromMinMax(1337d, 9001d);
 
     Mockito.when(SOURCE_CONTROLLER.getCapabilities()).thenReturn(SPEC);
     Mockito.when(SOURCE_CONTROLLER.configureSourceForSink(Mockito.any())).thenReturn(0x00);
 
     Mockito.when(SINK.getSpec()).thenReturn(new ChannelSpec(1337d, 9001d));
-    Mockito.when(SINK_FACTORY.create(Mockito.any(), Mockito.any())).thenReturn(SINK);
+    Mockito.when(SINK_FACTORY.create(Mockito.any(), Mockito.any(), Mockito.anyBoolean())).thenReturn(SINK);
 
     final ChannelInboundHandler HANDLER = new ServerHandler(CONFIG, SINK_FACTORY, SOURCE_CONTROLLER);
     final EmbeddedChannel       CHANNEL = new EmbeddedChannel(HANDLER);
@@ -129,4 +183,91 @@ public class ServerHandlerTest {
     Mockito.verify(CONTEXT, Mockito.times(1)).close();
   }
 
+  @Test
+  public void testMultiplexedChannelsReleasedIndividually() throws Exception {
+    final ChnlzrServerConfig      CONFIG            = config();
+    final SamplesSinkFactory      SINK_FACTORY      = Mockito.mock(SamplesSinkFactory.class);
+    final SamplesSink             SINK              = Mockito.mock(SamplesSink.class);
+    final SourceRouter            SOURCE_CONTROLLER = Mockito.mock(SourceRouter.class);
+    final ChannelSpec             SPEC              = ChannelSpec.fromMinMax(1337d, 9001d);
+
+    Mockito.when(CONFIG.maxChannelsPerConnection()).thenReturn(2);
+    Mockito.when(SOURCE_CONTROLLER.getCapabilities()).thenReturn(SPEC);
+    Mockito.when(SOURCE_CONTROLLER.configureSourceForSink(Mockito.any())).thenReturn(0x00);
+
+    Mockito.when(SINK.getSpec()).thenReturn(new ChannelSpec(1337d, 9001d));
+    Mockito.when(SINK_FACTORY.create(Mockito.any(), Mockito.any(), Mockito.anyBoolean())).thenReturn(SINK);
+    Mockito.when(SINK_FACTORY.release(Mockito.any(), Mockito.any())).thenReturn(true);
+
+    final ChannelInboundHandler HANDLER = new ServerHandler(CONFIG, SINK_FACTORY, SOURCE_CONTROLLER);
+    final EmbeddedChannel       CHANNEL = new EmbeddedChannel(HANDLER);
+
+    assert CHANNEL.readOutbound() != null;
+
+    CHANNEL.writeInbound(request(1337d, 48000l).getRoot(BaseMessage.factory).asReader());
+    CHANNEL.writeInbound(request(2337d, 48000l).getRoot(BaseMessage.factory).asReader());
+
+    Mockito.verify(SOURCE_CONTROLLER, Mockito.times(2)).configureSourceForSink(Mockito.any());
+    assert CHANNEL.readOutbound() == null;
+
+    CHANNEL.writeInbound(request(3337d, 48000l).getRoot(BaseMessage.factory).asReader());
+
+    final BaseMessage.Reader REFUSED_TAG = readOutbound(CHANNEL);
+    final BaseMessage.Reader REFUSED     = readOutbound(CHANNEL);
+
+    assert REFUSED_TAG.getType()                              == Type.CHANNEL_STATE;
+    assert REFUSED_TAG.getChannelState().getCenterFrequency() == 3337d;
+    assert REFUSED_TAG.getChannelState().getSampleRate()      == 0l;
+    assert REFUSED.getType()                                  == Type.ERROR;
+    Mockito.verify(SOURCE_CONTROLLER, Mockito.times(2)).configureSourceForSink(Mockito.any());
+
+    CHANNEL.writeInbound(request(1337d, 0l).getRoot(BaseMessage.factory).asReader());
+
+    final BaseMessage.Reader RELEASED = readOutbound(CHANNEL);
+    assert RELEASED.getType()                              == Type.CHANNEL_STATE;
+    assert RELEASED.getChannelState().getCenterFrequency() == 1337d;
+    assert RELEASED.getChannelState().getSampleRate()      == 0l;
+
+    Mockito.verify(SOURCE_CONTROLLER, Mockito.times(1)).releaseSink(Mockito.any());
+    assert CHANNEL.isOpen();
+
+    HANDLER.channelInactive(Mockito.mock(ChannelHandlerContext.class));
+
+    Mockito.verify(SOURCE_CONTROLLER, Mockito.times(2)).releaseSink(Mockito.any());
+  }
+
+  @Test
+  public void testMultiplexedDuplicateChannelRefused() throws Exception {
+    final ChnlzrServerConfig      CONFIG            = config();
+    final SamplesSinkFactory      SINK_FACTORY      = Mockito.mock(SamplesSinkFactory.class);
+    final SamplesSink             SINK              = Mockito.mock(SamplesSink.class);
+    final SourceRouter            SOURCE_CONTROLLER = Mockito.mock(SourceRouter.class);
+    final ChannelSpec             SPEC              = ChannelSpec.fromMinMax(1337d, 9001d);
+
+    Mockito.when(CONFIG.maxChannelsPerConnection()).thenReturn(4);
+    Mockito.when(SOURCE_CONTROLLER.getCapabilities()).thenReturn(SPEC);
+    Mockito.when(SOURCE_CONTROLLER.configureSourceForSink(Mockito.any())).thenReturn(0x00);
+
+    Mockito.when(SINK.getSpec()).thenReturn(new ChannelSpec(1337d, 9001d));
+    Mockito.when(SINK_FACTORY.create(Mockito.any(), Mockito.any(), Mockito.anyBoolean())).thenReturn(SINK);
+    Mockito.when(SINK_FACTORY.release(Mockito.any(), Mockito.any())).thenReturn(true);
+
+    final ChannelInboundHandler HANDLER = new ServerHandler(CONFIG, SINK_FACTORY, SOURCE_CONTROLLER);
+    final EmbeddedChannel       CHANNEL = new EmbeddedChannel(HANDLER);
+
+    assert CHANNEL.readOutbound() != null;
+
+    CHANNEL.writeInbound(request(1337d, 48000l).getRoot(BaseMessage.factory).asReader());
+    CHANNEL.writeInbound(request(1337.2d, 24000l).getRoot(BaseMessage.factory).asReader());
+
+    final BaseMessage.Reader REFUSED_TAG = readOutbound(CHANNEL);
+    final BaseMessage.Reader REFUSED     = readOutbound(CHANNEL);
+
+    assert REFUSED_TAG.getType()                              == Type.CHANNEL_STATE;
+    assert REFUSED_TAG.getChannelState().getCenterFrequency() == 1337d;
+    assert REFUSED.getType()                                  == Type.ERROR;
+    Mockito.verify(SOURCE_CONTROLLER, Mockito.times(1)).configureSourceForSink(Mockito.any());
+    Mockito.verify(SOURCE_CONTROLLER, Mockito.never()).releaseSink(Mockito.any());
+  }
+
 }
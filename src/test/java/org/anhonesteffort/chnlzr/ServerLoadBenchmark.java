@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.anhonesteffort.chnlzr.capnp.BaseMessageDecoder;
+import org.anhonesteffort.chnlzr.capnp.BaseMessageEncoder;
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.anhonesteffort.chnlzr.metrics.LatencyHistogram;
+import org.anhonesteffort.chnlzr.output.SampleFormat;
+import org.capnproto.MessageBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
+
+/**
+ * Load generator for a running server, fed by the mock source or a replayed
+ * recording. For each connection count it opens that many connections, asks
+ * for one channel on each spread evenly across the band and, after a warmup,
+ * measures samples per second, loss against the rates the server announced,
+ * the gap from channel state to first samples, inter-message jitter and how
+ * often state was repeated to signal drops. Every run appends to a csv report
+ * under label, restart the server with other samples_per_message,
+ * client_write_queue_size or cic_pool_size settings and run again with a new
+ * label to compare them. Options are key=value arguments, run with
+ * java -cp target/test-classes:target/classes:... ServerLoadBenchmark band=851000000:854000000 label=spm2000
+ */
+public class ServerLoadBenchmark {
+
+  private static final ProtoFactory PROTO = new ProtoFactory();
+  private static final String       REPORT_HEADER =
+      "label,connections,channels,errors,msps,loss_pct,first_p50_ms,first_p99_ms,jitter_p99_ms,restates";
+
+  private static class RunStats {
+    private final LatencyHistogram firstSample = new LatencyHistogram();
+    private final LatencyHistogram jitter      = new LatencyHistogram();
+    private final LongAdder        samples     = new LongAdder();
+    private final LongAdder        restates    = new LongAdder();
+    private final LongAdder        errors      = new LongAdder();
+    private volatile boolean       measuring   = false;
+  }
+
+  private static class ChannelClient extends ChannelInboundHandlerAdapter {
+    private final MessageBuilder request;
+    private final SampleFormat   format;
+    private final RunStats       stats;
+
+    private volatile long sampleRate    = 0l;
+    private long          stateAt       = -1l;
+    private long          lastMessageAt = -1l;
+    private long          periodNanos   = 0l;
+
+    public ChannelClient(MessageBuilder request, SampleFormat format, RunStats stats) {
+      this.request = request;
+      this.format  = format;
+      this.stats   = stats;
+    }
+
+    public long getSampleRate() {
+      return sampleRate;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext context) {
+      context.writeAndFlush(request);
+    }
+
+    private void onState(BaseMessage.Reader message, long now) {
+      if (sampleRate != 0l && stats.measuring) {
+        stats.restates.increment();
+      }
+
+      sampleRate    = message.getChannelState().getSampleRate();
+      lastMessageAt = -1l;
+      if (stateAt < 0l) {
+        stateAt = now;
+      }
+    }
+
+    private void onSamples(BaseMessage.Reader message, long now) {
+      int count = sampleCount(format, message.getSamples().getSamples().size());
+
+      if (stateAt >= 0l) {
+        stats.firstSample.record(now - stateAt);
+        stateAt = Long.MAX_VALUE;
+      }
+
+      if (sampleRate > 0l) {
+        periodNanos = TimeUnit.SECONDS.toNanos(count) / sampleRate;
+      }
+
+      if (stats.measuring) {
+        stats.samples.add(count);
+        if (lastMessageAt >= 0l) {
+          stats.jitter.record(Math.abs((now - lastMessageAt) - periodNanos));
+        }
+      }
+
+      lastMessageAt = now;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext context, Object object) {
+      BaseMessage.Reader message = (BaseMessage.Reader) object;
+      long               now     = System.nanoTime();
+
+      switch (message.getType()) {
+        case CHANNEL_STATE:
+          onState(message, now);
+          break;
+
+        case SAMPLES:
+          onSamples(message, now);
+          break;
+
+        case ERROR:
+          stats.errors.increment();
+          context.close();
+          break;
+      }
+
+    }
+  }
+
+  /**
+   * @return the largest sample count whose encoding fits in bytes.
+   */
+  private static int sampleCount(SampleFormat format, int bytes) {
+    int low  = 0;
+    int high = bytes;
+
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (format.getEncodedLength(mid) <= bytes) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+
+    return low;
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000d;
+  }
+
+  private static String run(Properties options, EventLoopGroup group, int connections) throws Exception {
+    final String       host      = options.getProperty("host", "127.0.0.1");
+    final int          port      = Integer.parseInt(options.getProperty("port", "7070"));
+    final String[]     band      = options.getProperty("band").split(":");
+    final double       minFreq   = Double.parseDouble(band[0]);
+    final double       maxFreq   = Double.parseDouble(band[1]);
+    final double       bandwidth = Double.parseDouble(options.getProperty("bandwidth", "12500"));
+    final long         rate      = Long.parseLong(options.getProperty("rate", "48000"));
+    final long         rateDiff  = Long.parseLong(options.getProperty("max_rate_diff", "150"));
+    final long         warmupMs  = Long.parseLong(options.getProperty("warmup_ms", "5000"));
+    final long         measureMs = Long.parseLong(options.getProperty("measure_ms", "20000"));
+    final SampleFormat format    = SampleFormat.fromString(options.getProperty("format", "float32"));
+    final RunStats     stats     = new RunStats();
+
+    final List<Channel>       channels = new ArrayList<>(connections);
+    final List<ChannelClient> clients  = new ArrayList<>(connections);
+
+    for (int i = 0; i < connections; i++) {
+      double        frequency = minFreq + ((i + 0.5d) * (maxFreq - minFreq) / connections);
+      ChannelClient client    = new ChannelClient(
+          PROTO.channelRequest(PROTO.channelRequest(frequency, bandwidth, rate, rateDiff)), format, stats
+      );
+
+      Bootstrap bootstrap = new Bootstrap()
+          .group(group)
+          .channel(NioSocketChannel.class)
+          .option(ChannelOption.TCP_NODELAY, true)
+          .handler(new ChannelInitializer<Channel>() {
+            @Override
+            public void initChannel(Channel channel) {
+              channel.pipeline().addLast("encoder", BaseMessageEncoder.INSTANCE);
+              channel.pipeline().addLast("decoder", new BaseMessageDecoder());
+              channel.pipeline().addLast("client",  client);
+            }
+          });
+
+      channels.add(bootstrap.connect(host, port).sync().channel());
+      clients.add(client);
+    }
+
+    Thread.sleep(warmupMs);
+    stats.measuring = true;
+    Thread.sleep(measureMs);
+    stats.measuring = false;
+
+    long   streaming = clients.stream().filter(client -> client.getSampleRate() > 0l).count();
+    double expected  = clients.stream().mapToLong(ChannelClient::getSampleRate).sum() * (measureMs / 1_000d);
+    double received  = stats.samples.sum();
+    double loss      = (expected > 0d) ? Math.max(0d, 1d - (received / expected)) * 100d : 0d;
+
+    channels.forEach(Channel::close);
+    channels.forEach(channel -> channel.closeFuture().syncUninterruptibly());
+
+    return String.format(
+        "%s,%d,%d,%d,%.3f,%.2f,%.3f,%.3f,%.3f,%d",
+        options.getProperty("label", "default"), connections, streaming, stats.errors.sum(),
+        received / (measureMs / 1_000d) / 1_000_000d, loss,
+        millis(stats.firstSample.getQuantile(0.5d)), millis(stats.firstSample.getQuantile(0.99d)),
+        millis(stats.jitter.getQuantile(0.99d)), stats.restates.sum()
+    );
+  }
+
+  private static void printReport(Path report) throws IOException {
+    List<String[]> rows = new ArrayList<>();
+    for (String line : Files.readAllLines(report, StandardCharsets.UTF_8)) {
+      rows.add(line.split(","));
+    }
+
+    int[] widths = new int[rows.get(0).length];
+    for (String[] row : rows) {
+      for (int i = 0; i < row.length && i < widths.length; i++) {
+        widths[i] = Math.max(widths[i], row[i].length());
+      }
+    }
+
+    for (String[] row : rows) {
+      StringBuilder line = new StringBuilder();
+      for (int i = 0; i < row.length && i < widths.length; i++) {
+        line.append(String.format((i == 0) ? "%-" + widths[i] + "s" : "  %" + widths[i] + "s", row[i]));
+      }
+      System.out.println(line);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Properties options = new Properties();
+    for (String arg : args) {
+      String[] option = arg.split("=", 2);
+      options.setProperty(option[0], (option.length > 1) ? option[1] : "true");
+    }
+
+    if (options.getProperty("band") == null) {
+      System.err.println("usage: ServerLoadBenchmark band=<min_hz>:<max_hz> [host= port= connections=50,100,200 " +
+                         "bandwidth= rate= max_rate_diff= format= warmup_ms= measure_ms= label= report=]");
+      System.exit(1);
+    }
+
+    Path           report = Paths.get(options.getProperty("report", "load-report.csv"));
+    EventLoopGroup group  = new NioEventLoopGroup();
+
+    if (!Files.exists(report)) {
+      Files.write(report, Collections.singletonList(REPORT_HEADER), StandardCharsets.UTF_8);
+    }
+
+    try {
+
+      for (String connections : options.getProperty("connections", "50,100,200").split(",")) {
+        String row = run(options, group, Integer.parseInt(connections.trim()));
+        Files.write(report, Collections.singletonList(row), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        Thread.sleep(2_000l);
+      }
+
+    } finally {
+      group.shutdownGracefully().syncUninterruptibly();
+    }
+
+    printReport(report);
+  }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr;
+
+import io.netty.channel.EventLoopGroup;
+import org.junit.Test;
+
+public class ServerTransportTest {
+
+  @Test
+  public void testFromString() throws Exception {
+    assert ServerTransport.fromString("nio")      == ServerTransport.NIO;
+    assert ServerTransport.fromString(" epoll ")  == ServerTransport.EPOLL;
+    assert ServerTransport.fromString("io-uring") == ServerTransport.IO_URING;
+    assert ServerTransport.fromString("auto").isAvailable();
+  }
+
+  @Test
+  public void testNioAlwaysAvailable() throws Exception {
+    final EventLoopGroup GROUP = ServerTransport.NIO.newEventLoopGroup(1);
+
+    assert ServerTransport.NIO.isAvailable();
+    assert ServerTransport.NIO.getServerChannelClass() != null;
+
+    GROUP.shutdownGracefully().syncUninterruptibly();
+  }
+
+}
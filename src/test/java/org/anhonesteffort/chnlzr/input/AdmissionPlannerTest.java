@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.dsp.util.ChannelSpec;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+public class AdmissionPlannerTest {
+
+  @Test
+  public void testDisabledPlansNothing() throws Exception {
+    final ChannelSpec REQUIRED = ChannelSpec.fromMinMax(100d, 200d, 100l);
+    final ChannelSpec TUNED    = ChannelSpec.fromMinMax(300d, 400d, 100l);
+
+    assert AdmissionPlanner.disabled().plan(REQUIRED, Optional.of(TUNED)).isEmpty();
+  }
+
+  @Test
+  public void testPrefersKeepingCurrentTune() throws Exception {
+    final AdmissionPlanner  PLANNER  = new AdmissionPlanner(true, Optional.empty());
+    final ChannelSpec       REQUIRED = ChannelSpec.fromMinMax(100d, 200d, 100l);
+    final ChannelSpec       TUNED    = ChannelSpec.fromMinMax(300d, 400d, 100l);
+    final List<ChannelSpec> PLANS    = PLANNER.plan(REQUIRED, Optional.of(TUNED));
+
+    assert PLANS.size()                     == 1;
+    assert PLANS.get(0).contains(REQUIRED);
+    assert PLANS.get(0).contains(TUNED);
+    assert PLANS.get(0).getSampleRate()     >= 300l;
+    assert PLANNER.plan(REQUIRED, Optional.empty()).isEmpty();
+  }
+
+  @Test
+  public void testCoversBandOfInterest() throws Exception {
+    final ChannelSpec       BAND     = ChannelSpec.fromMinMax(150d, 500d, 350l);
+    final AdmissionPlanner  PLANNER  = new AdmissionPlanner(true, Optional.of(BAND));
+    final ChannelSpec       REQUIRED = ChannelSpec.fromMinMax(100d, 200d, 100l);
+    final ChannelSpec       TUNED    = ChannelSpec.fromMinMax(600d, 700d, 100l);
+    final List<ChannelSpec> PLANS    = PLANNER.plan(REQUIRED, Optional.of(TUNED));
+
+    assert PLANS.size() == 3;
+    assert PLANS.get(0).contains(BAND) && PLANS.get(0).contains(TUNED) && PLANS.get(0).contains(REQUIRED);
+    assert PLANS.get(1).contains(BAND) && PLANS.get(1).contains(REQUIRED);
+    assert !PLANS.get(1).contains(TUNED);
+    assert PLANS.get(2).contains(TUNED) && PLANS.get(2).contains(REQUIRED);
+  }
+
+}
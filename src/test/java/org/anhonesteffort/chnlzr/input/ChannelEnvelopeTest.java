@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.dsp.util.ChannelSpec;
+import org.junit.Test;
+
+public class ChannelEnvelopeTest {
+
+  @Test
+  public void testEmpty() throws Exception {
+    final ChannelEnvelope ENVELOPE = new ChannelEnvelope();
+
+    assert ENVELOPE.isEmpty();
+    assert !ENVELOPE.getMinFrequency().isPresent();
+    assert !ENVELOPE.getMaxFrequency().isPresent();
+    assert !ENVELOPE.getMaxSampleRate().isPresent();
+  }
+
+  @Test
+  public void testTracksDuplicatesAcrossRemoval() throws Exception {
+    final ChannelEnvelope ENVELOPE = new ChannelEnvelope();
+    final ChannelSpec     LOW      = ChannelSpec.fromMinMax(100d, 200d, 150l);
+    final ChannelSpec     HIGH     = ChannelSpec.fromMinMax(300d, 400d, 500l);
+
+    ENVELOPE.add(LOW);
+    ENVELOPE.add(LOW);
+    ENVELOPE.add(HIGH);
+
+    assert ENVELOPE.size()                   == 3;
+    assert ENVELOPE.getMinFrequency().get()  == 100d;
+    assert ENVELOPE.getMaxFrequency().get()  == 400d;
+    assert ENVELOPE.getMaxSampleRate().get() == 500l;
+
+    ENVELOPE.remove(HIGH);
+    ENVELOPE.remove(LOW);
+
+    assert ENVELOPE.size()                   == 1;
+    assert ENVELOPE.getMaxFrequency().get()  == 200d;
+    assert ENVELOPE.getMaxSampleRate().get() == 150l;
+
+    ENVELOPE.remove(LOW);
+    assert ENVELOPE.isEmpty();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRemoveUnknownThrows() throws Exception {
+    new ChannelEnvelope().remove(ChannelSpec.fromMinMax(100d, 200d, 150l));
+  }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.FatalExceptionHandler;
+import org.anhonesteffort.chnlzr.resample.BlockSamplesSink;
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.util.ChannelSpec;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DspWorkerPoolTest {
+
+  private static class CountingSink implements BlockSamplesSink {
+    private   final    CountDownLatch latch;
+    protected volatile long           sampleRate = -1l;
+    protected volatile int            states     = 0;
+    private            float          sum        = 0f;
+
+    public CountingSink(int expectedSamples) {
+      latch = new CountDownLatch(expectedSamples);
+    }
+
+    @Override
+    public ChannelSpec getSpec() {
+      return new ChannelSpec(1337d, 9001d);
+    }
+
+    @Override
+    public void onStateChange(long sampleRate, double frequency) {
+      this.sampleRate = sampleRate;
+      states++;
+    }
+
+    @Override
+    public void consume(Samples samples) {
+      throw new IllegalStateException("block sinks should not be fed complex samples");
+    }
+
+    @Override
+    public void consume(float[] samples, int count) {
+      for (int i = 0; i < count; i++) {
+        sum += samples[i << 1] + samples[(i << 1) + 1];
+        latch.countDown();
+      }
+    }
+  }
+
+  private static class GatedSink extends CountingSink {
+    private final CountDownLatch gate    = new CountDownLatch(1);
+    private final CountDownLatch resumed = new CountDownLatch(1);
+
+    public GatedSink() {
+      super(0);
+    }
+
+    @Override
+    public void onStateChange(long sampleRate, double frequency) {
+      super.onStateChange(sampleRate, frequency);
+      if (sampleRate == 96_000l) {
+        resumed.countDown();
+      }
+    }
+
+    @Override
+    public void consume(float[] samples, int count) {
+      try {
+        gate.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testEverySinkSeesEveryBlock() throws Exception {
+    final int           BLOCKS     = 32;
+    final int           BLOCK_SIZE = 50;
+    final DspWorkerPool POOL       = new DspWorkerPool(
+        2, 64, new int[0], BlockingWaitStrategy::new, new FatalExceptionHandler()
+    );
+
+    final CountingSink[] SINKS = new CountingSink[3];
+    for (int i = 0; i < SINKS.length; i++) {
+      SINKS[i] = new CountingSink(BLOCKS * BLOCK_SIZE);
+      POOL.addSink(SINKS[i]);
+    }
+
+    final Samples SAMPLES = new Samples(new ComplexNumber[BLOCK_SIZE]);
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      SAMPLES.getSamples()[i] = new ComplexNumber(1f, 1f);
+    }
+
+    POOL.onStateChange(48_000l, 9001d);
+    for (int i = 0; i < BLOCKS; i++) {
+      POOL.consume(SAMPLES);
+    }
+
+    for (CountingSink sink : SINKS) {
+      assert sink.latch.await(5, TimeUnit.SECONDS);
+      assert sink.sampleRate == 48_000l;
+      assert sink.sum        == BLOCKS * BLOCK_SIZE * 2f;
+    }
+
+    POOL.removeSink(SINKS[0]);
+    assert POOL.getSinkCount()     == 2;
+    assert POOL.getDroppedBlocks() == 0l;
+
+    POOL.shutdown();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSlowWorkerDropsWithoutBlockingSource() throws Exception {
+    final int           BLOCKS     = 32;
+    final int           BLOCK_SIZE = 50;
+    final DspWorkerPool POOL       = new DspWorkerPool(
+        2, 8, new int[0], BlockingWaitStrategy::new, new FatalExceptionHandler()
+    );
+
+    final GatedSink    SLOW = new GatedSink();
+    final CountingSink FAST = new CountingSink(BLOCKS * BLOCK_SIZE);
+    POOL.addSink(SLOW);
+    POOL.addSink(FAST);
+
+    final Samples SAMPLES = new Samples(new ComplexNumber[BLOCK_SIZE]);
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      SAMPLES.getSamples()[i] = new ComplexNumber(1f, 1f);
+    }
+
+    POOL.onStateChange(48_000l, 9001d);
+    for (int i = 0; i < BLOCKS; i++) {
+      POOL.consume(SAMPLES);
+      Thread.sleep(1l);
+    }
+
+    assert FAST.latch.await(5, TimeUnit.SECONDS);
+    assert POOL.getDroppedBlocks() > 0l;
+
+    POOL.onStateChange(96_000l, 9001d);
+    SLOW.gate.countDown();
+    for (int i = 0; i < 5_000 && SLOW.resumed.getCount() > 0; i++) {
+      POOL.consume(SAMPLES);
+      Thread.sleep(1l);
+    }
+
+    assert SLOW.resumed.getCount() == 0;
+    POOL.shutdown();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testDroppedBlocksRepeatStateOnlyForSlowWorker() throws Exception {
+    final int           BLOCKS     = 32;
+    final int           BLOCK_SIZE = 50;
+    final DspWorkerPool POOL       = new DspWorkerPool(
+        2, 8, new int[0], BlockingWaitStrategy::new, new FatalExceptionHandler()
+    );
+
+    final GatedSink    SLOW = new GatedSink();
+    final CountingSink FAST = new CountingSink(BLOCKS * BLOCK_SIZE);
+    POOL.addSink(SLOW);
+    POOL.addSink(FAST);
+
+    final Samples SAMPLES = new Samples(new ComplexNumber[BLOCK_SIZE]);
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      SAMPLES.getSamples()[i] = new ComplexNumber(1f, 1f);
+    }
+
+    POOL.onStateChange(48_000l, 9001d);
+    for (int i = 0; i < BLOCKS; i++) {
+      POOL.consume(SAMPLES);
+      Thread.sleep(1l);
+    }
+
+    assert FAST.latch.await(5, TimeUnit.SECONDS);
+    assert POOL.getDroppedBlocks() > 0l;
+
+    SLOW.gate.countDown();
+    for (int i = 0; i < 5_000 && SLOW.states < 2; i++) {
+      POOL.consume(SAMPLES);
+      Thread.sleep(1l);
+    }
+
+    assert SLOW.states     == 2;
+    assert SLOW.sampleRate == 48_000l;
+    assert FAST.states     == 1;
+    POOL.shutdown();
+  }
+
+}
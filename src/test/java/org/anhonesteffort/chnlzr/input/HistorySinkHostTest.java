@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.chnlzr.resample.SamplesSink;
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.util.ChannelSpec;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+public class HistorySinkHostTest {
+
+  private static class RecordingSink implements SamplesSink {
+    private final List<Float> samples    = new ArrayList<>();
+    private long              sampleRate = -1l;
+
+    @Override
+    public ChannelSpec getSpec() {
+      return new ChannelSpec(1337d, 9001d);
+    }
+
+    @Override
+    public void onStateChange(long sampleRate, double frequency) {
+      this.sampleRate = sampleRate;
+      samples.clear();
+    }
+
+    @Override
+    public void consume(Samples samples) {
+      for (ComplexNumber sample : samples.getSamples()) {
+        this.samples.add(sample.getInPhase());
+      }
+    }
+  }
+
+  private static int feed(HistorySinkHost host, int first, int blocks, int blockSize) {
+    for (int block = 0; block < blocks; block++) {
+      ComplexNumber[] samples = new ComplexNumber[blockSize];
+      for (int i = 0; i < blockSize; i++) {
+        samples[i] = new ComplexNumber(first + (block * blockSize) + i, 0f);
+      }
+      host.consume(new Samples(samples));
+    }
+    return first + (blocks * blockSize);
+  }
+
+  private static boolean isSequence(List<Float> samples, int first, int last) {
+    if (samples.size() != (last - first)) {
+      return false;
+    }
+    for (int i = 0; i < samples.size(); i++) {
+      if (samples.get(i) != (float) (first + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Test
+  public void testNewSinkPrimedWithRecentHistory() throws Exception {
+    final HistorySinkHost HOST = new HistorySinkHost(new SamplesHistory(100l, 1 << 20), Runnable::run);
+    final RecordingSink   SINK = new RecordingSink();
+
+    HOST.onStateChange(1000l, 851_012_500d);
+    int next = feed(HOST, 0, 30, 10);
+
+    assert HOST.addSink(SINK);
+    next = feed(HOST, next, 1, 10);
+
+    assert SINK.sampleRate == 1000l;
+    assert isSequence(SINK.samples, 200, next);
+
+    next = feed(HOST, next, 5, 10);
+    assert isSequence(SINK.samples, 200, next);
+  }
+
+  @Test
+  public void testHistoryBoundedByMemory() throws Exception {
+    final HistorySinkHost HOST = new HistorySinkHost(new SamplesHistory(1000l, 50 * 8), Runnable::run);
+    final RecordingSink   SINK = new RecordingSink();
+
+    HOST.onStateChange(1000l, 851_012_500d);
+    int next = feed(HOST, 0, 30, 10);
+
+    HOST.addSink(SINK);
+    next = feed(HOST, next, 1, 10);
+
+    assert isSequence(SINK.samples, 250, next);
+  }
+
+  @Test
+  public void testStateChangeCancelsPriming() throws Exception {
+    final Queue<Runnable> PRIMERS = new LinkedList<>();
+    final HistorySinkHost HOST    = new HistorySinkHost(new SamplesHistory(100l, 1 << 20), PRIMERS::add);
+    final RecordingSink   SINK    = new RecordingSink();
+
+    HOST.onStateChange(1000l, 851_012_500d);
+    feed(HOST, 0, 30, 10);
+
+    HOST.addSink(SINK);
+    feed(HOST, 300, 1, 10);
+    assert PRIMERS.size() == 1;
+
+    HOST.onStateChange(2000l, 852_012_500d);
+    PRIMERS.poll().run();
+    feed(HOST, 0, 2, 10);
+
+    assert SINK.sampleRate == 2000l;
+    assert isSequence(SINK.samples, 0, 20);
+  }
+
+  @Test
+  public void testRemovedSinkNoLongerFed() throws Exception {
+    final HistorySinkHost HOST = new HistorySinkHost(new SamplesHistory(100l, 1 << 20), Runnable::run);
+    final RecordingSink   SINK = new RecordingSink();
+
+    HOST.onStateChange(1000l, 851_012_500d);
+    HOST.addSink(SINK);
+    int next = feed(HOST, 0, 3, 10);
+
+    HOST.removeSink(SINK);
+    feed(HOST, next, 3, 10);
+
+    assert isSequence(SINK.samples, 0, next);
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.junit.Test;
+
+public class SamplesHistoryTest {
+
+  private static ComplexNumber[] samples(int first, int count) {
+    ComplexNumber[] samples = new ComplexNumber[count];
+    for (int i = 0; i < count; i++) {
+      samples[i] = new ComplexNumber(first + i, -(first + i));
+    }
+    return samples;
+  }
+
+  @Test
+  public void testReadWrapsAroundRing() throws Exception {
+    final SamplesHistory  HISTORY = new SamplesHistory(1000l, 16 * 8);
+    final ComplexNumber[] BUFFER  = new ComplexNumber[32];
+
+    HISTORY.onStateChange(1_000_000l, 851_012_500d);
+    HISTORY.write(samples(0, 25));
+    HISTORY.write(samples(25, 15));
+
+    assert HISTORY.getCapacity() == 16;
+    assert HISTORY.getOldest()   == 24l;
+    assert HISTORY.read(24l, BUFFER) == 16;
+
+    for (int i = 0; i < 16; i++) {
+      assert BUFFER[i].getInPhase()    ==  (24 + i);
+      assert BUFFER[i].getQuadrature() == -(24 + i);
+    }
+
+    assert HISTORY.read(40l, BUFFER) == 0;
+  }
+
+  @Test
+  public void testRetainLimitedByDuration() throws Exception {
+    final SamplesHistory HISTORY = new SamplesHistory(10l, 1 << 20);
+
+    HISTORY.onStateChange(1000l, 851_012_500d);
+    HISTORY.write(samples(0, 100));
+    assert HISTORY.getOldest() == 90l;
+
+    HISTORY.onStateChange(2000l, 851_012_500d);
+    assert HISTORY.getWritten() == 0l;
+    assert HISTORY.getOldest()  == 0l;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReadExpiredSamples() throws Exception {
+    final SamplesHistory HISTORY = new SamplesHistory(10l, 1 << 20);
+
+    HISTORY.onStateChange(1000l, 851_012_500d);
+    HISTORY.write(samples(0, 100));
+    HISTORY.read(0l, new ComplexNumber[10]);
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import org.anhonesteffort.chnlzr.metrics.SourceMetrics;
+import org.anhonesteffort.chnlzr.resample.SamplesSink;
+import org.anhonesteffort.dsp.util.ChannelSpec;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.Error;
+
+public class SourceRouterTest {
+
+  private static SamplesSourceController controller(
+      double minFreq, double maxFreq, int sinkCount, boolean requiresRetune, int error
+  ) {
+    final SamplesSourceController CONTROLLER = Mockito.mock(SamplesSourceController.class);
+
+    Mockito.when(CONTROLLER.getCapabilities()).thenReturn(ChannelSpec.fromMinMax(minFreq, maxFreq, 2_000_000l));
+    Mockito.when(CONTROLLER.getSinkCount()).thenReturn(sinkCount);
+    Mockito.when(CONTROLLER.canHost(Mockito.any())).thenReturn(true);
+    Mockito.when(CONTROLLER.requiresRetune(Mockito.any())).thenReturn(requiresRetune);
+    Mockito.when(CONTROLLER.configureSourceForSink(Mockito.any())).thenReturn(error);
+
+    return CONTROLLER;
+  }
+
+  @Test
+  public void testCapabilitiesAreUnion() throws Exception {
+    final SourceRouter ROUTER = new SourceRouter(Arrays.asList(
+        controller(100d, 200d, 0, false, 0x00), controller(300d, 400d, 0, false, 0x00)
+    ), new SourceMetrics());
+
+    assert ROUTER.getCapabilities().getMinFreq() == 100d;
+    assert ROUTER.getCapabilities().getMaxFreq() == 400d;
+  }
+
+  @Test
+  public void testAvoidsRetuningBusySource() throws Exception {
+    final SamplesSourceController BUSY  = controller(100d, 200d, 3, true,  0x00);
+    final SamplesSourceController IDLE  = controller(100d, 200d, 0, true,  0x00);
+    final SamplesSourceController TUNED = controller(100d, 200d, 2, false, 0x00);
+    final SamplesSink             SINK  = Mockito.mock(SamplesSink.class);
+
+    assert new SourceRouter(Arrays.asList(BUSY, IDLE), new SourceMetrics()).configureSourceForSink(SINK) == 0x00;
+    Mockito.verify(BUSY, Mockito.never()).configureSourceForSink(SINK);
+    Mockito.verify(IDLE, Mockito.times(1)).configureSourceForSink(SINK);
+
+    assert new SourceRouter(Arrays.asList(BUSY, TUNED), new SourceMetrics()).configureSourceForSink(SINK) == 0x00;
+    Mockito.verify(BUSY, Mockito.never()).configureSourceForSink(SINK);
+    Mockito.verify(TUNED, Mockito.times(1)).configureSourceForSink(SINK);
+  }
+
+  @Test
+  public void testFallsBackAndReleasesFromPlacedSource() throws Exception {
+    final SamplesSourceController FULL   = controller(100d, 200d, 0, false, Error.ERROR_PROCESSING_UNAVAILABLE);
+    final SamplesSourceController SPARE  = controller(100d, 200d, 1, false, 0x00);
+    final SamplesSink             SINK   = Mockito.mock(SamplesSink.class);
+    final SourceMetrics           STATS  = new SourceMetrics();
+    final SourceRouter            ROUTER = new SourceRouter(Arrays.asList(FULL, SPARE), STATS);
+
+    assert ROUTER.configureSourceForSink(SINK) == 0x00;
+    assert STATS.getChannelRequests()          == 1l;
+
+    ROUTER.releaseSink(SINK);
+    Mockito.verify(FULL,  Mockito.never()).releaseSink(SINK);
+    Mockito.verify(SPARE, Mockito.times(1)).releaseSink(SINK);
+  }
+
+}
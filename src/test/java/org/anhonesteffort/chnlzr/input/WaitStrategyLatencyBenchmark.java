@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.input;
+
+import com.lmax.disruptor.FatalExceptionHandler;
+import org.anhonesteffort.chnlzr.resample.BlockSamplesSink;
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.util.ChannelSpec;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a mock source paced like a 2.4Msps radio through a one worker pool and
+ * reports the time from publish to sink for each wait strategy, run with
+ * java -cp target/test-classes:target/classes:... WaitStrategyLatencyBenchmark
+ */
+public class WaitStrategyLatencyBenchmark {
+
+  private static final int  BLOCK_SIZE    = 2_000;
+  private static final long SAMPLE_RATE   = 2_400_000l;
+  private static final long BLOCK_PERIOD  = (1_000_000_000l * BLOCK_SIZE) / SAMPLE_RATE;
+  private static final int  WARMUP_BLOCKS = 2_000;
+  private static final int  BLOCKS        = 10_000;
+
+  private static class LatencySink implements BlockSamplesSink {
+    private final long[]         publishedAt;
+    private final long[]         latencies;
+    private final CountDownLatch done;
+    private int block = 0;
+
+    public LatencySink(long[] publishedAt) {
+      this.publishedAt = publishedAt;
+      latencies        = new long[publishedAt.length];
+      done             = new CountDownLatch(1);
+    }
+
+    @Override
+    public ChannelSpec getSpec() {
+      return new ChannelSpec(1337d, 9001d);
+    }
+
+    @Override
+    public void onStateChange(long sampleRate, double frequency) { }
+
+    @Override
+    public void consume(Samples samples) { }
+
+    @Override
+    public void consume(float[] samples, int count) {
+      latencies[block] = System.nanoTime() - publishedAt[block];
+      if (++block == latencies.length) {
+        done.countDown();
+      }
+    }
+  }
+
+  private static long[] run(SourceWaitStrategy strategy) throws InterruptedException {
+    final long[]        publishedAt = new long[WARMUP_BLOCKS + BLOCKS];
+    final LatencySink   sink        = new LatencySink(publishedAt);
+    final DspWorkerPool pool        = new DspWorkerPool(
+        1, 64, new int[0], strategy::create, new FatalExceptionHandler()
+    );
+
+    final Samples samples = new Samples(new ComplexNumber[BLOCK_SIZE]);
+    Arrays.fill(samples.getSamples(), new ComplexNumber(1f, 1f));
+
+    pool.addSink(sink);
+    pool.onStateChange(SAMPLE_RATE, 0d);
+
+    long nextBlock = System.nanoTime();
+    for (int i = 0; i < publishedAt.length; i++) {
+      while (System.nanoTime() < nextBlock) {
+        LockSupport.parkNanos(10_000l);
+      }
+
+      publishedAt[i] = System.nanoTime();
+      pool.consume(samples);
+      nextBlock += BLOCK_PERIOD;
+    }
+
+    sink.done.await(30, TimeUnit.SECONDS);
+    pool.shutdown();
+
+    long[] measured = Arrays.copyOfRange(sink.latencies, WARMUP_BLOCKS, sink.latencies.length);
+    Arrays.sort(measured);
+    return measured;
+  }
+
+  private static double micros(long[] sorted, double percentile) {
+    return sorted[(int) Math.min(sorted.length - 1, Math.floor(sorted.length * percentile))] / 1_000d;
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.out.println(String.format("%-16s %10s %10s %10s %10s", "strategy", "p50 us", "p99 us", "p99.9 us", "max us"));
+
+    for (SourceWaitStrategy strategy : SourceWaitStrategy.values()) {
+      long[] latencies = run(strategy);
+      System.out.println(String.format(
+          "%-16s %10.1f %10.1f %10.1f %10.1f", strategy,
+          micros(latencies, 0.5d), micros(latencies, 0.99d), micros(latencies, 0.999d), micros(latencies, 1d)
+      ));
+    }
+  }
+
+}
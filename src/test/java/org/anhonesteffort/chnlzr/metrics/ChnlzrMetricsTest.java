@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.metrics;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.anhonesteffort.dsp.util.ChannelSpec;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class ChnlzrMetricsTest {
+
+  @Test
+  public void testPrometheusFormat() throws Exception {
+    final ChnlzrMetrics  METRICS = new ChnlzrMetrics();
+    final ChannelMetrics CHANNEL = METRICS.channel(new ChannelSpec(9001d, 1337d, 48_000l));
+    final ClientMetrics  CLIENT  = METRICS.client("/127.0.0.1:1234");
+
+    METRICS.source().onChannelRequest(0x00);
+    METRICS.source().onChannelRequest(0x02);
+    CHANNEL.onBlock(2000, 1500l);
+    CHANNEL.onBlock(2000, 3000l);
+    CLIENT.onWritten();
+    CLIENT.onDropped();
+
+    final String TEXT = METRICS.toPrometheus();
+
+    assert TEXT.contains("chnlzr_channel_requests_total 2\n");
+    assert TEXT.contains("chnlzr_channel_errors_total{code=\"2\"} 1\n");
+    assert TEXT.contains("chnlzr_channel_samples_consumed_total{frequency=\"9001\",bandwidth=\"1337\",rate=\"48000\"} 4000\n");
+    assert TEXT.contains("chnlzr_channel_block_seconds_bucket{frequency=\"9001\",bandwidth=\"1337\",rate=\"48000\",le=\"2.048E-6\"} 1\n");
+    assert TEXT.contains("chnlzr_channel_block_seconds_count{frequency=\"9001\",bandwidth=\"1337\",rate=\"48000\"} 2\n");
+    assert TEXT.contains("chnlzr_client_messages_dropped_total{client=\"/127.0.0.1:1234\"} 1\n");
+
+    METRICS.remove(CHANNEL);
+    METRICS.remove(CLIENT);
+
+    assert !METRICS.toPrometheus().contains("9001");
+  }
+
+  @Test
+  public void testHistogramQuantile() throws Exception {
+    final LatencyHistogram HISTOGRAM = new LatencyHistogram();
+
+    for (int i = 0; i < 99; i++) {
+      HISTOGRAM.record(1_000l);
+    }
+    HISTOGRAM.record(1_000_000l);
+
+    assert HISTOGRAM.getCount()            == 100l;
+    assert HISTOGRAM.getQuantile(0.5d)     == 1_024l;
+    assert HISTOGRAM.getQuantile(0.99d)    == 1_024l;
+    assert HISTOGRAM.getQuantile(1d)       == 1_048_576l;
+    assert HISTOGRAM.getUpperBound(HISTOGRAM.getBucketCount() - 1) == Long.MAX_VALUE;
+  }
+
+  @Test
+  public void testHttpEndpoint() throws Exception {
+    final ChnlzrMetrics   METRICS = new ChnlzrMetrics();
+    final EmbeddedChannel CHANNEL = new EmbeddedChannel(new MetricsHttpHandler(METRICS));
+
+    CHANNEL.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/metrics"));
+    final FullHttpResponse METRICS_RESPONSE = CHANNEL.readOutbound();
+
+    assert METRICS_RESPONSE.status().equals(HttpResponseStatus.OK);
+    assert METRICS_RESPONSE.content().toString(StandardCharsets.UTF_8).startsWith("# HELP");
+    METRICS_RESPONSE.release();
+
+    final EmbeddedChannel MISSING = new EmbeddedChannel(new MetricsHttpHandler(METRICS));
+    MISSING.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/"));
+    final FullHttpResponse MISSING_RESPONSE = MISSING.readOutbound();
+
+    assert MISSING_RESPONSE.status().equals(HttpResponseStatus.NOT_FOUND);
+    MISSING_RESPONSE.release();
+  }
+
+}
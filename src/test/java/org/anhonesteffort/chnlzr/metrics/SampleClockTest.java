@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SampleClockTest {
+
+  @Test
+  public void testTimestampsAdvanceBySampleCount() throws Exception {
+    final SampleClock CLOCK = new SampleClock();
+
+    CLOCK.onStateChange(1_000_000l);
+    CLOCK.onSourceBlock(1000);
+    final long FIRST = CLOCK.getBlockTimestamp();
+
+    CLOCK.onSourceBlock(1000);
+    CLOCK.onSourceBlock(1000);
+
+    assert CLOCK.getBlockTimestamp() - FIRST == TimeUnit.MILLISECONDS.toNanos(2l);
+    assert Math.abs(FIRST - TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis())) < TimeUnit.SECONDS.toNanos(1l);
+    assert CLOCK.getSourceGaps() == 0l;
+  }
+
+  @Test
+  public void testLateBlockCountedAsGap() throws Exception {
+    final LongAdder   GAPS  = new LongAdder();
+    final SampleClock CLOCK = new SampleClock(new LatencyHistogram(), GAPS);
+
+    CLOCK.onStateChange(1_000_000l);
+    CLOCK.onSourceBlock(1000);
+    final long FIRST = CLOCK.getBlockTimestamp();
+
+    Thread.sleep(400l);
+    CLOCK.onSourceBlock(1000);
+
+    assert GAPS.sum() == 1l;
+    assert CLOCK.getBlockTimestamp() - FIRST >= TimeUnit.MILLISECONDS.toNanos(400l);
+  }
+
+  @Test
+  public void testIngestToWireRecorded() throws Exception {
+    final LatencyHistogram HISTOGRAM = new LatencyHistogram();
+    final SampleClock      CLOCK     = new SampleClock(HISTOGRAM, new LongAdder());
+
+    CLOCK.onStateChange(48_000l);
+    CLOCK.onSourceBlock(100);
+    CLOCK.onWire(CLOCK.getBlockNanos());
+
+    assert HISTOGRAM.getCount() == 1l;
+  }
+
+}
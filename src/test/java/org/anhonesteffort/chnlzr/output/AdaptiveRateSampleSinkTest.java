@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import org.anhonesteffort.chnlzr.metrics.ClientMetrics;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+public class AdaptiveRateSampleSinkTest {
+
+  private static class RecordingSink implements SampleBlockSink {
+    private final List<Long> states   = new LinkedList<>();
+    private int              consumed = 0;
+    private float            lastInPhase;
+    private float            peak     = 0f;
+
+    @Override
+    public void onStateChange(long sampleRate, double frequency) {
+      states.add(sampleRate);
+    }
+
+    @Override
+    public void consume(ComplexNumber sample) {
+      consumed++;
+    }
+
+    @Override
+    public void consume(float[] samples, int count) {
+      consumed   += count;
+      lastInPhase = samples[(count - 1) << 1];
+      for (int i = 0; i < count; i++) {
+        peak = Math.max(peak, (float) Math.hypot(samples[(i << 1)], samples[(i << 1) + 1]));
+      }
+    }
+  }
+
+  private static float[] block(int count, float inPhase) {
+    final float[] BLOCK = new float[count << 1];
+    for (int i = 0; i < count; i++) {
+      BLOCK[(i << 1)] = inPhase;
+    }
+    return BLOCK;
+  }
+
+  private static ClientWriteQueue queue(ClientMetrics metrics) {
+    final ClientWriteQueue QUEUE = Mockito.mock(ClientWriteQueue.class);
+    Mockito.when(QUEUE.getMetrics()).thenReturn(metrics);
+    Mockito.when(QUEUE.getMaxQueueSize()).thenReturn(8);
+    return QUEUE;
+  }
+
+  @Test
+  public void testDegradesWhileBehindAndRestores() throws Exception {
+    final ClientMetrics          METRICS = new ClientMetrics("test");
+    final ClientWriteQueue       QUEUE   = queue(METRICS);
+    final RecordingSink          NEXT    = new RecordingSink();
+    final AdaptiveRateSampleSink SINK    = new AdaptiveRateSampleSink(QUEUE, NEXT, 2, 0l);
+
+    Mockito.when(QUEUE.getQueueSize()).thenReturn(8);
+    SINK.onStateChange(8000l, 0d);
+    SINK.consume(block(16, 0.5f), 16);
+
+    assert SINK.getRateDivisor()    == 2;
+    assert NEXT.consumed            == 8;
+    assert METRICS.getRateDivisor() == 2l;
+    assert Math.abs(NEXT.lastInPhase - 0.5f) < 0.001f;
+
+    SINK.consume(block(16, 0.5f), 16);
+    SINK.consume(block(16, 0.5f), 16);
+
+    assert SINK.getRateDivisor() == 4;
+    assert NEXT.states.equals(Arrays.asList(8000l, 4000l, 2000l));
+
+    Mockito.when(QUEUE.getQueueSize()).thenReturn(0);
+    for (int i = 0; i < 8; i++) {
+      SINK.consume(block(16, 0.5f), 16);
+    }
+
+    assert SINK.getRateDivisor()                    == 2;
+    assert NEXT.states.get(NEXT.states.size() - 1) == 4000l;
+  }
+
+  @Test
+  public void testDropsAtSteadyRateKeepState() throws Exception {
+    final ClientMetrics          METRICS = new ClientMetrics("test");
+    final ClientWriteQueue       QUEUE   = queue(METRICS);
+    final RecordingSink          NEXT    = new RecordingSink();
+    final AdaptiveRateSampleSink SINK    = new AdaptiveRateSampleSink(QUEUE, NEXT, 1, 0l);
+
+    SINK.onStateChange(8000l, 0d);
+    SINK.consume(block(16, 0.5f), 16);
+
+    assert NEXT.states.size()    == 1;
+    assert SINK.getRateDivisor() == 1;
+
+    METRICS.onDropped();
+    SINK.consume(block(16, 0.5f), 16);
+    METRICS.onDropped();
+    SINK.consume(block(16, 0.5f), 16);
+    METRICS.onDropped();
+    SINK.consume(block(16, 0.5f), 16);
+
+    assert SINK.getRateDivisor() == 2;
+    assert NEXT.consumed         == 16 + 8 + 8 + 8;
+    assert NEXT.states.equals(Arrays.asList(8000l, 4000l));
+  }
+
+  @Test
+  public void testDecimationRejectsAliases() throws Exception {
+    final ClientMetrics          METRICS = new ClientMetrics("test");
+    final ClientWriteQueue       QUEUE   = queue(METRICS);
+    final RecordingSink          NEXT    = new RecordingSink();
+    final AdaptiveRateSampleSink SINK    = new AdaptiveRateSampleSink(QUEUE, NEXT, 1, 0l);
+    final float[]                TONE    = new float[64 << 1];
+
+    Mockito.when(QUEUE.getQueueSize()).thenReturn(8);
+    SINK.onStateChange(8000l, 0d);
+    SINK.consume(block(16, 0f), 16);
+    assert SINK.getRateDivisor() == 2;
+
+    for (int block = 0; block < 8; block++) {
+      for (int i = 0; i < 64; i++) {
+        double phase = 2d * Math.PI * 3000d * ((block * 64) + i) / 8000d;
+        TONE[(i << 1)]     = (float) Math.cos(phase);
+        TONE[(i << 1) + 1] = (float) Math.sin(phase);
+      }
+      if (block == 1) {
+        NEXT.peak = 0f;
+      }
+      SINK.consume(TONE, 64);
+    }
+
+    assert NEXT.peak < 0.05f;
+  }
+
+}
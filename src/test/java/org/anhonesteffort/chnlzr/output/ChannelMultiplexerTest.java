@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.anhonesteffort.chnlzr.metrics.ClientMetrics;
+import org.capnproto.MessageBuilder;
+import org.junit.Test;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
+
+public class ChannelMultiplexerTest {
+
+  private static final ProtoFactory PROTO = new ProtoFactory();
+
+  private static ChannelHandlerContext contextFor(EmbeddedChannel channel) {
+    channel.pipeline().addLast("handler", new ChannelInboundHandlerAdapter());
+    return channel.pipeline().context("handler");
+  }
+
+  private static String readOutbound(EmbeddedChannel channel) {
+    StringBuilder  written = new StringBuilder();
+    MessageBuilder message;
+
+    while ((message = channel.readOutbound()) != null) {
+      BaseMessage.Reader reader = message.getRoot(BaseMessage.factory).asReader();
+      switch (reader.getType()) {
+        case CHANNEL_STATE:
+          written.append("S").append((long) reader.getChannelState().getCenterFrequency()).append(" ");
+          break;
+
+        case SAMPLES:
+          written.append(reader.getSamples().getSamples().size() == 8 ? "A " : "B ");
+          break;
+
+        default:
+          written.append("? ");
+      }
+    }
+
+    return written.toString().trim();
+  }
+
+  @Test
+  public void testChannelsDrainedRoundRobinWithTags() throws Exception {
+    final EmbeddedChannel    CHANNEL     = new EmbeddedChannel();
+    final ChannelMultiplexer MULTIPLEXER = new ChannelMultiplexer(contextFor(CHANNEL));
+    final ClientWriteQueue   CHANNEL_A   = MULTIPLEXER.open(100d, 16, new ClientMetrics("a"));
+    final ClientWriteQueue   CHANNEL_B   = MULTIPLEXER.open(200d, 16, new ClientMetrics("b"));
+
+    CHANNEL_A.writeState(48_000l);
+    for (int i = 0; i < 7; i++) {
+      CHANNEL_A.writeOrQueue(PROTO.samples(1));
+    }
+
+    CHANNEL_B.writeState(24_000l);
+    for (int i = 0; i < 2; i++) {
+      CHANNEL_B.writeOrQueue(PROTO.samples(2));
+    }
+
+    assert CHANNEL.readOutbound() == null;
+    CHANNEL.runPendingTasks();
+
+    assert readOutbound(CHANNEL).equals("S100 A A A S200 B B S100 A A A A");
+  }
+
+  @Test
+  public void testClosedChannelDropsMessages() throws Exception {
+    final EmbeddedChannel      CHANNEL     = new EmbeddedChannel();
+    final ChannelMultiplexer   MULTIPLEXER = new ChannelMultiplexer(contextFor(CHANNEL));
+    final ClientMetrics        METRICS     = new ClientMetrics("a");
+    final ClientWriteQueue     QUEUE       = MULTIPLEXER.open(100d, 16, METRICS);
+    final SamplesMessagePool   POOL        = new SamplesMessagePool(100, 4);
+    final PooledSamplesMessage MESSAGE     = POOL.acquire();
+
+    QUEUE.writeState(48_000l);
+    MULTIPLEXER.close(QUEUE);
+    QUEUE.writeOrQueue(MESSAGE);
+    CHANNEL.runPendingTasks();
+
+    assert MULTIPLEXER.getChannelCount() == 0;
+    assert CHANNEL.readOutbound() == null;
+    assert METRICS.getMessagesDropped() == 2l;
+    assert POOL.acquire() == MESSAGE;
+  }
+
+  @Test
+  public void testStateChangesBypassQueueLimit() throws Exception {
+    final EmbeddedChannel    CHANNEL     = new EmbeddedChannel();
+    final ChannelMultiplexer MULTIPLEXER = new ChannelMultiplexer(contextFor(CHANNEL));
+    final ClientMetrics      METRICS     = new ClientMetrics("a");
+    final ClientWriteQueue   CHANNEL_A   = MULTIPLEXER.open(100d, 2, METRICS);
+
+    CHANNEL_A.writeOrQueue(PROTO.samples(1));
+    CHANNEL_A.writeOrQueue(PROTO.samples(1));
+    CHANNEL_A.writeState(48_000l);
+    CHANNEL_A.writeOrQueue(PROTO.samples(1));
+    CHANNEL.runPendingTasks();
+
+    assert METRICS.getMessagesDropped() == 1l;
+    assert readOutbound(CHANNEL).equals("S100 A A S100");
+  }
+
+}
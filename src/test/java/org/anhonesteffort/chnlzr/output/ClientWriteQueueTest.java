@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.capnproto.MessageBuilder;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
+
+public class ClientWriteQueueTest {
+
+  private static ChannelHandlerContext contextFor(EmbeddedChannel channel) {
+    channel.pipeline().addLast("handler", new ChannelInboundHandlerAdapter());
+    return channel.pipeline().context("handler");
+  }
+
+  @Test
+  public void testWrittenMessageReturnedToPool() throws Exception {
+    final EmbeddedChannel    CHANNEL = new EmbeddedChannel();
+    final ClientWriteQueue   QUEUE   = new ClientWriteQueue(contextFor(CHANNEL), 4);
+    final SamplesMessagePool POOL    = new SamplesMessagePool(100, 4);
+
+    final PooledSamplesMessage MESSAGE = POOL.acquire();
+    MESSAGE.getSamples().putFloat(1337f);
+
+    QUEUE.writeOrQueue(MESSAGE);
+
+    final MessageBuilder WRITTEN = CHANNEL.readOutbound();
+    assert WRITTEN == MESSAGE.getMessage();
+
+    final PooledSamplesMessage RECYCLED = POOL.acquire();
+    assert RECYCLED == MESSAGE;
+    assert RECYCLED.getSamples().position() == 0;
+  }
+
+  @Test
+  public void testDroppedMessageReturnedToPool() throws Exception {
+    final EmbeddedChannel    CHANNEL = new EmbeddedChannel();
+    final ClientWriteQueue   QUEUE   = new ClientWriteQueue(contextFor(CHANNEL), 0);
+    final SamplesMessagePool POOL    = new SamplesMessagePool(100, 4);
+
+    CHANNEL.config().setWriteBufferLowWaterMark(16);
+    CHANNEL.config().setWriteBufferHighWaterMark(32);
+    CHANNEL.write(Unpooled.wrappedBuffer(new byte[64]));
+
+    assert !CHANNEL.isWritable();
+
+    final PooledSamplesMessage MESSAGE = POOL.acquire();
+    QUEUE.writeOrQueue(MESSAGE);
+
+    assert POOL.acquire() == MESSAGE;
+  }
+
+  @Test
+  public void testStateQueuedPastLimit() throws Exception {
+    final EmbeddedChannel  CHANNEL = new EmbeddedChannel();
+    final ClientWriteQueue QUEUE   = new ClientWriteQueue(contextFor(CHANNEL), 0);
+
+    CHANNEL.config().setWriteBufferLowWaterMark(16);
+    CHANNEL.config().setWriteBufferHighWaterMark(32);
+    CHANNEL.write(Unpooled.wrappedBuffer(new byte[64]));
+
+    assert !CHANNEL.isWritable();
+
+    QUEUE.writeState(48_000l);
+
+    assert QUEUE.getQueueSize()                    == 1;
+    assert QUEUE.getMetrics().getMessagesDropped() == 0l;
+  }
+
+  @Test
+  public void testStateChangeDiscardsPartialMessage() throws Exception {
+    final EmbeddedChannel   CHANNEL = new EmbeddedChannel();
+    final ClientWriteQueue  QUEUE   = new ClientWriteQueue(contextFor(CHANNEL), 4);
+    final NetworkSampleSink SINK    = new NetworkSampleSink(QUEUE, 4);
+
+    SINK.onStateChange(48_000l, 0d);
+    SINK.consume(new float[] { 1f, 1f, 1f, 1f }, 2);
+    SINK.onStateChange(24_000l, 0d);
+    SINK.consume(new float[] { 2f, 2f, 2f, 2f, 2f, 2f, 2f, 2f }, 4);
+
+    assert CHANNEL.outboundMessages().size() == 3;
+    CHANNEL.readOutbound();
+    CHANNEL.readOutbound();
+
+    final MessageBuilder SAMPLES = CHANNEL.readOutbound();
+    final ByteBuffer     BUFFER  = SAMPLES.getRoot(BaseMessage.factory).getSamples().getSamples().asByteBuffer();
+    while (BUFFER.hasRemaining()) {
+      assert BUFFER.getFloat() == 2f;
+    }
+  }
+
+}
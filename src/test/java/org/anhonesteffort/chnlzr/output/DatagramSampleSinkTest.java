@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+public class DatagramSampleSinkTest {
+
+  private static final int MTU = 1500;
+
+  @Test
+  public void testDatagramsFitMtu() throws Exception {
+    for (SampleFormat format : SampleFormat.values()) {
+      final int SAMPLES = DatagramSampleSink.samplesPerDatagram(format, MTU);
+      final int LENGTH  = 20 + 8 + DatagramSampleSink.HEADER_LENGTH + format.getEncodedLength(SAMPLES);
+
+      assert LENGTH <= MTU;
+      assert LENGTH + (format.getEncodedLength(SAMPLES + 1) - format.getEncodedLength(SAMPLES)) > MTU;
+    }
+  }
+
+  @Test
+  public void testSequencedDatagrams() throws Exception {
+    try (DatagramChannel RECEIVER = DatagramChannel.open();
+         DatagramChannel SENDER   = DatagramChannel.open()) {
+
+      RECEIVER.bind(new InetSocketAddress("127.0.0.1", 0));
+      SENDER.configureBlocking(false);
+
+      final DatagramSampleSink SINK = new DatagramSampleSink(
+          SENDER, RECEIVER.getLocalAddress(), 851_012_500d, SampleFormat.INT16, MTU
+      );
+      final int     PER_DATAGRAM = SINK.getSamplesPerDatagram();
+      final float[] SAMPLES      = new float[(PER_DATAGRAM * 5 / 2) << 1];
+
+      SINK.onStateChange(48_000l, 0d);
+      SINK.consume(SAMPLES, SAMPLES.length >> 1);
+
+      long firstTimestamp = 0l;
+      for (long sequence = 0l; sequence < 2l; sequence++) {
+        final ByteBuffer DATAGRAM = ByteBuffer.allocate(MTU);
+        RECEIVER.receive(DATAGRAM);
+        DATAGRAM.flip();
+
+        assert DATAGRAM.remaining() == DatagramSampleSink.HEADER_LENGTH + SampleFormat.INT16.getEncodedLength(PER_DATAGRAM);
+        assert DATAGRAM.getInt()    == DatagramSampleSink.MAGIC;
+        assert DATAGRAM.getLong()   == sequence;
+        assert DATAGRAM.getLong()   == sequence * PER_DATAGRAM;
+
+        final long TIMESTAMP = DATAGRAM.getLong();
+        if (sequence == 0l) {
+          firstTimestamp = TIMESTAMP;
+        } else {
+          assert TIMESTAMP - firstTimestamp == (long) (PER_DATAGRAM * 1e9d / 48_000d);
+        }
+
+        assert DATAGRAM.getDouble() == 851_012_500d;
+        assert DATAGRAM.getLong()   == 48_000l;
+        assert DATAGRAM.get()       == SampleFormat.INT16.ordinal();
+        assert DATAGRAM.getShort()  == PER_DATAGRAM;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.anhonesteffort.chnlzr.capnp.BaseMessageEncoder;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+public class DirectNetworkSampleSinkTest {
+
+  private static ChannelHandlerContext contextFor(EmbeddedChannel channel) {
+    channel.pipeline().addLast("encoder", BaseMessageEncoder.INSTANCE);
+    channel.pipeline().addLast("handler", new ChannelInboundHandlerAdapter());
+    return channel.pipeline().context("handler");
+  }
+
+  private static byte[] readAll(EmbeddedChannel channel) {
+    ByteArrayOutputStream written = new ByteArrayOutputStream();
+    ByteBuf               buffer;
+
+    while ((buffer = channel.readOutbound()) != null) {
+      byte[] bytes = new byte[buffer.readableBytes()];
+      buffer.readBytes(bytes);
+      written.write(bytes, 0, bytes.length);
+      buffer.release();
+    }
+
+    return written.toByteArray();
+  }
+
+  private static void feed(SampleBlockSink sink, float[] samples) {
+    sink.onStateChange(48_000l, 0d);
+    sink.consume(samples, samples.length / 4);
+    sink.consume(Arrays.copyOfRange(samples, samples.length / 2, samples.length), samples.length / 4);
+  }
+
+  @Test
+  public void testFramesMatchEncodedMessages() throws Exception {
+    final int                            SAMPLES_PER_MESSAGE = 50;
+    final Optional<SamplesFrameTemplate> TEMPLATE            =
+        SamplesFrameTemplate.forEncoder(BaseMessageEncoder.INSTANCE, SAMPLES_PER_MESSAGE);
+
+    assert TEMPLATE.isPresent();
+
+    final float[] SAMPLES = new float[SAMPLES_PER_MESSAGE * 2 * 5];
+    for (int i = 0; i < SAMPLES.length; i++) {
+      SAMPLES[i] = (float) Math.sin(i * 0.1d);
+    }
+
+    final EmbeddedChannel POOLED_CHANNEL = new EmbeddedChannel();
+    final EmbeddedChannel DIRECT_CHANNEL = new EmbeddedChannel();
+
+    feed(new NetworkSampleSink(new ClientWriteQueue(contextFor(POOLED_CHANNEL), 16), SAMPLES_PER_MESSAGE), SAMPLES);
+    feed(new DirectNetworkSampleSink(new ClientWriteQueue(contextFor(DIRECT_CHANNEL), 16), TEMPLATE.get()), SAMPLES);
+
+    final byte[] POOLED = readAll(POOLED_CHANNEL);
+    final byte[] DIRECT = readAll(DIRECT_CHANNEL);
+
+    assert POOLED.length > SAMPLES.length * 4;
+    assert Arrays.equals(POOLED, DIRECT);
+  }
+
+  @Test
+  public void testCloseReleasesPartialFrame() throws Exception {
+    final List<ByteBuf>        FRAMES    = new ArrayList<>();
+    final ByteBufAllocator     ALLOCATOR = Mockito.mock(ByteBufAllocator.class);
+    final ClientWriteQueue     QUEUE     = Mockito.mock(ClientWriteQueue.class);
+    final SamplesFrameTemplate TEMPLATE  =
+        SamplesFrameTemplate.forEncoder(BaseMessageEncoder.INSTANCE, 50).get();
+
+    Mockito.when(ALLOCATOR.directBuffer(Mockito.anyInt(), Mockito.anyInt())).thenAnswer(invocation -> {
+      final ByteBuf FRAME = Unpooled.directBuffer(TEMPLATE.getFrameLength(), TEMPLATE.getFrameLength());
+      FRAMES.add(FRAME);
+      return FRAME;
+    });
+    Mockito.when(QUEUE.alloc()).thenReturn(ALLOCATOR);
+
+    final DirectNetworkSampleSink SINK = new DirectNetworkSampleSink(QUEUE, TEMPLATE);
+    SINK.onStateChange(48_000l, 0d);
+    SINK.consume(new float[20], 10);
+
+    assert FRAMES.size()          == 1;
+    assert FRAMES.get(0).refCnt() == 1;
+
+    SINK.close();
+    SINK.consume(new float[20], 10);
+
+    assert FRAMES.size()          == 1;
+    assert FRAMES.get(0).refCnt() == 0;
+  }
+
+}
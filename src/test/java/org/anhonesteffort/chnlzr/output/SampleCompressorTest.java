@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.capnproto.MessageBuilder;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
+
+public class SampleCompressorTest {
+
+  private static final int SAMPLE_COUNT = 500;
+
+  private static ByteBuffer payload(SampleFormat format) {
+    final float[]    SAMPLES = new float[SAMPLE_COUNT * 2];
+    final ByteBuffer PAYLOAD = ByteBuffer.allocate(format.getEncodedLength(SAMPLE_COUNT));
+
+    for (int i = 0; i < SAMPLE_COUNT; i++) {
+      SAMPLES[(i << 1)]     = (float) Math.cos(i * 0.05d);
+      SAMPLES[(i << 1) + 1] = (float) Math.sin(i * 0.05d);
+    }
+
+    new SampleEncoder(format, SAMPLE_COUNT).encode(SAMPLES, SAMPLE_COUNT, PAYLOAD);
+    PAYLOAD.flip();
+    return PAYLOAD;
+  }
+
+  private static byte[] bytes(ByteBuffer buffer) {
+    final byte[] BYTES = new byte[buffer.remaining()];
+    buffer.duplicate().get(BYTES);
+    return BYTES;
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    for (SampleFormat format : SampleFormat.values()) {
+      for (SampleCompression compression : SampleCompression.values()) {
+        final SampleCompressor COMPRESSOR = new SampleCompressor(compression, format);
+        final ByteBuffer       PAYLOAD    = payload(format);
+        final ByteBuffer       PACKED     = COMPRESSOR.compress(PAYLOAD);
+
+        assert PAYLOAD.remaining() == format.getEncodedLength(SAMPLE_COUNT);
+        assert Arrays.equals(COMPRESSOR.decompress(PACKED), bytes(PAYLOAD));
+      }
+    }
+  }
+
+  @Test
+  public void testDeltaHelpsSmoothInt16() throws Exception {
+    final ByteBuffer PAYLOAD = payload(SampleFormat.INT16);
+    final int        DEFLATE = new SampleCompressor(SampleCompression.DEFLATE, SampleFormat.INT16).compress(PAYLOAD).remaining();
+    final int        DELTA   = new SampleCompressor(SampleCompression.DELTA_DEFLATE, SampleFormat.INT16).compress(PAYLOAD).remaining();
+
+    assert DELTA < DEFLATE;
+    assert DELTA   < PAYLOAD.remaining();
+  }
+
+  @Test
+  public void testEncoderOnlyCompressesSamples() throws Exception {
+    final EmbeddedChannel    CHANNEL = new EmbeddedChannel(
+        new SampleCompressionEncoder(SampleCompression.DELTA_DEFLATE, SampleFormat.FLOAT32)
+    );
+    final ProtoFactory       PROTO   = new ProtoFactory();
+    final SamplesMessagePool POOL    = new SamplesMessagePool(SAMPLE_COUNT, 1);
+    final MessageBuilder     STATE   = PROTO.state(1000l, 0d);
+    final ByteBuffer         PAYLOAD = payload(SampleFormat.FLOAT32);
+
+    final PooledSamplesMessage SAMPLES = POOL.acquire();
+    SAMPLES.getSamples().put(PAYLOAD.duplicate());
+
+    CHANNEL.writeOutbound(STATE, SAMPLES.getMessage());
+
+    assert CHANNEL.readOutbound() == STATE;
+
+    final MessageBuilder      WRITTEN = CHANNEL.readOutbound();
+    final BaseMessage.Builder ROOT    = WRITTEN.getRoot(BaseMessage.factory);
+    final ByteBuffer          PACKED  = ROOT.getSamples().getSamples().asByteBuffer();
+
+    assert ROOT.getType() == BaseMessage.Type.SAMPLES;
+    assert PACKED.remaining() < PAYLOAD.remaining();
+    assert Arrays.equals(
+        new SampleCompressor(SampleCompression.DELTA_DEFLATE, SampleFormat.FLOAT32).decompress(PACKED), bytes(PAYLOAD)
+    );
+  }
+
+  @Test(expected = DataFormatException.class)
+  public void testTruncatedPayloadRejected() throws Exception {
+    final SampleCompressor COMPRESSOR = new SampleCompressor(SampleCompression.DEFLATE, SampleFormat.FLOAT32);
+    final ByteBuffer       PACKED     = COMPRESSOR.compress(payload(SampleFormat.FLOAT32));
+
+    PACKED.limit(PACKED.limit() / 2);
+    COMPRESSOR.decompress(PACKED);
+  }
+
+  @Test(expected = DataFormatException.class)
+  public void testOversizedLengthRejected() throws Exception {
+    final SampleCompressor COMPRESSOR = new SampleCompressor(SampleCompression.DEFLATE, SampleFormat.FLOAT32, 1024);
+    final ByteBuffer       PACKED     = ByteBuffer.allocate(8);
+
+    PACKED.putInt(0, Integer.MAX_VALUE);
+    COMPRESSOR.decompress(PACKED);
+  }
+
+  @Test
+  public void testEncoderReusesMessages() throws Exception {
+    final EmbeddedChannel    CHANNEL = new EmbeddedChannel(
+        new SampleCompressionEncoder(SampleCompression.DEFLATE, SampleFormat.FLOAT32)
+    );
+    final SamplesMessagePool POOL    = new SamplesMessagePool(SAMPLE_COUNT, 1);
+
+    final PooledSamplesMessage SAMPLES = POOL.acquire();
+    SAMPLES.getSamples().put(payload(SampleFormat.FLOAT32));
+
+    CHANNEL.writeOutbound(SAMPLES.getMessage());
+    final MessageBuilder FIRST = CHANNEL.readOutbound();
+    CHANNEL.writeOutbound(SAMPLES.getMessage());
+    final MessageBuilder SECOND = CHANNEL.readOutbound();
+
+    assert FIRST == SECOND;
+    assert Arrays.equals(
+        new SampleCompressor(SampleCompression.DEFLATE, SampleFormat.FLOAT32).decompress(
+            SECOND.getRoot(BaseMessage.factory).getSamples().getSamples().asByteBuffer()
+        ), bytes(payload(SampleFormat.FLOAT32))
+    );
+  }
+
+}
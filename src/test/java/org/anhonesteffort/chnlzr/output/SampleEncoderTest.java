@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.output;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class SampleEncoderTest {
+
+  private static final int SAMPLE_COUNT = 100;
+
+  private static float[] samples() {
+    final float[] SAMPLES = new float[SAMPLE_COUNT * 2];
+    for (int i = 0; i < SAMPLES.length; i++) {
+      SAMPLES[i] = (float) (0.8d * Math.sin(i * 0.1d) * ((i < SAMPLE_COUNT) ? 1d : 0.01d));
+    }
+    return SAMPLES;
+  }
+
+  private static ByteBuffer encode(SampleFormat format, float[] samples) {
+    final ByteBuffer OUT = ByteBuffer.allocate(format.getEncodedLength(SAMPLE_COUNT));
+
+    new SampleEncoder(format, SAMPLE_COUNT).encode(samples, SAMPLE_COUNT, OUT);
+    assert OUT.remaining() == 0;
+
+    OUT.flip();
+    return OUT;
+  }
+
+  @Test
+  public void testFloat32() throws Exception {
+    final float[]    SAMPLES = samples();
+    final ByteBuffer OUT     = encode(SampleFormat.FLOAT32, SAMPLES);
+
+    for (int i = 0; i < SAMPLES.length; i++) {
+      assert OUT.getFloat() == SAMPLES[i];
+    }
+  }
+
+  @Test
+  public void testInt16() throws Exception {
+    final float[]    SAMPLES = samples();
+    final ByteBuffer OUT     = encode(SampleFormat.INT16, SAMPLES);
+    final float      SCALE   = OUT.getFloat() / Short.MAX_VALUE;
+
+    for (int i = 0; i < SAMPLES.length; i++) {
+      assert Math.abs((OUT.getShort() * SCALE) - SAMPLES[i]) <= SCALE;
+    }
+  }
+
+  @Test
+  public void testInt8() throws Exception {
+    final float[]    SAMPLES = samples();
+    final ByteBuffer OUT     = encode(SampleFormat.INT8, SAMPLES);
+    final float      SCALE   = OUT.getFloat() / Byte.MAX_VALUE;
+
+    for (int i = 0; i < SAMPLES.length; i++) {
+      assert Math.abs((OUT.get() * SCALE) - SAMPLES[i]) <= SCALE;
+    }
+  }
+
+  @Test
+  public void testBlockFloatingPointKeepsQuietBlocksPrecise() throws Exception {
+    final float[]    SAMPLES = samples();
+    final ByteBuffer OUT     = encode(SampleFormat.BFP, SAMPLES);
+
+    for (int from = 0; from < SAMPLES.length; from += SampleFormat.BFP_BLOCK_SAMPLES * 2) {
+      final int   TO       = Math.min(SAMPLES.length, from + (SampleFormat.BFP_BLOCK_SAMPLES * 2));
+      final float QUANTUM = Math.scalb(1f, OUT.get() - 7);
+
+      for (int i = from; i < TO; i++) {
+        assert Math.abs((OUT.get() * QUANTUM) - SAMPLES[i]) <= QUANTUM;
+      }
+      if (from >= SAMPLE_COUNT + (SampleFormat.BFP_BLOCK_SAMPLES * 2)) {
+        assert QUANTUM < 0.001f;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.replay;
+
+import org.anhonesteffort.chnlzr.input.DeviceSelection;
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+public class ReplaySdrDriverTest {
+
+  private static final long   SAMPLE_RATE = 48_000l;
+  private static final double CENTER_FREQ = 851_000_000d;
+  private static final double TONE_OFFSET = 3_000d;
+  private static final int    SAMPLES     = 4800;
+
+  private static Path recordTone() throws Exception {
+    Path       path   = Files.createTempFile("chnlzr", ".chrec");
+    ByteBuffer buffer = ByteBuffer.allocate(SamplesRecording.HEADER_LENGTH + (SAMPLES * SamplesRecording.SAMPLE_BYTES));
+
+    SamplesRecording.writeHeader(buffer, SAMPLE_RATE, CENTER_FREQ);
+    for (int i = 0; i < SAMPLES; i++) {
+      double phase = 2d * Math.PI * TONE_OFFSET * i / SAMPLE_RATE;
+      buffer.putFloat((float) Math.cos(phase));
+      buffer.putFloat((float) Math.sin(phase));
+    }
+
+    buffer.flip();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+
+    return path;
+  }
+
+  @Test
+  public void testTuningSlicesRecording() throws Exception {
+    final Path PATH = recordTone();
+
+    try (SamplesRecording RECORDING = new SamplesRecording(PATH)) {
+      final ReplaySdrDriver DRIVER  = new ReplaySdrDriver(RECORDING, ReplayPacing.FAST);
+      final Samples         SAMPLES = new Samples(new ComplexNumber[1000]);
+
+      assert DRIVER.setSampleRate(SAMPLE_RATE / 2) == SAMPLE_RATE;
+      assert DRIVER.setFrequency(CENTER_FREQ + TONE_OFFSET) == CENTER_FREQ + TONE_OFFSET;
+
+      for (int block = 0; block < 10; block++) {
+        DRIVER.fillBuffer(SAMPLES);
+        for (ComplexNumber sample : SAMPLES.getSamples()) {
+          assert Math.abs(sample.getInPhase() - 1f) < 0.001f;
+          assert Math.abs(sample.getQuadrature())   < 0.001f;
+        }
+      }
+    } finally {
+      Files.delete(PATH);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTuningOutsideRecordingRejected() throws Exception {
+    final Path PATH = recordTone();
+
+    try (SamplesRecording RECORDING = new SamplesRecording(PATH)) {
+      new ReplaySdrDriver(RECORDING, ReplayPacing.FAST).setFrequency(CENTER_FREQ + SAMPLE_RATE);
+    } finally {
+      Files.delete(PATH);
+    }
+  }
+
+  @Test
+  public void testProviderOnlyReplaysSelectedSource() throws Exception {
+    final Path                    PATH     = recordTone();
+    final ReplaySdrDriverProvider PROVIDER = new ReplaySdrDriverProvider();
+
+    try {
+      final DeviceSelection REPLAY   = new DeviceSelection(0, Optional.of(PATH.toString()), ReplayPacing.FAST);
+      final DeviceSelection HARDWARE = new DeviceSelection(1, Optional.empty(), ReplayPacing.FAST);
+
+      assert !PROVIDER.getDriver().isPresent();
+      assert  REPLAY.open(PROVIDER::getDriver).isPresent();
+      assert !HARDWARE.open(PROVIDER::getDriver).isPresent();
+      assert !DeviceSelection.current().isPresent();
+    } finally {
+      Files.delete(PATH);
+    }
+  }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.replay;
+
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class SamplesRecorderTest {
+
+  private static Samples samples(int first, int count) {
+    ComplexNumber[] samples = new ComplexNumber[count];
+    for (int i = 0; i < count; i++) {
+      samples[i] = new ComplexNumber(first + i, -(first + i));
+    }
+    return new Samples(samples);
+  }
+
+  @Test
+  public void testRecordingReplaysSamplesInOrder() throws Exception {
+    final Path            PATH     = Files.createTempFile("chnlzr", ".chrec");
+    final SamplesRecorder RECORDER = new SamplesRecorder(PATH, 400);
+
+    RECORDER.onStateChange(48_000l, 851_000_000d);
+    for (int i = 0; i < 10; i++) {
+      RECORDER.consume(samples(i * 25, 25));
+    }
+    RECORDER.close();
+
+    try (SamplesRecording RECORDING = new SamplesRecording(PATH)) {
+      final float[] READ = new float[260 << 1];
+
+      assert RECORDING.getSampleRate()      == 48_000l;
+      assert RECORDING.getCenterFrequency() == 851_000_000d;
+      assert RECORDING.getSampleCount()     == 250l;
+      assert RECORDER.getDroppedSamples()   == 0l;
+
+      RECORDING.read(READ, 260);
+
+      for (int i = 0; i < 260; i++) {
+        assert READ[(i << 1)]     ==   (i % 250);
+        assert READ[(i << 1) + 1] == -(i % 250);
+      }
+    } finally {
+      Files.delete(PATH);
+    }
+  }
+
+  @Test
+  public void testStateChangeStartsNewRecording() throws Exception {
+    final Path            PATH     = Files.createTempFile("chnlzr", ".chrec");
+    final Path            NEXT     = Paths.get(PATH + ".1");
+    final SamplesRecorder RECORDER = new SamplesRecorder(PATH, 400);
+
+    RECORDER.onStateChange(48_000l, 851_000_000d);
+    RECORDER.consume(samples(0, 10));
+    RECORDER.onStateChange(96_000l, 852_000_000d);
+    RECORDER.consume(samples(10, 20));
+    RECORDER.close();
+
+    try (SamplesRecording FIRST  = new SamplesRecording(PATH);
+         SamplesRecording SECOND = new SamplesRecording(NEXT)) {
+
+      assert FIRST.getSampleRate()       == 48_000l;
+      assert FIRST.getSampleCount()      == 10l;
+      assert SECOND.getSampleRate()      == 96_000l;
+      assert SECOND.getCenterFrequency() == 852_000_000d;
+      assert SECOND.getSampleCount()     == 20l;
+    } finally {
+      Files.delete(PATH);
+      Files.delete(NEXT);
+    }
+  }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.anhonesteffort.chnlzr.output.SampleSink;
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the default kernels, vector ones when jdk.incubator.vector is present,
+ * against the scalar kernels and a channelizer built on them against
+ * ResamplingSamplesSink.
+ */
+public class BlockKernelsTest {
+
+  private static final BlockKernels SCALAR  = new ScalarBlockKernels();
+  private static final int[]        LENGTHS = new int[] { 0, 1, 3, 7, 64, 250, 1021 };
+
+  private static double[] randomDoubles(Random random, int length) {
+    final double[] DOUBLES = new double[length];
+    for (int i = 0; i < length; i++) {
+      DOUBLES[i] = (random.nextDouble() * 2d) - 1d;
+    }
+    return DOUBLES;
+  }
+
+  private static long[] randomLongs(Random random, int length) {
+    final long[] LONGS = new long[length];
+    for (int i = 0; i < length; i++) {
+      LONGS[i] = random.nextLong() >> 20;
+    }
+    return LONGS;
+  }
+
+  @Test
+  public void testMixMatchesScalar() throws Exception {
+    final BlockKernels KERNELS = ChannelizerKernel.getDefaultKernels();
+    final Random       RANDOM  = new Random(1337l);
+
+    for (int length : LENGTHS) {
+      final double[] TABLE_COS = randomDoubles(RANDOM, length + 5);
+      final double[] TABLE_SIN = randomDoubles(RANDOM, length + 5);
+      final double[] IN_I      = randomDoubles(RANDOM, length + 3);
+      final double[] IN_Q      = randomDoubles(RANDOM, length + 3);
+      final double[] SCALAR_I  = IN_I.clone();
+      final double[] SCALAR_Q  = IN_Q.clone();
+
+      KERNELS.mix(IN_I,     IN_Q,     3, TABLE_COS, TABLE_SIN, 5, 0.6d, 0.8d, length);
+      SCALAR.mix( SCALAR_I, SCALAR_Q, 3, TABLE_COS, TABLE_SIN, 5, 0.6d, 0.8d, length);
+
+      assert Arrays.equals(IN_I, SCALAR_I);
+      assert Arrays.equals(IN_Q, SCALAR_Q);
+    }
+  }
+
+  @Test
+  public void testToFixedMatchesScalar() throws Exception {
+    final BlockKernels KERNELS = ChannelizerKernel.getDefaultKernels();
+    final Random       RANDOM  = new Random(1337l);
+
+    for (int length : LENGTHS) {
+      final double[] IN         = randomDoubles(RANDOM, length);
+      final long[]   OUT        = new long[length];
+      final long[]   SCALAR_OUT = new long[length];
+
+      if (length > 2) {
+        IN[1] = Double.NaN;
+        IN[2] = Double.POSITIVE_INFINITY;
+      }
+
+      KERNELS.toFixed(IN, OUT,        length, Math.pow(2d, 24d));
+      SCALAR.toFixed( IN, SCALAR_OUT, length, Math.pow(2d, 24d));
+
+      assert Arrays.equals(OUT, SCALAR_OUT);
+    }
+  }
+
+  @Test
+  public void testIntegrateAndCombMatchScalar() throws Exception {
+    final BlockKernels KERNELS = ChannelizerKernel.getDefaultKernels();
+    final Random       RANDOM  = new Random(1337l);
+    final long[]       STATE   = randomLongs(RANDOM, ChannelizerKernel.STAGES);
+
+    for (int length : LENGTHS) {
+      final long[] SAMPLES        = randomLongs(RANDOM, length);
+      final long[] SCALAR_SAMPLES = SAMPLES.clone();
+      final long[] SCALAR_STATE   = STATE.clone();
+
+      KERNELS.integrate(STATE, SAMPLES, length);
+      SCALAR.integrate(SCALAR_STATE, SCALAR_SAMPLES, length);
+
+      assert Arrays.equals(SAMPLES, SCALAR_SAMPLES);
+      assert Arrays.equals(STATE,   SCALAR_STATE);
+
+      KERNELS.comb(STATE, SAMPLES, length);
+      SCALAR.comb(SCALAR_STATE, SCALAR_SAMPLES, length);
+
+      assert Arrays.equals(SAMPLES, SCALAR_SAMPLES);
+      assert Arrays.equals(STATE,   SCALAR_STATE);
+    }
+  }
+
+  private static double toneFrequency(List<ComplexNumber> samples, long sampleRate) {
+    double sumI = 0d;
+    double sumQ = 0d;
+
+    for (int i = samples.size() / 2; i < samples.size(); i++) {
+      ComplexNumber last = samples.get(i - 1);
+      ComplexNumber next = samples.get(i);
+      sumI += (next.getInPhase()    * last.getInPhase()) + (next.getQuadrature() * last.getQuadrature());
+      sumQ += (next.getQuadrature() * last.getInPhase()) - (next.getInPhase()    * last.getQuadrature());
+    }
+
+    return Math.atan2(sumQ, sumI) * sampleRate / (2d * Math.PI);
+  }
+
+  @Test
+  public void testMatchesResamplingSamplesSink() throws Exception {
+    final long   SOURCE_RATE  = 64_000l;
+    final long   CHANNEL_RATE =  8_000l;
+    final double SOURCE_FREQ  = 100_000d;
+    final double CHANNEL_FREQ = 112_000d;
+    final double TONE_INC     = 2d * Math.PI * (CHANNEL_FREQ + 500d - SOURCE_FREQ) / SOURCE_RATE;
+    final int    BLOCK_LENGTH = 250;
+
+    final List<ComplexNumber> SINK_OUT    = new LinkedList<>();
+    final List<ComplexNumber> SCALAR_OUT  = new LinkedList<>();
+    final List<ComplexNumber> DEFAULT_OUT = new LinkedList<>();
+    final long[]              SINK_RATE   = new long[1];
+
+    final ResamplingSamplesSink SINK = new ResamplingSamplesSink(
+        new ProtoFactory().channelRequest(CHANNEL_FREQ, 6_000d, CHANNEL_RATE, 150l),
+        new SampleSink() {
+          @Override
+          public void onStateChange(long sampleRate, double frequency) {
+            SINK_RATE[0] = sampleRate;
+          }
+
+          @Override
+          public void consume(ComplexNumber sample) {
+            SINK_OUT.add(sample);
+          }
+        }
+    );
+
+    SINK.onStateChange(SOURCE_RATE, SOURCE_FREQ);
+
+    final int               DECIMATION     = (int) (SOURCE_RATE / SINK_RATE[0]);
+    final ChannelizerKernel SCALAR_KERNEL  = new ChannelizerKernel(SOURCE_RATE, SOURCE_FREQ, CHANNEL_FREQ, 1, DECIMATION, SCALAR);
+    final ChannelizerKernel DEFAULT_KERNEL = new ChannelizerKernel(SOURCE_RATE, SOURCE_FREQ, CHANNEL_FREQ, 1, DECIMATION);
+    final float[]           SCALAR_BLOCK   = new float[SCALAR_KERNEL.getOutputCapacity(BLOCK_LENGTH) * 2];
+    final float[]           DEFAULT_BLOCK  = new float[DEFAULT_KERNEL.getOutputCapacity(BLOCK_LENGTH) * 2];
+
+    for (int block = 0; block < 64; block++) {
+      final ComplexNumber[] SAMPLES = new ComplexNumber[BLOCK_LENGTH];
+      final float[]         SOURCE  = new float[BLOCK_LENGTH * 2];
+
+      for (int i = 0; i < BLOCK_LENGTH; i++) {
+        double phase = TONE_INC * ((block * BLOCK_LENGTH) + i);
+        SOURCE[(i << 1)]     = (float) (0.5d * Math.cos(phase));
+        SOURCE[(i << 1) + 1] = (float) (0.5d * Math.sin(phase));
+        SAMPLES[i]           = new ComplexNumber(SOURCE[(i << 1)], SOURCE[(i << 1) + 1]);
+      }
+
+      SINK.consume(new Samples(SAMPLES));
+
+      final int SCALAR_COUNT  = SCALAR_KERNEL.process(SOURCE, BLOCK_LENGTH, SCALAR_BLOCK);
+      final int DEFAULT_COUNT = DEFAULT_KERNEL.process(SOURCE, BLOCK_LENGTH, DEFAULT_BLOCK);
+
+      assert SCALAR_COUNT == DEFAULT_COUNT;
+      assert Arrays.equals(SCALAR_BLOCK, DEFAULT_BLOCK);
+
+      for (int i = 0; i < DEFAULT_COUNT; i++) {
+        SCALAR_OUT.add(new ComplexNumber(SCALAR_BLOCK[(i << 1)], SCALAR_BLOCK[(i << 1) + 1]));
+        DEFAULT_OUT.add(new ComplexNumber(DEFAULT_BLOCK[(i << 1)], DEFAULT_BLOCK[(i << 1) + 1]));
+      }
+    }
+
+    assert DEFAULT_OUT.size() == SINK_OUT.size();
+    assert Math.abs(toneFrequency(DEFAULT_OUT, SINK_RATE[0]) - 500d) < 1d;
+    assert Math.abs(toneFrequency(DEFAULT_OUT, SINK_RATE[0]) - toneFrequency(SINK_OUT, SINK_RATE[0])) < 1d;
+  }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.anhonesteffort.chnlzr.metrics.ChannelMetrics;
+import org.anhonesteffort.chnlzr.output.SampleBlockSink;
+import org.anhonesteffort.dsp.sample.Samples;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.junit.Test;
+
+import java.util.stream.IntStream;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.ChannelRequest;
+
+public class BlockResamplingSamplesSinkTest {
+
+  private static final ProtoFactory PROTO = new ProtoFactory();
+
+  private static ChannelRequest.Reader request(long sampleRate) {
+    return PROTO.channelRequest(
+        9001d, 1337d, sampleRate, 150l
+    );
+  }
+
+  private static Samples samples(int length, float inPhase, float quadrature) {
+    final Samples SAMPLES = new Samples(new ComplexNumber[length]);
+
+    IntStream.range(0, SAMPLES.getSamples().length).forEach(i ->
+        SAMPLES.getSamples()[i] = new ComplexNumber(inPhase, quadrature)
+    );
+
+    return SAMPLES;
+  }
+
+  private static class CountingSink implements SampleBlockSink {
+    private int   stateChanges = 0;
+    private int   consumed     = 0;
+    private float lastInPhase;
+    private float lastQuadrature;
+
+    @Override
+    public void onStateChange(long sampleRate, double frequency) {
+      stateChanges++;
+    }
+
+    @Override
+    public void consume(ComplexNumber sample) {
+      throw new IllegalStateException("block sink should never consume a ComplexNumber");
+    }
+
+    @Override
+    public void consume(float[] samples, int count) {
+      consumed       += count;
+      lastInPhase     = samples[(count - 1) << 1];
+      lastQuadrature  = samples[((count - 1) << 1) + 1];
+    }
+  }
+
+  @Test
+  public void testRateChange() throws Exception {
+    final long                       SOURCE_RATE  = 2000l;
+    final long                       CHANNEL_RATE = 1000l;
+    final Samples                    SAMPLES      = samples(200, 0f, 0f);
+    final CountingSink               NEXT_SINK    = new CountingSink();
+    final BlockResamplingSamplesSink SINK         = new BlockResamplingSamplesSink(request(CHANNEL_RATE), NEXT_SINK);
+
+    assert NEXT_SINK.stateChanges == 0;
+
+    SINK.onStateChange(SOURCE_RATE, 9001d);
+    SINK.consume(SAMPLES);
+
+    assert NEXT_SINK.stateChanges == 1;
+
+    final int SAMPLES_TO_FEED    = 16;
+    final int DECIMATION         = (int) (SOURCE_RATE / CHANNEL_RATE);
+    final int SAMPLES_TO_CONSUME = (SAMPLES_TO_FEED * SAMPLES.getSamples().length) / DECIMATION;
+
+    IntStream.range(0, SAMPLES_TO_FEED - 1).forEach(i -> SINK.consume(SAMPLES));
+
+    assert NEXT_SINK.consumed == SAMPLES_TO_CONSUME;
+  }
+
+  @Test
+  public void testUnityDcGain() throws Exception {
+    final Samples                    SAMPLES   = samples(200, 0.5f, -0.25f);
+    final CountingSink               NEXT_SINK = new CountingSink();
+    final BlockResamplingSamplesSink SINK      = new BlockResamplingSamplesSink(request(1000l), NEXT_SINK);
+
+    SINK.onStateChange(4000l, 9001d);
+    IntStream.range(0, 4).forEach(i -> SINK.consume(SAMPLES));
+
+    assert Math.abs(NEXT_SINK.lastInPhase    -  0.50f) < 0.001f;
+    assert Math.abs(NEXT_SINK.lastQuadrature - -0.25f) < 0.001f;
+  }
+
+  @Test
+  public void testSeamlessRetuneKeepsState() throws Exception {
+    final Samples                    SAMPLES   = samples(200, 0.5f, -0.25f);
+    final CountingSink               NEXT_SINK = new CountingSink();
+    final BlockResamplingSamplesSink SINK      = new BlockResamplingSamplesSink(
+        request(1000l), NEXT_SINK, new ChannelMetrics(PROTO.spec(request(1000l))), RetuneMode.SEAMLESS
+    );
+
+    SINK.onStateChange(4000l, 9001d);
+    IntStream.range(0, 4).forEach(i -> SINK.consume(SAMPLES));
+    SINK.onStateChange(4000l, 9101d);
+    SINK.consume(SAMPLES);
+
+    assert NEXT_SINK.stateChanges == 1;
+    assert NEXT_SINK.consumed     == 250;
+
+    SINK.onStateChange(8000l, 9101d);
+    assert NEXT_SINK.stateChanges == 2;
+  }
+
+  @Test
+  public void testResetRetuneRebuilds() throws Exception {
+    final CountingSink               NEXT_SINK = new CountingSink();
+    final BlockResamplingSamplesSink SINK      = new BlockResamplingSamplesSink(request(1000l), NEXT_SINK);
+
+    SINK.onStateChange(4000l, 9001d);
+    SINK.onStateChange(4000l, 9101d);
+
+    assert NEXT_SINK.stateChanges == 2;
+  }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+import org.anhonesteffort.chnlzr.output.SampleSink;
+import org.anhonesteffort.dsp.filter.ComplexNumberFrequencyTranslatingFilter;
+import org.anhonesteffort.dsp.filter.Filter;
+import org.anhonesteffort.dsp.filter.FilterFactory;
+import org.anhonesteffort.dsp.filter.rate.RateChangeFilter;
+import org.anhonesteffort.dsp.util.ComplexNumber;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChannelizerKernelTest {
+
+  private static final long   SOURCE_RATE  = 64_000l;
+  private static final long   CHANNEL_RATE =  8_000l;
+  private static final double SOURCE_FREQ  = 100_000d;
+  private static final double CHANNEL_FREQ = 112_000d;
+  private static final double TONE_OFFSET  =     500d;
+  private static final int    BLOCK_LENGTH =     250;
+  private static final int    BLOCK_COUNT  =      64;
+
+  private static final double DC_TOLERANCE        = 0.001d;
+  private static final double AMPLITUDE_TOLERANCE = 0.03d;
+  private static final int    SETTLE_SAMPLES      = 16;
+
+  private static float[] toneBlock(int blockIndex, double toneOffset) {
+    final float[] BLOCK    = new float[BLOCK_LENGTH * 2];
+    final double  TONE_INC = 2d * Math.PI * (CHANNEL_FREQ + toneOffset - SOURCE_FREQ) / SOURCE_RATE;
+
+    for (int i = 0; i < BLOCK_LENGTH; i++) {
+      double phase = TONE_INC * ((blockIndex * BLOCK_LENGTH) + i);
+      BLOCK[(i << 1)]     = (float) (0.5d * Math.cos(phase));
+      BLOCK[(i << 1) + 1] = (float) (0.5d * Math.sin(phase));
+    }
+
+    return BLOCK;
+  }
+
+  private static double toneFrequency(List<ComplexNumber> samples, long sampleRate) {
+    double sumI = 0d;
+    double sumQ = 0d;
+
+    for (int i = samples.size() / 2; i < samples.size(); i++) {
+      ComplexNumber last = samples.get(i - 1);
+      ComplexNumber next = samples.get(i);
+      sumI += (next.getInPhase()    * last.getInPhase()) + (next.getQuadrature() * last.getQuadrature());
+      sumQ += (next.getQuadrature() * last.getInPhase()) - (next.getInPhase()    * last.getQuadrature());
+    }
+
+    return Math.atan2(sumQ, sumI) * sampleRate / (2d * Math.PI);
+  }
+
+  private static double amplitude(List<ComplexNumber> samples) {
+    double power = 0d;
+
+    for (int i = SETTLE_SAMPLES; i < samples.size(); i++) {
+      ComplexNumber sample = samples.get(i);
+      power += (sample.getInPhase() * sample.getInPhase()) + (sample.getQuadrature() * sample.getQuadrature());
+    }
+
+    return Math.sqrt(power / (samples.size() - SETTLE_SAMPLES));
+  }
+
+  private static class Outputs {
+    private final List<ComplexNumber> chain  = new ArrayList<>();
+    private final List<ComplexNumber> kernel = new ArrayList<>();
+    private long channelRate;
+  }
+
+  private static Outputs runBoth(double toneOffset) {
+    final Outputs                         OUTPUTS     = new Outputs();
+    final Filter<ComplexNumber>           TRANSLATION = new ComplexNumberFrequencyTranslatingFilter(SOURCE_RATE, SOURCE_FREQ, CHANNEL_FREQ);
+    final RateChangeFilter<ComplexNumber> RESAMPLING  = FilterFactory.getCicResampler(SOURCE_RATE, CHANNEL_RATE, 150l);
+
+    TRANSLATION.addSink(RESAMPLING);
+    RESAMPLING.addSink(new SampleSink() {
+      @Override
+      public void onStateChange(long sampleRate, double frequency) { }
+
+      @Override
+      public void consume(ComplexNumber sample) {
+        OUTPUTS.chain.add(sample);
+      }
+    });
+
+    final ChannelizerKernel KERNEL = new ChannelizerKernel(
+        SOURCE_RATE, SOURCE_FREQ, CHANNEL_FREQ, RESAMPLING.getInterpolation(), RESAMPLING.getDecimation()
+    );
+    final float[] CHANNEL_BLOCK = new float[KERNEL.getOutputCapacity(BLOCK_LENGTH) * 2];
+
+    for (int block = 0; block < BLOCK_COUNT; block++) {
+      final float[] SOURCE_BLOCK = toneBlock(block, toneOffset);
+
+      for (int i = 0; i < BLOCK_LENGTH; i++) {
+        TRANSLATION.consume(new ComplexNumber(SOURCE_BLOCK[(i << 1)], SOURCE_BLOCK[(i << 1) + 1]));
+      }
+
+      final int CHANNEL_COUNT = KERNEL.process(SOURCE_BLOCK, BLOCK_LENGTH, CHANNEL_BLOCK);
+      for (int i = 0; i < CHANNEL_COUNT; i++) {
+        OUTPUTS.kernel.add(new ComplexNumber(CHANNEL_BLOCK[(i << 1)], CHANNEL_BLOCK[(i << 1) + 1]));
+      }
+    }
+
+    OUTPUTS.channelRate = (long) (SOURCE_RATE * RESAMPLING.getRateChange());
+    return OUTPUTS;
+  }
+
+  @Test
+  public void testMatchesFilterChain() throws Exception {
+    final Outputs OUTPUTS = runBoth(TONE_OFFSET);
+
+    assert OUTPUTS.kernel.size() == OUTPUTS.chain.size();
+    assert Math.abs(toneFrequency(OUTPUTS.kernel, OUTPUTS.channelRate) - TONE_OFFSET) < 1d;
+    assert Math.abs(toneFrequency(OUTPUTS.kernel, OUTPUTS.channelRate) - toneFrequency(OUTPUTS.chain, OUTPUTS.channelRate)) < 1d;
+  }
+
+  /**
+   * A tone at the channel center mixes down to a constant, so once both CICs
+   * have settled every sample must match regardless of their group delay.
+   */
+  @Test
+  public void testMatchesFilterChainSampleValues() throws Exception {
+    final Outputs OUTPUTS = runBoth(0d);
+
+    assert OUTPUTS.kernel.size() == OUTPUTS.chain.size();
+
+    for (int i = SETTLE_SAMPLES; i < OUTPUTS.kernel.size(); i++) {
+      final ComplexNumber KERNEL = OUTPUTS.kernel.get(i);
+      final ComplexNumber CHAIN  = OUTPUTS.chain.get(i);
+
+      assert Math.abs(KERNEL.getInPhase()    - CHAIN.getInPhase())    < DC_TOLERANCE;
+      assert Math.abs(KERNEL.getQuadrature() - CHAIN.getQuadrature()) < DC_TOLERANCE;
+    }
+  }
+
+  /**
+   * Off center the CIC passband droop shows up as amplitude, the kernel and
+   * the chain must agree to within AMPLITUDE_TOLERANCE of each other.
+   */
+  @Test
+  public void testMatchesFilterChainAmplitude() throws Exception {
+    final Outputs OUTPUTS = runBoth(TONE_OFFSET);
+    final double  KERNEL  = amplitude(OUTPUTS.kernel);
+    final double  CHAIN   = amplitude(OUTPUTS.chain);
+
+    assert Math.abs(KERNEL - CHAIN) < (CHAIN * AMPLITUDE_TOLERANCE);
+    assert Math.abs(KERNEL - 0.5d)  < (0.5d  * AMPLITUDE_TOLERANCE);
+  }
+
+  @Test
+  public void testOscillatorStaysNormalized() throws Exception {
+    final ChannelizerKernel KERNEL  = new ChannelizerKernel(SOURCE_RATE, SOURCE_FREQ, SOURCE_FREQ + 1337d, 1, 1);
+    final float[]           SAMPLES = new float[BLOCK_LENGTH * 2];
+    final float[]           OUT     = new float[KERNEL.getOutputCapacity(BLOCK_LENGTH) * 2];
+
+    for (int i = 0; i < BLOCK_LENGTH; i++) {
+      SAMPLES[(i << 1)] = 1f;
+    }
+
+    for (int block = 0; block < 10_000; block++) {
+      final int COUNT = KERNEL.process(SAMPLES, BLOCK_LENGTH, OUT);
+
+      for (int i = 0; i < COUNT; i++) {
+        final double MAGNITUDE = Math.hypot(OUT[(i << 1)], OUT[(i << 1) + 1]);
+        assert Math.abs(MAGNITUDE - 1d) < 0.0001d;
+      }
+    }
+  }
+
+  @Test
+  public void testRetuneIsPhaseContinuous() throws Exception {
+    final ChannelizerKernel KERNEL   = new ChannelizerKernel(SOURCE_RATE, SOURCE_FREQ, SOURCE_FREQ + 1000d, 1, 1);
+    final float[]           SAMPLES  = new float[BLOCK_LENGTH * 2];
+    final float[]           OUT      = new float[KERNEL.getOutputCapacity(BLOCK_LENGTH) * 4];
+    final double            MAX_STEP = 2d * Math.PI * 1001d / SOURCE_RATE;
+
+    for (int i = 0; i < BLOCK_LENGTH; i++) {
+      SAMPLES[(i << 1)] = 1f;
+    }
+
+    final int     FIRST_COUNT = KERNEL.process(SAMPLES, BLOCK_LENGTH, OUT);
+    final float[] RETUNED     = new float[KERNEL.getOutputCapacity(BLOCK_LENGTH) * 2];
+
+    KERNEL.retune(SOURCE_FREQ + 500d);
+    final int SECOND_COUNT = KERNEL.process(SAMPLES, BLOCK_LENGTH, RETUNED);
+    System.arraycopy(RETUNED, 0, OUT, FIRST_COUNT << 1, SECOND_COUNT << 1);
+
+    for (int i = 1; i < FIRST_COUNT + SECOND_COUNT; i++) {
+      final double LAST_PHASE = Math.atan2(OUT[((i - 1) << 1) + 1], OUT[((i - 1) << 1)]);
+      final double NEXT_PHASE = Math.atan2(OUT[(i << 1) + 1], OUT[(i << 1)]);
+      final double STEP       = Math.abs(Math.IEEEremainder(NEXT_PHASE - LAST_PHASE, 2d * Math.PI));
+
+      assert STEP < MAX_STEP;
+    }
+  }
+
+}
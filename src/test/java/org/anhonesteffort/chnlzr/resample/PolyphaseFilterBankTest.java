@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+import org.junit.Test;
+
+public class PolyphaseFilterBankTest {
+
+  private static final int  BANDS       = 16;
+  private static final long SOURCE_RATE = 160_000l;
+  private static final int  LENGTH      = 16_000;
+
+  private static float[] tone(double frequency, float amplitude) {
+    final float[] SAMPLES = new float[LENGTH * 2];
+
+    for (int i = 0; i < LENGTH; i++) {
+      double phase = 2d * Math.PI * frequency * i / SOURCE_RATE;
+      SAMPLES[(i << 1)]     = (float) (amplitude * Math.cos(phase));
+      SAMPLES[(i << 1) + 1] = (float) (amplitude * Math.sin(phase));
+    }
+
+    return SAMPLES;
+  }
+
+  private static double meanMagnitude(float[] samples, int from, int to) {
+    double sum = 0d;
+    for (int i = from; i < to; i++) {
+      sum += Math.hypot(samples[(i << 1)], samples[(i << 1) + 1]);
+    }
+    return sum / (to - from);
+  }
+
+  private static double toneFrequency(float[] samples, int from, int to, long sampleRate) {
+    double sumI = 0d;
+    double sumQ = 0d;
+
+    for (int i = from + 1; i < to; i++) {
+      sumI += (samples[(i << 1)]     * samples[((i - 1) << 1)]) + (samples[(i << 1) + 1] * samples[((i - 1) << 1) + 1]);
+      sumQ += (samples[(i << 1) + 1] * samples[((i - 1) << 1)]) - (samples[(i << 1)]     * samples[((i - 1) << 1) + 1]);
+    }
+
+    return Math.atan2(sumQ, sumI) * sampleRate / (2d * Math.PI);
+  }
+
+  private static void assertBandContainsTone(int toneBand, int band, double offset) {
+    final PolyphaseFilterBank BANK    = new PolyphaseFilterBank(BANDS);
+    final double              TONE    = BANK.getBandOffset(toneBand, SOURCE_RATE) + offset;
+    final float[][]           OUTPUTS = new float[BANDS][];
+
+    OUTPUTS[band] = new float[BANK.getOutputCapacity(LENGTH) * 2];
+
+    final int FRAMES = BANK.process(tone(TONE, 0.5f), LENGTH, OUTPUTS);
+    final int SETTLE = PolyphaseFilterBank.TAPS_PER_BAND * 2;
+
+    assert FRAMES == LENGTH / BANK.getDecimation();
+
+    if (band == toneBand) {
+      assert Math.abs(meanMagnitude(OUTPUTS[band], SETTLE, FRAMES) - 0.5d) < 0.01d;
+      assert Math.abs(toneFrequency(OUTPUTS[band], SETTLE, FRAMES, BANK.getBandRate(SOURCE_RATE)) - offset) < 1d;
+    } else {
+      assert meanMagnitude(OUTPUTS[band], SETTLE, FRAMES) < 0.005d;
+    }
+  }
+
+  @Test
+  public void testToneInPositiveBand() throws Exception {
+    assertBandContainsTone(3, 3, 1_234d);
+  }
+
+  @Test
+  public void testToneInNegativeBand() throws Exception {
+    assertBandContainsTone(BANDS - 2, BANDS - 2, -2_500d);
+  }
+
+  @Test
+  public void testToneRejectedByDistantBand() throws Exception {
+    assertBandContainsTone(3, 5, 1_234d);
+    assertBandContainsTone(3, 1, 1_234d);
+  }
+
+  @Test
+  public void testNearestBand() throws Exception {
+    final PolyphaseFilterBank BANK = new PolyphaseFilterBank(BANDS);
+
+    assert BANK.getNearestBand(     0d, SOURCE_RATE) == 0;
+    assert BANK.getNearestBand( 9_000d, SOURCE_RATE) == 1;
+    assert BANK.getNearestBand(-9_000d, SOURCE_RATE) == BANDS - 1;
+    assert BANK.getBandOffset(BANDS - 1, SOURCE_RATE) == -10_000d;
+  }
+
+}
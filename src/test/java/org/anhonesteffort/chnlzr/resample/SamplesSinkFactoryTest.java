@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.chnlzr.resample;
+
+import org.anhonesteffort.chnlzr.ChnlzrServerConfig;
+import org.anhonesteffort.chnlzr.capnp.ProtoFactory;
+import org.anhonesteffort.chnlzr.input.ChannelizerMode;
+import org.anhonesteffort.chnlzr.output.ClientWriteQueue;
+import org.anhonesteffort.chnlzr.output.DatagramSampleSink;
+import org.anhonesteffort.chnlzr.output.SampleCompression;
+import org.anhonesteffort.chnlzr.output.SampleFormat;
+import org.capnproto.MessageBuilder;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Optional;
+
+import static org.anhonesteffort.chnlzr.capnp.Proto.BaseMessage;
+import static org.anhonesteffort.chnlzr.capnp.Proto.ChannelRequest;
+
+public class SamplesSinkFactoryTest {
+
+  private static final ProtoFactory PROTO = new ProtoFactory();
+
+  private static ChnlzrServerConfig config() {
+    final ChnlzrServerConfig CONFIG = Mockito.mock(ChnlzrServerConfig.class);
+
+    Mockito.when(CONFIG.samplesPerMessage()).thenReturn(1000);
+    Mockito.when(CONFIG.resamplingMode()).thenReturn(ResamplingMode.COMPLEX);
+    Mockito.when(CONFIG.retuneMode()).thenReturn(RetuneMode.RESET);
+    Mockito.when(CONFIG.sampleFormat()).thenReturn(SampleFormat.FLOAT32);
+    Mockito.when(CONFIG.sampleCompression()).thenReturn(SampleCompression.NONE);
+    Mockito.when(CONFIG.udpOutputAddress()).thenReturn(Optional.empty());
+    Mockito.when(CONFIG.channelizerMode()).thenReturn(ChannelizerMode.DIRECT);
+
+    return CONFIG;
+  }
+
+  private static ChannelRequest.Reader request(double frequency) {
+    return PROTO.channelRequest(frequency, 1337d, 48000l, 150l);
+  }
+
+  @Test
+  public void testIdenticalRequestsShareOnePipeline() throws Exception {
+    final SamplesSinkFactory FACTORY = new SamplesSinkFactory(config());
+    final ClientWriteQueue   CLIENT0 = Mockito.mock(ClientWriteQueue.class);
+    final ClientWriteQueue   CLIENT1 = Mockito.mock(ClientWriteQueue.class);
+    final ClientWriteQueue   CLIENT2 = Mockito.mock(ClientWriteQueue.class);
+
+    final SamplesSink SINK0 = FACTORY.create(CLIENT0, request(9001d));
+    final SamplesSink SINK1 = FACTORY.create(CLIENT1, request(9001d));
+    final SamplesSink SINK2 = FACTORY.create(CLIENT2, request(9002d));
+
+    assert SINK0 == SINK1;
+    assert SINK0 != SINK2;
+
+    assert !FACTORY.release(CLIENT0, SINK0);
+    assert  FACTORY.release(CLIENT1, SINK1);
+    assert  FACTORY.release(CLIENT2, SINK2);
+
+    assert FACTORY.create(CLIENT0, request(9001d)) != SINK0;
+  }
+
+  @Test
+  public void testOnlyDatagramClientsAreDescribed() throws Exception {
+    try (DatagramChannel RECEIVER = DatagramChannel.open()) {
+      RECEIVER.bind(new InetSocketAddress("127.0.0.1", 0));
+
+      final int                PORT   = ((InetSocketAddress) RECEIVER.getLocalAddress()).getPort();
+      final ChnlzrServerConfig CONFIG = config();
+
+      Mockito.when(CONFIG.udpOutputAddress()).thenReturn(Optional.of("127.0.0.1"));
+      Mockito.when(CONFIG.udpOutputPort()).thenReturn(PORT);
+      Mockito.when(CONFIG.udpMtu()).thenReturn(1500);
+      Mockito.when(CONFIG.udpMulticastTtl()).thenReturn(1);
+      Mockito.when(CONFIG.udpMulticastInterface()).thenReturn(Optional.empty());
+
+      final SamplesSinkFactory FACTORY  = new SamplesSinkFactory(CONFIG);
+      final ClientWriteQueue   TCP      = Mockito.mock(ClientWriteQueue.class);
+      final ClientWriteQueue   DATAGRAM = Mockito.mock(ClientWriteQueue.class);
+
+      final SamplesSink SINK = FACTORY.create(TCP, request(9001d), false);
+      assert FACTORY.create(DATAGRAM, request(9001d), true) == SINK;
+
+      SINK.onStateChange(96_000l, 9001d);
+
+      final ArgumentCaptor<Object> DESCRIPTOR = ArgumentCaptor.forClass(Object.class);
+      Mockito.verify(DATAGRAM).writeControl(DESCRIPTOR.capture());
+      Mockito.verify(TCP, Mockito.never()).writeControl(Mockito.any());
+
+      final ByteBuffer PAYLOAD = ((MessageBuilder) DESCRIPTOR.getValue()).getRoot(BaseMessage.factory)
+                                                                          .getSamples().getSamples().asByteBuffer();
+
+      assert PAYLOAD.getInt()              == DatagramSampleSink.MAGIC;
+      assert PAYLOAD.get()                 == 4;
+      assert PAYLOAD.getInt()              == 0x7f000001;
+      assert (PAYLOAD.getShort() & 0xffff) == PORT;
+      assert PAYLOAD.get()                 == SampleFormat.FLOAT32.ordinal();
+      assert PAYLOAD.getShort()            == DatagramSampleSink.samplesPerDatagram(SampleFormat.FLOAT32, 1500);
+    }
+  }
+
+}